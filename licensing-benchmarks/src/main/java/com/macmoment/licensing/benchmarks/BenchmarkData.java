@@ -0,0 +1,58 @@
+package com.macmoment.licensing.benchmarks;
+
+import com.macmoment.licensing.server.DatabaseManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Seeds a database with a product, a tier and a set of licenses for benchmarks.
+ */
+public final class BenchmarkData {
+    
+    public static final String PRODUCT_ID = "benchmark-product";
+    public static final String TIER_ID = "benchmark-tier";
+    
+    private BenchmarkData() {
+    }
+    
+    /**
+     * Opens a storage engine in a fresh temporary directory.
+     */
+    public static DatabaseManager open(String engine, Path directory) throws SQLException {
+        String file = engine.equals(DatabaseManager.JOURNAL) ? "licenses.journal" : "licenses.db";
+        return DatabaseManager.open(engine, directory.resolve(file).toString());
+    }
+    
+    /**
+     * Deletes a temporary directory created for a benchmark.
+     */
+    public static void deleteDirectory(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Creates {@code licenseCount} licenses and returns their keys.
+     */
+    public static String[] seed(DatabaseManager db, int licenseCount) throws SQLException {
+        db.createProduct(PRODUCT_ID, "Benchmark Product", "Seeded for benchmarks");
+        db.createTier(TIER_ID, PRODUCT_ID, "Gold", "fly,kits,homes", 0);
+        
+        String[] keys = new String[licenseCount];
+        for (int i = 0; i < licenseCount; i++) {
+            keys[i] = String.format("%016X", 0x1000000000000000L + i);
+        }
+        db.createLicenses(Arrays.asList(keys), PRODUCT_ID, TIER_ID, null);
+        return keys;
+    }
+}
@@ -0,0 +1,59 @@
+package com.macmoment.licensing.benchmarks;
+
+import com.macmoment.licensing.server.DatabaseManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the storage calls made on every validation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatabaseManagerBenchmark {
+    
+    @Param({DatabaseManager.SQLITE, DatabaseManager.MEMORY, DatabaseManager.JOURNAL})
+    public String engine;
+    
+    @Param({"10000"})
+    public int licenseCount;
+    
+    private Path directory;
+    private DatabaseManager db;
+    private String[] keys;
+    private int next;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        directory = Files.createTempDirectory("licenses-bench-");
+        db = BenchmarkData.open(engine, directory);
+        keys = BenchmarkData.seed(db, licenseCount);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        db.close();
+        BenchmarkData.deleteDirectory(directory);
+    }
+    
+    @Benchmark
+    public Map<String, Object> getLicense() throws SQLException {
+        String key = keys[next];
+        next = (next + 1) % keys.length;
+        return db.getLicense(key);
+    }
+    
+    @Benchmark
+    public void logValidation() throws SQLException {
+        db.logValidation(keys[0], "benchmark-hwid", "127.0.0.1", true);
+    }
+}
@@ -0,0 +1,64 @@
+package com.macmoment.licensing.benchmarks;
+
+import com.macmoment.licensing.client.FailureMode;
+import com.macmoment.licensing.injector.BytecodePatcher;
+import com.macmoment.licensing.injector.InjectorConfig;
+import com.macmoment.licensing.injector.PluginAnalyzer;
+import com.macmoment.licensing.injector.PluginMetadata;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures plugin analysis and bytecode patching on synthetic JARs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InjectorBenchmark {
+    
+    @Param({"100", "1000", "10000"})
+    public int classCount;
+    
+    private File inputJar;
+    private File outputJar;
+    private PluginMetadata metadata;
+    private BytecodePatcher patcher;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        inputJar = SyntheticPluginJar.create(classCount);
+        outputJar = File.createTempFile("synthetic-plugin-licensed-", ".jar");
+        outputJar.deleteOnExit();
+        metadata = new PluginAnalyzer(inputJar).analyze();
+        
+        InjectorConfig config = new InjectorConfig();
+        config.setServerUrl("http://localhost:8080");
+        config.setProductId("benchmark-product");
+        config.setLicenseKey("0123456789ABCDEF");
+        config.setFailureMode(FailureMode.DISABLE_ONLY);
+        patcher = new BytecodePatcher(config);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        inputJar.delete();
+        outputJar.delete();
+    }
+    
+    @Benchmark
+    public PluginMetadata analyze() throws IOException {
+        return new PluginAnalyzer(inputJar).analyze();
+    }
+    
+    @Benchmark
+    public long patchJar() throws IOException {
+        patcher.patchJar(inputJar, outputJar, metadata);
+        return outputJar.length();
+    }
+}
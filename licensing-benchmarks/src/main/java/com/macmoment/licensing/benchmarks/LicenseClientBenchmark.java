@@ -0,0 +1,57 @@
+package com.macmoment.licensing.benchmarks;
+
+import com.macmoment.licensing.client.LicenseClient;
+import com.macmoment.licensing.client.LicenseConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures LicenseClient.validate() on the cached path and against an in-process stub server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LicenseClientBenchmark {
+    
+    private StubLicenseServer server;
+    private LicenseClient cachedClient;
+    private LicenseClient uncachedClient;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new StubLicenseServer(StubLicenseServer.VALID_RESPONSE);
+        
+        LicenseConfig cached = new LicenseConfig();
+        cached.setJmxEnabled(false);
+        cachedClient = new LicenseClient(server.getUrl(), "benchmark-product", "0123456789ABCDEF", cached);
+        if (!cachedClient.validate()) {
+            throw new IllegalStateException("Stub server did not validate the license");
+        }
+        
+        LicenseConfig uncached = new LicenseConfig();
+        uncached.setJmxEnabled(false);
+        uncached.setCacheEnabled(false);
+        uncachedClient = new LicenseClient(server.getUrl(), "benchmark-product", "0123456789ABCDEF", uncached);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+    
+    @Benchmark
+    public boolean validateCached() {
+        return cachedClient.validate();
+    }
+    
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean validateUncached() {
+        return uncachedClient.validate();
+    }
+}
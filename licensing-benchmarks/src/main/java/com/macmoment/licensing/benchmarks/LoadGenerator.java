@@ -0,0 +1,367 @@
+package com.macmoment.licensing.benchmarks;
+
+import com.macmoment.licensing.server.DatabaseManager;
+import com.macmoment.licensing.server.LicenseServer;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.File;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator for /api/validate.
+ * Seeds a fresh database, starts a local LicenseServer and sends requests at a
+ * constant rate. Latency is measured from each request's scheduled start time,
+ * so a slow server shows up as queueing delay instead of silently lowering the
+ * offered load (coordinated omission).
+ */
+@Command(name = "load-generator",
+         mixinStandardHelpOptions = true,
+         version = "1.0.0",
+         description = "Drives /api/validate on a local license server at a constant rate")
+public class LoadGenerator implements Callable<Integer> {
+
+    private static final String PRODUCT_PREFIX = "load-product-";
+
+    @Option(names = "--products", description = "Number of products to seed", defaultValue = "10")
+    private int products;
+
+    @Option(names = "--tiers", description = "Tiers per product", defaultValue = "3")
+    private int tiersPerProduct;
+
+    @Option(names = "--licenses", description = "Number of licenses to seed", defaultValue = "10000")
+    private int licenses;
+
+    @Option(names = "--rate", description = "Target requests per second", defaultValue = "1000")
+    private int rate;
+
+    @Option(names = "--duration", description = "Measured run length in seconds", defaultValue = "30")
+    private int durationSeconds;
+
+    @Option(names = "--warmup", description = "Unmeasured warm-up in seconds", defaultValue = "5")
+    private int warmupSeconds;
+
+    @Option(names = "--mix",
+            description = "Request mix as valid:expired:wrongHwid:unknown weights",
+            defaultValue = "85:5:5:5")
+    private String mix;
+
+    @Option(names = "--max-in-flight",
+            description = "Requests allowed in flight before new sends are counted as dropped",
+            defaultValue = "20000")
+    private int maxInFlight;
+
+    @Option(names = "--storage", description = "Storage engine: sqlite, memory or journal",
+            defaultValue = DatabaseManager.SQLITE)
+    private String storage;
+
+    @Option(names = "--db", description = "Database or journal file (default: temporary file)")
+    private File dbFile;
+
+    @Option(names = "--port", description = "Server port (default: any free port)", defaultValue = "0")
+    private int port;
+
+    @Option(names = "--distribution", description = "Print the full percentile distribution")
+    private boolean printDistribution;
+
+    private enum RequestType { VALID, EXPIRED, WRONG_HWID, UNKNOWN }
+
+    private final Recorder recorder = new Recorder(TimeUnit.SECONDS.toNanos(60), 3);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder unexpected = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private String[] validKeys;
+    private String[] validHwids;
+    private String[] expiredKeys;
+    private String[] validProducts;
+    private String[] expiredProducts;
+
+    @Override
+    public Integer call() throws Exception {
+        int[] weights = parseMix(mix);
+
+        Path tempDirectory = null;
+        DatabaseManager db;
+        if (dbFile == null) {
+            tempDirectory = Files.createTempDirectory("licenses-load-");
+            db = BenchmarkData.open(storage, tempDirectory);
+        } else if (dbFile.exists()) {
+            System.err.println("Error: database already exists: " + dbFile);
+            return 1;
+        } else {
+            db = DatabaseManager.open(storage, dbFile.getAbsolutePath());
+        }
+
+        long seedStart = System.nanoTime();
+        seed(db);
+        System.out.printf("Seeded %d products, %d tiers, %d licenses into %s storage in %d ms%n",
+                products, products * tiersPerProduct, licenses, storage,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - seedStart));
+
+        if (port == 0) {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                port = socket.getLocalPort();
+            }
+        }
+        LicenseServer.start(db, port);
+
+        ExecutorService callbacks = Executors.newFixedThreadPool(4, runnable -> {
+            Thread thread = new Thread(runnable, "load-generator-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        HttpClient http = HttpClient.newBuilder()
+                .executor(callbacks)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        URI uri = URI.create("http://127.0.0.1:" + port + "/api/validate");
+
+        try {
+            System.out.printf("Warming up for %d s at %d req/s...%n", warmupSeconds, rate);
+            drive(http, uri, weights, warmupSeconds, false);
+            awaitDrain();
+            recorder.getIntervalHistogram();
+            resetCounters();
+
+            System.out.printf("Measuring for %d s at %d req/s...%n", durationSeconds, rate);
+            long start = System.nanoTime();
+            Histogram total = drive(http, uri, weights, durationSeconds, true);
+            awaitDrain();
+            total.add(recorder.getIntervalHistogram());
+            double elapsed = (System.nanoTime() - start) / 1e9;
+
+            report(total, elapsed);
+        } finally {
+            LicenseServer.stop();
+            db.close();
+            callbacks.shutdownNow();
+            if (tempDirectory != null) {
+                BenchmarkData.deleteDirectory(tempDirectory);
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Sends requests on a fixed schedule for the given number of seconds.
+     * Returns the accumulated histogram of the intervals reported so far.
+     */
+    private Histogram drive(HttpClient http, URI uri, int[] weights, int seconds, boolean progress) {
+        Histogram total = new Histogram(TimeUnit.SECONDS.toNanos(60), 3);
+        Random random = new Random(42);
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long count = (long) rate * seconds;
+        long start = System.nanoTime();
+        long nextReport = start + TimeUnit.SECONDS.toNanos(1);
+
+        for (long i = 0; i < count; i++) {
+            long intendedStart = start + i * intervalNanos;
+            long now;
+            while ((now = System.nanoTime()) < intendedStart) {
+                LockSupport.parkNanos(intendedStart - now);
+            }
+
+            if (now >= nextReport) {
+                Histogram interval = recorder.getIntervalHistogram();
+                total.add(interval);
+                if (progress) {
+                    System.out.printf("  %4ds  %6d req/s  p50=%7.2f ms  p99=%7.2f ms  in-flight=%d%n",
+                            TimeUnit.NANOSECONDS.toSeconds(now - start), interval.getTotalCount(),
+                            interval.getValueAtPercentile(50) / 1e6, interval.getValueAtPercentile(99) / 1e6,
+                            inFlight.get());
+                }
+                nextReport += TimeUnit.SECONDS.toNanos(1);
+            }
+
+            if (inFlight.get() >= maxInFlight) {
+                dropped.increment();
+                continue;
+            }
+            send(http, uri, pick(random, weights), random, intendedStart);
+        }
+
+        return total;
+    }
+
+    private void send(HttpClient http, URI uri, RequestType type, Random random, long intendedStart) {
+        String productId;
+        String key;
+        String hwid;
+        switch (type) {
+            case EXPIRED: {
+                int i = random.nextInt(expiredKeys.length);
+                productId = expiredProducts[i];
+                key = expiredKeys[i];
+                hwid = "load-hwid-expired";
+                break;
+            }
+            case WRONG_HWID: {
+                int i = random.nextInt(validKeys.length);
+                productId = validProducts[i];
+                key = validKeys[i];
+                hwid = "load-hwid-intruder";
+                break;
+            }
+            case UNKNOWN:
+                productId = PRODUCT_PREFIX + 0;
+                key = String.format("%016X", random.nextLong());
+                hwid = "load-hwid-unknown";
+                break;
+            default: {
+                int i = random.nextInt(validKeys.length);
+                productId = validProducts[i];
+                key = validKeys[i];
+                hwid = validHwids[i];
+            }
+        }
+
+        String body = "{\"productId\":\"" + productId + "\",\"licenseKey\":\"" + key +
+                "\",\"hwid\":\"" + hwid + "\",\"ip\":\"127.0.0.1\"}";
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+
+        boolean expectValid = type == RequestType.VALID;
+        inFlight.incrementAndGet();
+        http.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+            recorder.recordValue(Math.max(0, System.nanoTime() - intendedStart));
+            inFlight.decrementAndGet();
+            completed.increment();
+            if (error != null || response.statusCode() != 200) {
+                errors.increment();
+            } else if (response.body().contains("\"valid\":true") != expectValid) {
+                unexpected.increment();
+            }
+        });
+    }
+
+    private void seed(DatabaseManager db) throws Exception {
+        for (int p = 0; p < products; p++) {
+            String productId = PRODUCT_PREFIX + p;
+            db.createProduct(productId, "Load Product " + p, "Seeded by load generator");
+            for (int t = 0; t < tiersPerProduct; t++) {
+                db.createTier(productId + "-tier-" + t, productId, "Tier " + t, "feature-a,feature-b", 0);
+            }
+        }
+
+        // Every twentieth license is expired; the rest are bound to a known HWID
+        int expiredCount = Math.max(1, licenses / 20);
+        validKeys = new String[licenses - expiredCount];
+        validHwids = new String[validKeys.length];
+        validProducts = new String[validKeys.length];
+        expiredKeys = new String[expiredCount];
+        expiredProducts = new String[expiredCount];
+
+        long past = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1);
+        int valid = 0;
+        int expired = 0;
+        for (int i = 0; i < licenses; i++) {
+            String key = String.format("%016X", 0x4C4F414400000000L + i);
+            String productId = PRODUCT_PREFIX + (i % products);
+            String tierId = productId + "-tier-" + (i % tiersPerProduct);
+
+            if (i % 20 == 0 && expired < expiredCount) {
+                db.createLicense(key, productId, tierId, past);
+                expiredKeys[expired] = key;
+                expiredProducts[expired++] = productId;
+            } else {
+                db.createLicense(key, productId, tierId, null);
+                String hwid = "load-hwid-" + i;
+                db.updateLicenseBinding(key, hwid, "127.0.0.1");
+                validKeys[valid] = key;
+                validHwids[valid] = hwid;
+                validProducts[valid++] = productId;
+            }
+        }
+    }
+
+    private void awaitDrain() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void resetCounters() {
+        completed.reset();
+        errors.reset();
+        unexpected.reset();
+        dropped.reset();
+    }
+
+    private void report(Histogram histogram, double elapsedSeconds) {
+        System.out.println("\n=== Load Generator Results ===");
+        System.out.printf("Target rate:     %d req/s%n", rate);
+        System.out.printf("Achieved rate:   %.1f req/s%n", completed.sum() / elapsedSeconds);
+        System.out.printf("Completed:       %d%n", completed.sum());
+        System.out.printf("Errors:          %d%n", errors.sum());
+        System.out.printf("Unexpected:      %d%n", unexpected.sum());
+        System.out.printf("Dropped:         %d%n", dropped.sum());
+        System.out.println("Latency (ms, from scheduled start):");
+        for (double percentile : new double[] {50, 90, 99, 99.9, 99.99}) {
+            System.out.printf("  p%-7s %9.3f%n", percentile, histogram.getValueAtPercentile(percentile) / 1e6);
+        }
+        System.out.printf("  max      %9.3f%n", histogram.getMaxValue() / 1e6);
+        System.out.println("==============================");
+
+        if (printDistribution) {
+            histogram.outputPercentileDistribution(System.out, 1e6);
+        }
+    }
+
+    private static RequestType pick(Random random, int[] weights) {
+        int roll = random.nextInt(weights[weights.length - 1]);
+        for (int i = 0; i < weights.length; i++) {
+            if (roll < weights[i]) {
+                return RequestType.values()[i];
+            }
+        }
+        return RequestType.VALID;
+    }
+
+    // Returns cumulative weights in RequestType order
+    private static int[] parseMix(String mix) {
+        String[] parts = mix.split(":");
+        if (parts.length != RequestType.values().length) {
+            throw new IllegalArgumentException("Mix must have 4 weights: valid:expired:wrongHwid:unknown");
+        }
+        int[] cumulative = new int[parts.length];
+        int sum = 0;
+        for (int i = 0; i < parts.length; i++) {
+            sum += Integer.parseInt(parts[i].trim());
+            cumulative[i] = sum;
+        }
+        if (sum <= 0) {
+            throw new IllegalArgumentException("Mix weights must add up to more than zero");
+        }
+        return cumulative;
+    }
+
+    public static void main(String[] args) {
+        int exitCode = new CommandLine(new LoadGenerator()).execute(args);
+        System.exit(exitCode);
+    }
+}
@@ -0,0 +1,58 @@
+package com.macmoment.licensing.benchmarks;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * Minimal in-process HTTP server that answers /api/validate with a fixed body.
+ * Used to measure client overhead without a real license server or database.
+ */
+public class StubLicenseServer implements AutoCloseable {
+    
+    public static final String VALID_RESPONSE =
+            "{\"valid\":true,\"message\":\"License validated successfully\",\"tier\":\"Gold\"," +
+            "\"expiryTime\":0,\"allowedFeatures\":[\"fly\",\"kits\"]," +
+            "\"featureMask\":3,\"featureIds\":{\"fly\":0,\"kits\":1}}";
+    
+    private final HttpServer server;
+    
+    public StubLicenseServer(String responseBody) throws IOException {
+        byte[] body = responseBody.getBytes(StandardCharsets.UTF_8);
+        
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/validate", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                in.readAllBytes();
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(4, runnable -> {
+            Thread thread = new Thread(runnable, "stub-license-server");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+    }
+    
+    /**
+     * Gets the base URL of this server, e.g. http://127.0.0.1:54321.
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,85 @@
+package com.macmoment.licensing.benchmarks;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Generates plugin JARs of a given size for injector benchmarks.
+ */
+public final class SyntheticPluginJar {
+    
+    public static final String MAIN_CLASS = "com.example.synthetic.SyntheticPlugin";
+    
+    private SyntheticPluginJar() {
+    }
+    
+    /**
+     * Writes a plugin JAR with a main class, a plugin.yml and {@code classCount} further classes.
+     * Every tenth class is a listener with two event handler methods.
+     */
+    public static File create(int classCount) throws IOException {
+        File jar = File.createTempFile("synthetic-plugin-" + classCount + "-", ".jar");
+        jar.deleteOnExit();
+        
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new ZipEntry("plugin.yml"));
+            out.write(("name: SyntheticPlugin\nversion: 1.0.0\nmain: " + MAIN_CLASS + "\n" +
+                    "commands:\n  synthetic:\n    description: Synthetic command\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+            
+            writeClass(out, MAIN_CLASS.replace('.', '/'), new String[] {"onEnable", "onDisable"});
+            
+            for (int i = 0; i < classCount; i++) {
+                if (i % 10 == 0) {
+                    writeClass(out, "com/example/synthetic/listeners/Synthetic" + i + "Listener",
+                            new String[] {"onPlayerJoin", "onPlayerQuit"});
+                } else {
+                    writeClass(out, "com/example/synthetic/model/Synthetic" + i,
+                            new String[] {"update", "render"});
+                }
+            }
+        }
+        
+        return jar;
+    }
+    
+    private static void writeClass(JarOutputStream out, String internalName, String[] methods)
+            throws IOException {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+        cw.visit(Opcodes.V11, Opcodes.ACC_PUBLIC, internalName, null, "java/lang/Object", null);
+        
+        MethodVisitor init = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        init.visitCode();
+        init.visitVarInsn(Opcodes.ALOAD, 0);
+        init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        init.visitInsn(Opcodes.RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+        
+        for (String method : methods) {
+            MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, method, "()V", null, null);
+            mv.visitCode();
+            mv.visitFieldInsn(Opcodes.GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;");
+            mv.visitLdcInsn(internalName + "." + method);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/io/PrintStream", "println",
+                    "(Ljava/lang/String;)V", false);
+            mv.visitInsn(Opcodes.RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        
+        cw.visitEnd();
+        out.putNextEntry(new ZipEntry(internalName + ".class"));
+        out.write(cw.toByteArray());
+        out.closeEntry();
+    }
+}
@@ -0,0 +1,87 @@
+package com.macmoment.licensing.benchmarks;
+
+import com.macmoment.licensing.server.DatabaseManager;
+import com.macmoment.licensing.server.LicenseServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full /api/validate round trip against an in-process LicenseServer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidateEndpointBenchmark {
+    
+    @Param({DatabaseManager.SQLITE, DatabaseManager.JOURNAL})
+    public String engine;
+    
+    private Path directory;
+    private DatabaseManager db;
+    private HttpClient http;
+    private HttpRequest validRequest;
+    private HttpRequest unknownKeyRequest;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException, InterruptedException {
+        directory = Files.createTempDirectory("licenses-bench-");
+        db = BenchmarkData.open(engine, directory);
+        String[] keys = BenchmarkData.seed(db, 1000);
+        
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        LicenseServer.start(db, port);
+        
+        http = HttpClient.newHttpClient();
+        URI uri = URI.create("http://127.0.0.1:" + port + "/api/validate");
+        validRequest = validationRequest(uri, keys[0]);
+        unknownKeyRequest = validationRequest(uri, "FFFFFFFFFFFFFFFF");
+        
+        // First call binds the HWID so later calls take the steady-state path
+        String body = http.send(validRequest, HttpResponse.BodyHandlers.ofString()).body();
+        if (!body.contains("\"valid\":true")) {
+            throw new IllegalStateException("Unexpected validation response: " + body);
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        LicenseServer.stop();
+        db.close();
+        BenchmarkData.deleteDirectory(directory);
+    }
+    
+    @Benchmark
+    public String validateSuccess() throws IOException, InterruptedException {
+        return http.send(validRequest, HttpResponse.BodyHandlers.ofString()).body();
+    }
+    
+    @Benchmark
+    public String validateUnknownKey() throws IOException, InterruptedException {
+        return http.send(unknownKeyRequest, HttpResponse.BodyHandlers.ofString()).body();
+    }
+    
+    private static HttpRequest validationRequest(URI uri, String licenseKey) {
+        String body = "{\"productId\":\"" + BenchmarkData.PRODUCT_ID + "\",\"licenseKey\":\"" + licenseKey +
+                "\",\"hwid\":\"benchmark-hwid\",\"ip\":\"127.0.0.1\"}";
+        return HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+}
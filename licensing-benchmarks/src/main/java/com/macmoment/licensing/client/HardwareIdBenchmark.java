@@ -0,0 +1,32 @@
+package com.macmoment.licensing.client;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures hardware ID generation. Lives in the client package because
+ * getHardwareId() is package-private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HardwareIdBenchmark {
+    
+    private LicenseClient client;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        LicenseConfig config = new LicenseConfig();
+        config.setJmxEnabled(false);
+        client = new LicenseClient("http://127.0.0.1:1", "benchmark-product", "0123456789ABCDEF", config);
+    }
+    
+    @Benchmark
+    public String getHardwareId() {
+        return client.getHardwareId();
+    }
+}
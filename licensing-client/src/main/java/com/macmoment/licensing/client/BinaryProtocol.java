@@ -0,0 +1,186 @@
+package com.macmoment.licensing.client;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client side of the server's binary {@code /api/validate} encoding, sent
+ * with Content-Type {@link #CONTENT_TYPE}. Integers are unsigned LEB128
+ * varints, strings a varint byte length and UTF-8.
+ * <pre>
+ * request:  version(1) hwid(32 raw bytes) ipLength(0|4|16) ip productId licenseKey instanceId
+ * response: version(1) result(1)
+ *           and if the result is 0 (valid): expiryTime featureMask tier
+ *           featureCount feature... (names in ID order)
+ * </pre>
+ * A JSON body always starts with '{', so the first byte tells the encodings apart.
+ */
+final class BinaryProtocol {
+
+    static final String CONTENT_TYPE = "application/x-license-validation";
+
+    private static final int VERSION = 1;
+    private static final int HWID_LENGTH = 32;
+
+    private static final String[] MESSAGES = {
+            "License validated successfully",
+            "Invalid license key",
+            "License not valid for this product",
+            "License has been deactivated",
+            "License has expired",
+            "License bound to different hardware",
+            "All seats are in use"
+    };
+
+    private BinaryProtocol() {
+    }
+
+    /**
+     * Parses a hex hardware ID into its raw bytes, or returns null if it is not
+     * a SHA-256 hex string and the request has to go as JSON.
+     */
+    static byte[] hwidBytes(String hwid) {
+        if (hwid == null || hwid.length() != HWID_LENGTH * 2) {
+            return null;
+        }
+        byte[] bytes = new byte[HWID_LENGTH];
+        for (int i = 0; i < HWID_LENGTH; i++) {
+            int high = Character.digit(hwid.charAt(2 * i), 16);
+            int low = Character.digit(hwid.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            bytes[i] = (byte) (high << 4 | low);
+        }
+        return bytes;
+    }
+
+    static byte[] encodeRequest(String productId, String licenseKey, byte[] hwid, byte[] ip, String instanceId) {
+        byte[] product = productId.getBytes(StandardCharsets.UTF_8);
+        byte[] key = licenseKey.getBytes(StandardCharsets.UTF_8);
+        byte[] instance = instanceId.getBytes(StandardCharsets.UTF_8);
+        int ipLength = ip != null && (ip.length == 4 || ip.length == 16) ? ip.length : 0;
+
+        byte[] out = new byte[1 + HWID_LENGTH + 1 + ipLength + 10 + product.length + 10 + key.length
+                + 10 + instance.length];
+        int pos = 0;
+        out[pos++] = VERSION;
+        System.arraycopy(hwid, 0, out, pos, HWID_LENGTH);
+        pos += HWID_LENGTH;
+        out[pos++] = (byte) ipLength;
+        if (ipLength > 0) {
+            System.arraycopy(ip, 0, out, pos, ipLength);
+            pos += ipLength;
+        }
+        pos = writeBytes(out, pos, product);
+        pos = writeBytes(out, pos, key);
+        pos = writeBytes(out, pos, instance);
+        return pos == out.length ? out : Arrays.copyOf(out, pos);
+    }
+
+    /**
+     * Whether a response body is binary rather than JSON.
+     */
+    static boolean isBinary(byte[] body) {
+        return body.length > 0 && body[0] == VERSION;
+    }
+
+    static LicenseStatus decodeResponse(byte[] body) throws IOException {
+        Reader reader = new Reader(body);
+        if (reader.readByte() != VERSION) {
+            throw new IOException("Unsupported binary validation version");
+        }
+        int result = reader.readByte();
+        if (result >= MESSAGES.length) {
+            throw new IOException("Unknown validation result: " + result);
+        }
+
+        LicenseStatus status = new LicenseStatus();
+        status.setValid(result == 0);
+        status.setMessage(MESSAGES[result]);
+        if (result != 0) {
+            return status;
+        }
+
+        status.setExpiryTime(reader.readVarint());
+        long featureMask = reader.readVarint();
+        status.setFeatureMask(featureMask);
+        String tier = reader.readString();
+        status.setTier(tier.isEmpty() ? null : tier);
+
+        int count = (int) reader.readVarint();
+        if (count > 0) {
+            List<String> names = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                names.add(reader.readString());
+            }
+            status.setAllowedFeatures(Collections.unmodifiableList(names));
+            // Names are in ID order, so the n-th name owns the n-th set bit
+            if (Long.bitCount(featureMask) == count) {
+                Map<String, Integer> ids = new LinkedHashMap<>();
+                long remaining = featureMask;
+                for (String name : names) {
+                    ids.put(name, Long.numberOfTrailingZeros(remaining));
+                    remaining &= remaining - 1;
+                }
+                status.setFeatureIds(ids);
+            }
+        }
+        return status;
+    }
+
+    private static int writeBytes(byte[] out, int pos, byte[] bytes) {
+        long value = bytes.length;
+        while ((value & ~0x7FL) != 0) {
+            out[pos++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        System.arraycopy(bytes, 0, out, pos, bytes.length);
+        return pos + bytes.length;
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int pos;
+
+        private Reader(byte[] data) {
+            this.data = data;
+        }
+
+        private int readByte() throws IOException {
+            if (pos >= data.length) {
+                throw new IOException("Truncated binary validation response");
+            }
+            return data[pos++] & 0xFF;
+        }
+
+        private long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        private String readString() throws IOException {
+            long length = readVarint();
+            if (length > data.length - pos) {
+                throw new IOException("Truncated binary validation response");
+            }
+            String value = new String(data, pos, (int) length, StandardCharsets.UTF_8);
+            pos += (int) length;
+            return value;
+        }
+    }
+}
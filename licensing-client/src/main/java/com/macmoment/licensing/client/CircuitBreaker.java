@@ -0,0 +1,107 @@
+package com.macmoment.licensing.client;
+
+import java.util.Random;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Stops a {@link LicenseClient} from connecting to a server that keeps failing.
+ * After {@code failureThreshold} consecutive failures the breaker opens and
+ * requests are refused without touching the network. Once a backoff has
+ * passed, a single probe is let through (half-open): success closes the
+ * breaker, failure reopens it with the backoff doubled, up to a cap. Each
+ * backoff is drawn uniformly from zero to its ceiling (full jitter), so
+ * clients do not return to a recovered server in lockstep. A probe that has
+ * not reported back within {@code probeTimeoutMillis} is presumed lost and
+ * the next caller gets a new one, so the breaker cannot stay half-open.
+ */
+class CircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final Logger LOGGER = Logger.getLogger("LicenseClient");
+
+    private final int failureThreshold;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long probeTimeoutMillis;
+    private final LongSupplier clock;
+    private final Random random;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private int reopenings;
+    private long retryAt;
+    private long probeStartedAt;
+
+    CircuitBreaker(int failureThreshold, long baseBackoffMillis, long maxBackoffMillis, long probeTimeoutMillis,
+                   LongSupplier clock, Random random) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.probeTimeoutMillis = probeTimeoutMillis;
+        this.clock = clock;
+        this.random = random;
+    }
+
+    /**
+     * Whether a request may go to the server now. While half-open only the
+     * caller that got the probe is allowed; it must report its outcome.
+     */
+    synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (clock.getAsLong() < retryAt) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probeStartedAt = clock.getAsLong();
+                return true;
+            default:
+                long now = clock.getAsLong();
+                if (now - probeStartedAt < probeTimeoutMillis) {
+                    return false;
+                }
+                probeStartedAt = now;
+                return true;
+        }
+    }
+
+    synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            LOGGER.info("License server reachable again");
+        }
+        state = State.CLOSED;
+        failures = 0;
+        reopenings = 0;
+    }
+
+    synchronized void recordFailure() {
+        if (state == State.HALF_OPEN) {
+            reopenings++;
+            open();
+        } else if (state == State.CLOSED && ++failures >= failureThreshold) {
+            LOGGER.warning("License server unreachable after " + failures
+                    + " attempts; serving the last known status until it recovers");
+            open();
+        }
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Opens the breaker until a jittered backoff of up to base * 2^reopenings has passed.
+     */
+    private void open() {
+        state = State.OPEN;
+        long ceiling = baseBackoffMillis << Math.min(reopenings, 30);
+        if (ceiling <= 0 || ceiling > maxBackoffMillis) {
+            ceiling = maxBackoffMillis;
+        }
+        retryAt = clock.getAsLong() + (long) (random.nextDouble() * ceiling);
+    }
+}
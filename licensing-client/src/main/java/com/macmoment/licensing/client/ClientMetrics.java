@@ -0,0 +1,164 @@
+package com.macmoment.licensing.client;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histogram for a {@link LicenseClient}.
+ * Recording is a striped counter increment, so the cached path stays cheap.
+ */
+public class ClientMetrics implements ClientMetricsMBean {
+    
+    private static final Logger LOGGER = Logger.getLogger("LicenseClient");
+    
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder remoteValidations = new LongAdder();
+    private final LongAdder remoteFailures = new LongAdder();
+    private final LongAdder allowOnErrorFallbacks = new LongAdder();
+    private final LongAdder pushInvalidations = new LongAdder();
+    private final LongAdder shortCircuits = new LongAdder();
+    private final LongAdder hedgedRequests = new LongAdder();
+    private volatile ServerEndpoints endpoints;
+    private final LatencyHistogram validationLatency = new LatencyHistogram();
+    
+    void recordCacheHit() {
+        cacheHits.increment();
+    }
+    
+    void recordRemoteValidation(long startNanos) {
+        remoteValidations.increment();
+        validationLatency.recordSince(startNanos);
+    }
+    
+    void recordRemoteFailure() {
+        remoteFailures.increment();
+    }
+    
+    void recordAllowOnErrorFallback() {
+        allowOnErrorFallbacks.increment();
+    }
+    
+    void recordPushInvalidation() {
+        pushInvalidations.increment();
+    }
+    
+    void recordShortCircuit() {
+        shortCircuits.increment();
+    }
+    
+    void recordHedgedRequest() {
+        hedgedRequests.increment();
+    }
+    
+    void setEndpoints(ServerEndpoints endpoints) {
+        this.endpoints = endpoints;
+    }
+    
+    @Override
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+    
+    @Override
+    public long getRemoteValidations() {
+        return remoteValidations.sum();
+    }
+    
+    @Override
+    public long getRemoteFailures() {
+        return remoteFailures.sum();
+    }
+    
+    @Override
+    public long getAllowOnErrorFallbacks() {
+        return allowOnErrorFallbacks.sum();
+    }
+    
+    @Override
+    public long getPushInvalidations() {
+        return pushInvalidations.sum();
+    }
+    
+    @Override
+    public long getShortCircuits() {
+        return shortCircuits.sum();
+    }
+    
+    @Override
+    public String getBreakerState() {
+        ServerEndpoints current = endpoints;
+        return current == null ? CircuitBreaker.State.CLOSED.name() : current.breakerStates();
+    }
+    
+    @Override
+    public long getHedgedRequests() {
+        return hedgedRequests.sum();
+    }
+    
+    @Override
+    public String getEndpoints() {
+        ServerEndpoints current = endpoints;
+        return current == null ? "" : current.describe();
+    }
+    
+    @Override
+    public double getCacheHitRatio() {
+        long hits = getCacheHits();
+        long total = hits + getRemoteValidations() + getRemoteFailures() + getShortCircuits();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+    
+    @Override
+    public long getValidationLatencyP50Micros() {
+        return validationLatency.valueAtQuantile(0.5) / 1000;
+    }
+    
+    @Override
+    public long getValidationLatencyP99Micros() {
+        return validationLatency.valueAtQuantile(0.99) / 1000;
+    }
+    
+    @Override
+    public long getValidationLatencyMaxMicros() {
+        return validationLatency.valueAtQuantile(1.0) / 1000;
+    }
+    
+    /**
+     * Gets the raw validation latency histogram (nanoseconds).
+     */
+    public LatencyHistogram getValidationLatency() {
+        return validationLatency;
+    }
+    
+    /**
+     * Returns a one-line summary suitable for periodic logging.
+     */
+    public String summary() {
+        return String.format("cacheHits=%d remote=%d failures=%d shortCircuits=%d breaker=%s hedged=%d " +
+                        "allowOnError=%d pushInvalidations=%d hitRatio=%.3f latency p50=%dus p99=%dus max=%dus",
+                getCacheHits(), getRemoteValidations(), getRemoteFailures(), getShortCircuits(), getBreakerState(),
+                getHedgedRequests(), getAllowOnErrorFallbacks(), getPushInvalidations(), getCacheHitRatio(), getValidationLatencyP50Micros(), getValidationLatencyP99Micros(),
+                getValidationLatencyMaxMicros());
+    }
+    
+    /**
+     * Registers this instance with the platform MBean server under the given product ID.
+     * An existing registration for the same product is replaced.
+     */
+    void registerMBean(String productId) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("com.macmoment.licensing:type=LicenseClient,product="
+                    + ObjectName.quote(String.valueOf(productId)));
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (Exception e) {
+            LOGGER.warning("Failed to register license metrics MBean: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.macmoment.licensing.client;
+
+/**
+ * JMX view of {@link ClientMetrics}.
+ */
+public interface ClientMetricsMBean {
+    
+    long getCacheHits();
+    
+    long getRemoteValidations();
+    
+    long getRemoteFailures();
+    
+    long getAllowOnErrorFallbacks();
+    
+    long getPushInvalidations();
+    
+    long getShortCircuits();
+    
+    String getBreakerState();
+    
+    long getHedgedRequests();
+    
+    String getEndpoints();
+    
+    double getCacheHitRatio();
+    
+    long getValidationLatencyP50Micros();
+    
+    long getValidationLatencyP99Micros();
+    
+    long getValidationLatencyMaxMicros();
+}
@@ -1,6 +1,7 @@
 package com.macmoment.licensing.client;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
 import java.io.*;
@@ -10,7 +11,22 @@ import java.net.NetworkInterface;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 import java.util.logging.Logger;
 
 /**
@@ -21,20 +37,82 @@ public class LicenseClient {
     
     private static final Logger LOGGER = Logger.getLogger("LicenseClient");
     private static final Gson GSON = new Gson();
+    private static final int MAX_REDIRECTS = 2;
     
-    private final String serverUrl;
+    private static final String JSON = "application/json";
+    
+    private static volatile String hardwareId;
+    private static volatile byte[] hardwareIdBytes;
+    
+    private final ServerEndpoints endpoints;
+    // Whether this client created its endpoints and so stops their health checks on close
+    private final boolean ownsEndpoints;
     private final String productId;
     private final String licenseKey;
     private final LicenseConfig config;
+    private final ClientMetrics metrics = new ClientMetrics();
+    private final RevocationSubscriber revocations;
+    private final AtomicLong invalidations = new AtomicLong();
+    private final String instanceId = UUID.randomUUID().toString();
+    private final LongSupplier clock;
+    private volatile ExecutorService hedgeExecutor;
     
-    private LicenseStatus status;
-    private long lastCheckTime = 0;
+    private volatile LicenseStatus status;
+    private volatile long lastCheckTime = 0;
+    private volatile String leaseId;
+    private ScheduledExecutorService seatHeartbeat;
     
     public LicenseClient(String serverUrl, String productId, String licenseKey, LicenseConfig config) {
-        this.serverUrl = serverUrl;
+        this(Collections.singletonList(serverUrl), productId, licenseKey, config);
+    }
+    
+    /**
+     * Creates a client that spreads requests over several license servers,
+     * preferring the fastest healthy one and failing over to the others.
+     */
+    public LicenseClient(List<String> serverUrls, String productId, String licenseKey, LicenseConfig config) {
+        this(serverUrls, productId, licenseKey, config, System::currentTimeMillis, new Random());
+    }
+    
+    /**
+     * Creates a client whose cache and circuit breakers run on the given clock
+     * (milliseconds) and draw backoff jitter from the given source.
+     */
+    LicenseClient(List<String> serverUrls, String productId, String licenseKey, LicenseConfig config,
+                  LongSupplier clock, Random random) {
+        this(new ServerEndpoints(serverUrls, config, clock, random), true, productId, licenseKey, config, clock);
+    }
+    
+    /**
+     * Creates a client that shares its servers' breakers and latency figures
+     * with other clients of the same servers.
+     */
+    LicenseClient(ServerEndpoints endpoints, String productId, String licenseKey, LicenseConfig config,
+                  LongSupplier clock) {
+        this(endpoints, false, productId, licenseKey, config, clock);
+    }
+    
+    private LicenseClient(ServerEndpoints endpoints, boolean ownsEndpoints, String productId, String licenseKey,
+                          LicenseConfig config, LongSupplier clock) {
+        this.endpoints = endpoints;
+        this.ownsEndpoints = ownsEndpoints;
         this.productId = productId;
         this.licenseKey = licenseKey;
         this.config = config;
+        this.clock = clock;
+        metrics.setEndpoints(endpoints);
+        
+        if (config.isJmxEnabled()) {
+            metrics.registerMBean(productId);
+        }
+        
+        if (config.isPushEnabled()) {
+            revocations = new RevocationSubscriber(() -> endpoints.best().url, licenseKey,
+                    config.getConnectionTimeout(), this::invalidateCache, metrics);
+            revocations.start();
+        } else {
+            revocations = null;
+        }
     }
     
     /**
@@ -45,42 +123,321 @@ public class LicenseClient {
         try {
             // Check cache if enabled
             if (config.isCacheEnabled() && isCacheValid()) {
-                return status != null && status.isValid();
+                metrics.recordCacheHit();
+                return status != null && status.isValid() && (!config.isSeatLeasingEnabled() || leaseId != null);
             }
             
-            // Prepare validation request
-            JsonObject request = new JsonObject();
-            request.addProperty("productId", productId);
-            request.addProperty("licenseKey", licenseKey);
-            request.addProperty("hwid", getHardwareId());
-            request.addProperty("ip", getIpAddress());
+            // Prepare validation request, binary if enabled and the HWID allows it
+            byte[] body;
+            String contentType;
+            byte[] hwid = config.isBinaryProtocolEnabled() ? hardwareIdBytes() : null;
+            if (hwid != null) {
+                body = BinaryProtocol.encodeRequest(productId, licenseKey, hwid, getIpAddressBytes(), instanceId);
+                contentType = BinaryProtocol.CONTENT_TYPE;
+            } else {
+                JsonObject request = new JsonObject();
+                request.addProperty("productId", productId);
+                request.addProperty("licenseKey", licenseKey);
+                request.addProperty("hwid", hardwareId());
+                request.addProperty("ip", getIpAddress());
+                // Tiers with max_users give this instance a seat, the one its lease holds if leasing
+                request.addProperty("instanceId", instanceId);
+                body = request.toString().getBytes(StandardCharsets.UTF_8);
+                contentType = JSON;
+            }
             
-            // Send validation request
-            String response = sendRequest("/api/validate", request.toString());
-            status = GSON.fromJson(response, LicenseStatus.class);
-            lastCheckTime = System.currentTimeMillis();
+            // While the servers are failing, don't wait on a connect timeout per call
+            List<ServerEndpoints.Endpoint> route = endpoints.route();
+            if (route.isEmpty()) {
+                metrics.recordShortCircuit();
+                return fallback();
+            }
             
-            return status != null && status.isValid();
+            // Send validation request
+            long start = System.nanoTime();
+            long invalidationsBefore = invalidations.get();
+            byte[] response = send(route, "/api/validate", body, contentType);
+            metrics.recordRemoteValidation(start);
+            LicenseStatus result = BinaryProtocol.isBinary(response)
+                    ? BinaryProtocol.decodeResponse(response)
+                    : GSON.fromJson(new String(response, StandardCharsets.UTF_8), LicenseStatus.class);
+            return accept(result, invalidationsBefore);
             
         } catch (Exception e) {
             LOGGER.warning("License validation failed: " + e.getMessage());
-            
-            // Graceful failure handling
-            if (config.getFailureMode() == FailureMode.ALLOW_ON_ERROR) {
-                return true; // Allow if server is unreachable
+            metrics.recordRemoteFailure();
+            return fallback();
+        }
+    }
+    
+    /**
+     * Validates several clients of the same servers and machine in one request.
+     * Each client caches, falls back and takes its seat as {@link #validate()} would.
+     * Clients whose cached status is still fresh are answered from the cache.
+     * @return whether each client's license is valid, in order
+     */
+    static boolean[] validateBatch(List<LicenseClient> clients) {
+        boolean[] results = new boolean[clients.size()];
+        List<LicenseClient> due = new ArrayList<>();
+        List<Integer> dueIndexes = new ArrayList<>();
+        for (int i = 0; i < clients.size(); i++) {
+            LicenseClient client = clients.get(i);
+            if (client.needsRefresh()) {
+                due.add(client);
+                dueIndexes.add(i);
+            } else {
+                results[i] = client.validate();
+            }
+        }
+        if (due.isEmpty()) {
+            return results;
+        }
+        
+        LicenseClient lead = due.get(0);
+        JsonObject request = new JsonObject();
+        request.addProperty("hwid", hardwareId());
+        request.addProperty("ip", lead.getIpAddress());
+        JsonArray licenses = new JsonArray();
+        long[] invalidationsBefore = new long[due.size()];
+        for (int i = 0; i < due.size(); i++) {
+            JsonObject license = new JsonObject();
+            license.addProperty("productId", due.get(i).productId);
+            license.addProperty("licenseKey", due.get(i).licenseKey);
+            license.addProperty("instanceId", due.get(i).instanceId);
+            licenses.add(license);
+            invalidationsBefore[i] = due.get(i).invalidations.get();
+        }
+        request.add("licenses", licenses);
+        
+        List<ServerEndpoints.Endpoint> route = lead.endpoints.route();
+        if (route.isEmpty()) {
+            for (int i = 0; i < due.size(); i++) {
+                due.get(i).metrics.recordShortCircuit();
+                results[dueIndexes.get(i)] = due.get(i).fallback();
+            }
+        } else {
+            long start = System.nanoTime();
+            LicenseStatus[] statuses = null;
+            try {
+                byte[] response = lead.send(route, "/api/validate/batch",
+                        request.toString().getBytes(StandardCharsets.UTF_8), JSON);
+                statuses = GSON.fromJson(new String(response, StandardCharsets.UTF_8), LicenseStatus[].class);
+                if (statuses == null || statuses.length != due.size()) {
+                    throw new IOException("Batch validation answered " + (statuses == null ? 0 : statuses.length)
+                            + " of " + due.size() + " licenses");
+                }
+            } catch (Exception e) {
+                LOGGER.warning("Batch license validation failed: " + e.getMessage());
+                statuses = null;
             }
+            for (int i = 0; i < due.size(); i++) {
+                LicenseClient client = due.get(i);
+                if (statuses == null) {
+                    client.metrics.recordRemoteFailure();
+                    results[dueIndexes.get(i)] = client.fallback();
+                    continue;
+                }
+                client.metrics.recordRemoteValidation(start);
+                try {
+                    results[dueIndexes.get(i)] = client.accept(statuses[i], invalidationsBefore[i]);
+                } catch (IOException e) {
+                    LOGGER.warning("License validation failed: " + e.getMessage());
+                    results[dueIndexes.get(i)] = client.fallback();
+                }
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Whether the next {@link #validate()} would ask the server.
+     */
+    boolean needsRefresh() {
+        return !config.isCacheEnabled() || !isCacheValid();
+    }
+    
+    /**
+     * Takes a status from the server: caches it and, if it is valid and seats
+     * are required, takes a seat.
+     */
+    private boolean accept(LicenseStatus result, long invalidationsBefore) throws IOException {
+        status = result;
+        // A revocation pushed while the request was in flight must not be cached over
+        lastCheckTime = invalidations.get() == invalidationsBefore ? clock.getAsLong() : 0;
+        
+        boolean valid = result != null && result.isValid();
+        if (valid && config.isSeatLeasingEnabled() && leaseId == null) {
+            valid = acquireSeat();
+        }
+        return valid;
+    }
+    
+    /**
+     * Sends a validation over the route, hedged if enabled and there is a
+     * second server to hedge with.
+     */
+    private byte[] send(List<ServerEndpoints.Endpoint> route, String endpoint, byte[] body, String contentType)
+            throws IOException {
+        return config.isHedgingEnabled() && route.size() > 1
+                ? sendHedged(route, endpoint, body, contentType)
+                : sendRequest(route, endpoint, body, contentType);
+    }
+    
+    /**
+     * Answers a validation the server could not: {@link FailureMode#ALLOW_ON_ERROR}
+     * allows, {@link FailureMode#DENY_ON_ERROR} denies, and every other mode
+     * keeps the last status the server gave.
+     */
+    private boolean fallback() {
+        switch (config.getFailureMode()) {
+            case ALLOW_ON_ERROR:
+                metrics.recordAllowOnErrorFallback();
+                return true; // Allow if server is unreachable
+            case DENY_ON_ERROR:
+                return false;
+            default:
+                LicenseStatus lastKnown = status;
+                return lastKnown != null && lastKnown.isValid()
+                        && (!config.isSeatLeasingEnabled() || leaseId != null);
+        }
+    }
+    
+    /**
+     * Discards the cached status so the next {@link #validate()} asks the server.
+     */
+    public void invalidateCache() {
+        invalidations.incrementAndGet();
+        lastCheckTime = 0;
+    }
+    
+    /**
+     * Releases the seat, if held, and closes the revocation channel, if any.
+     * Stops the servers' health checks too, unless they are shared with
+     * other clients.
+     */
+    public void close() {
+        releaseSeat();
+        if (revocations != null) {
+            revocations.close();
+        }
+        if (hedgeExecutor != null) {
+            hedgeExecutor.shutdown();
+        }
+        if (ownsEndpoints) {
+            endpoints.close();
+        }
+    }
+    
+    /**
+     * Takes one of the license tier's concurrent-user seats for this instance.
+     * The seat is kept alive by a background heartbeat until {@link #releaseSeat()}.
+     * @return true if a seat is held
+     */
+    public synchronized boolean acquireSeat() throws IOException {
+        JsonObject request = new JsonObject();
+        request.addProperty("productId", productId);
+        request.addProperty("licenseKey", licenseKey);
+        request.addProperty("instanceId", instanceId);
+        
+        JsonObject response = GSON.fromJson(sendRequest("/api/leases", request.toString()), JsonObject.class);
+        if (!response.get("granted").getAsBoolean()) {
+            leaseId = null;
+            LOGGER.warning("No license seat available: " + response.get("message").getAsString());
             return false;
         }
+        
+        leaseId = response.get("leaseId").getAsString();
+        if (seatHeartbeat == null) {
+            long interval = Math.max(1000, response.get("ttl").getAsLong() / 3);
+            seatHeartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "license-seat-heartbeat");
+                thread.setDaemon(true);
+                return thread;
+            });
+            seatHeartbeat.scheduleAtFixedRate(this::renewSeat, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+    
+    /**
+     * Whether this instance currently holds a seat.
+     */
+    public boolean hasSeat() {
+        return leaseId != null;
+    }
+    
+    /**
+     * Gives the seat back so another instance can use it: the leased seat, or
+     * else the seat the server gave this instance when validating it, which
+     * would otherwise be held until the server's validation TTL runs out.
+     */
+    public synchronized void releaseSeat() {
+        if (seatHeartbeat != null) {
+            seatHeartbeat.shutdownNow();
+            seatHeartbeat = null;
+        }
+        String id = leaseId;
+        leaseId = null;
+        LicenseStatus current = status;
+        try {
+            if (id != null) {
+                sendRequest("/api/leases/" + id + "/release", "{}");
+            } else if (current != null && current.isValid()) {
+                JsonObject request = new JsonObject();
+                request.addProperty("productId", productId);
+                request.addProperty("licenseKey", licenseKey);
+                request.addProperty("instanceId", instanceId);
+                sendRequest("/api/leases/release", request.toString());
+            }
+        } catch (IOException e) {
+            LOGGER.fine("Failed to release license seat: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Heartbeat: renews the lease, or tries to get a seat back if it was lost.
+     * A server that is briefly unreachable does not cost the seat until the lease expires.
+     */
+    private void renewSeat() {
+        try {
+            String id = leaseId;
+            if (id != null) {
+                JsonObject response = GSON.fromJson(sendRequest("/api/leases/" + id + "/renew", "{}"),
+                        JsonObject.class);
+                if (response.get("renewed").getAsBoolean()) {
+                    return;
+                }
+                leaseId = null;
+            }
+            acquireSeat();
+        } catch (Exception e) {
+            LOGGER.warning("License seat heartbeat failed: " + e.getMessage());
+        }
     }
     
     /**
      * Checks if a specific feature is allowed based on the license tier.
      */
     public boolean isFeatureAllowed(String feature) {
-        if (status == null || !status.isValid()) {
-            return false;
-        }
-        return status.getTier() != null && status.getAllowedFeatures().contains(feature);
+        LicenseStatus current = status;
+        return current != null && current.isValid() && current.hasFeature(feature);
+    }
+    
+    /**
+     * Checks a feature by its ID in the product's feature registry.
+     */
+    public boolean isFeatureAllowed(int featureId) {
+        LicenseStatus current = status;
+        return current != null && current.isValid() && current.hasFeature(featureId);
+    }
+    
+    /**
+     * Gets the mask of features the license allows, or 0 if it is not valid.
+     * Injected feature gates test their bit in a copy of this mask.
+     */
+    public long getFeatureMask() {
+        LicenseStatus current = status;
+        return current != null && current.isValid() ? current.getFeatureMask() : 0;
     }
     
     /**
@@ -90,10 +447,38 @@ public class LicenseClient {
         return status;
     }
     
+    public LicenseConfig getConfig() {
+        return config;
+    }
+    
+    /**
+     * Gets the validation counters and latency histogram for this client.
+     */
+    public ClientMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Gets this machine's hardware ID, computed once per class loader and
+     * shared by every client it loaded.
+     */
+    private static String hardwareId() {
+        String id = hardwareId;
+        if (id == null) {
+            id = computeHardwareId();
+            hardwareId = id;
+        }
+        return id;
+    }
+    
     /**
      * Generates a unique hardware ID for this machine.
      */
-    private String getHardwareId() {
+    String getHardwareId() {
+        return computeHardwareId();
+    }
+    
+    private static String computeHardwareId() {
         try {
             StringBuilder sb = new StringBuilder();
             
@@ -131,6 +516,29 @@ public class LicenseClient {
         }
     }
     
+    /**
+     * Gets the hardware ID's raw bytes, or null if it could not be computed.
+     */
+    private static byte[] hardwareIdBytes() {
+        byte[] bytes = hardwareIdBytes;
+        if (bytes == null) {
+            bytes = BinaryProtocol.hwidBytes(hardwareId());
+            hardwareIdBytes = bytes;
+        }
+        return bytes;
+    }
+    
+    /**
+     * Gets the local address's raw bytes, or null if it is unknown.
+     */
+    private byte[] getIpAddressBytes() {
+        try {
+            return InetAddress.getLocalHost().getAddress();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+    
     /**
      * Gets the external IP address.
      */
@@ -143,14 +551,135 @@ public class LicenseClient {
     }
     
     /**
-     * Sends an HTTP POST request to the licensing server.
+     * Sends an HTTP POST request to the best licensing server available.
      */
     private String sendRequest(String endpoint, String jsonBody) throws IOException {
-        URL url = new URL(serverUrl + endpoint);
+        List<ServerEndpoints.Endpoint> route = endpoints.route();
+        if (route.isEmpty()) {
+            throw new IOException("No license server available");
+        }
+        return new String(sendRequest(route, endpoint, jsonBody.getBytes(StandardCharsets.UTF_8), JSON),
+                StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Tries each server of the route in turn until one answers.
+     */
+    private byte[] sendRequest(List<ServerEndpoints.Endpoint> route, String endpoint, byte[] body,
+                               String contentType) throws IOException {
+        IOException failure = null;
+        for (ServerEndpoints.Endpoint server : route) {
+            try {
+                return sendRequest(server, endpoint, body, contentType);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        throw failure;
+    }
+    
+    /**
+     * Sends a request to the first server of the route and, if it has not
+     * answered within the hedge delay, to the next one too, taking the first
+     * response. A failed server is replaced by the next at once. Slower
+     * requests still run to completion so their latency is recorded.
+     */
+    private byte[] sendHedged(List<ServerEndpoints.Endpoint> route, String endpoint, byte[] body,
+                              String contentType) throws IOException {
+        CompletionService<byte[]> responses = new ExecutorCompletionService<>(hedgeExecutor());
+        int sent = 0;
+        int pending = 0;
+        boolean hedged = false;
+        IOException failure = null;
+        while (true) {
+            if (pending == 0) {
+                if (sent == route.size()) {
+                    throw failure;
+                }
+                ServerEndpoints.Endpoint server = route.get(sent++);
+                responses.submit(() -> sendRequest(server, endpoint, body, contentType));
+                pending++;
+            }
+            
+            Future<byte[]> done;
+            try {
+                if (!hedged && sent < route.size()) {
+                    long delay = Math.max(config.getHedgeDelay(),
+                            2 * (long) route.get(sent - 1).latencyNanos() / 1_000_000);
+                    done = responses.poll(delay, TimeUnit.MILLISECONDS);
+                    if (done == null) {
+                        // Slow to answer: ask the next server as well
+                        ServerEndpoints.Endpoint server = route.get(sent++);
+                        responses.submit(() -> sendRequest(server, endpoint, body, contentType));
+                        pending++;
+                        hedged = true;
+                        metrics.recordHedgedRequest();
+                        continue;
+                    }
+                } else {
+                    done = responses.take();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the license server", e);
+            }
+            
+            pending--;
+            try {
+                return done.get();
+            } catch (ExecutionException e) {
+                failure = e.getCause() instanceof IOException
+                        ? (IOException) e.getCause() : new IOException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the license server", e);
+            }
+        }
+    }
+    
+    /**
+     * Sends a request to one server, recording its latency and outcome.
+     */
+    private byte[] sendRequest(ServerEndpoints.Endpoint server, String endpoint, byte[] body, String contentType)
+            throws IOException {
+        long start = System.nanoTime();
+        boolean answered = false;
+        try {
+            byte[] response = sendRequest(new URL(server.url + endpoint), body, contentType, MAX_REDIRECTS);
+            answered = true;
+            server.recordSuccess(System.nanoTime() - start);
+            return response;
+        } finally {
+            // Any failure, not only I/O, must report back or a half-open breaker would wait for its probe
+            if (!answered) {
+                server.recordFailure();
+            }
+        }
+    }
+    
+    private ExecutorService hedgeExecutor() {
+        ExecutorService executor = hedgeExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = hedgeExecutor;
+                if (executor == null) {
+                    executor = Executors.newCachedThreadPool(runnable -> {
+                        Thread thread = new Thread(runnable, "license-hedged-request");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    hedgeExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+    
+    private byte[] sendRequest(URL url, byte[] body, String contentType, int redirectsLeft) throws IOException {
         HttpURLConnection conn = (HttpURLConnection) url.openConnection();
         
         conn.setRequestMethod("POST");
-        conn.setRequestProperty("Content-Type", "application/json");
+        conn.setRequestProperty("Content-Type", contentType);
         conn.setRequestProperty("User-Agent", "LicenseClient/1.0");
         conn.setDoOutput(true);
         conn.setConnectTimeout(config.getConnectionTimeout());
@@ -158,23 +687,25 @@ public class LicenseClient {
         
         // Write request body
         try (OutputStream os = conn.getOutputStream()) {
-            os.write(jsonBody.getBytes(StandardCharsets.UTF_8));
+            os.write(body);
         }
         
         // Read response
         int responseCode = conn.getResponseCode();
+        
+        // Cluster followers redirect writes to the leader; HttpURLConnection won't re-POST on its own
+        String location = conn.getHeaderField("Location");
+        if ((responseCode == 307 || responseCode == 308) && location != null && redirectsLeft > 0) {
+            conn.disconnect();
+            return sendRequest(new URL(url, location), body, contentType, redirectsLeft - 1);
+        }
+        
         if (responseCode != 200) {
             throw new IOException("Server returned error: " + responseCode);
         }
         
-        try (BufferedReader br = new BufferedReader(
-                new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
-            StringBuilder response = new StringBuilder();
-            String line;
-            while ((line = br.readLine()) != null) {
-                response.append(line);
-            }
-            return response.toString();
+        try (InputStream in = conn.getInputStream()) {
+            return in.readAllBytes();
         }
     }
     
@@ -185,7 +716,10 @@ public class LicenseClient {
         if (status == null) {
             return false;
         }
-        long cacheAge = System.currentTimeMillis() - lastCheckTime;
-        return cacheAge < config.getCacheDuration();
+        long cacheAge = clock.getAsLong() - lastCheckTime;
+        long cacheDuration = revocations != null && revocations.isConnected()
+                ? Math.max(config.getCacheDuration(), config.getPushCacheDuration())
+                : config.getCacheDuration();
+        return cacheAge < cacheDuration;
     }
 }
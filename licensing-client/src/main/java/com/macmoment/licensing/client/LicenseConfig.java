@@ -10,6 +10,16 @@ public class LicenseConfig {
     private int connectionTimeout = 5000; // 5 seconds
     private int readTimeout = 10000; // 10 seconds
     private FailureMode failureMode = FailureMode.DENY_ON_ERROR;
+    private boolean jmxEnabled = true;
+    private boolean pushEnabled = false;
+    private long pushCacheDuration = 86400000; // 24 hours while the revocation channel is connected
+    private boolean seatLeasingEnabled = false;
+    private int breakerFailureThreshold = 3;
+    private long breakerBaseBackoff = 1000; // 1 second
+    private long breakerMaxBackoff = 300000; // 5 minutes
+    private boolean hedgingEnabled = true;
+    private long hedgeDelay = 100; // milliseconds
+    private boolean binaryProtocolEnabled = false;
     
     public boolean isCacheEnabled() {
         return cacheEnabled;
@@ -51,6 +61,118 @@ public class LicenseConfig {
         this.failureMode = failureMode;
     }
     
+    public boolean isJmxEnabled() {
+        return jmxEnabled;
+    }
+    
+    public void setJmxEnabled(boolean jmxEnabled) {
+        this.jmxEnabled = jmxEnabled;
+    }
+    
+    public boolean isPushEnabled() {
+        return pushEnabled;
+    }
+    
+    /**
+     * Subscribes to the server's revocation channel so revocations take effect
+     * immediately instead of when the cache expires.
+     */
+    public void setPushEnabled(boolean pushEnabled) {
+        this.pushEnabled = pushEnabled;
+    }
+    
+    public long getPushCacheDuration() {
+        return pushCacheDuration;
+    }
+    
+    /**
+     * Sets how long a cached status is trusted while the revocation channel is connected.
+     * {@link #getCacheDuration()} applies whenever it is not.
+     */
+    public void setPushCacheDuration(long pushCacheDuration) {
+        this.pushCacheDuration = pushCacheDuration;
+    }
+    
+    public boolean isSeatLeasingEnabled() {
+        return seatLeasingEnabled;
+    }
+    
+    /**
+     * Requires a seat lease (tier max users) in addition to a valid license.
+     * The server enforces max users at validation either way; a lease keeps
+     * the seat between validations.
+     */
+    public void setSeatLeasingEnabled(boolean seatLeasingEnabled) {
+        this.seatLeasingEnabled = seatLeasingEnabled;
+    }
+    
+    public int getBreakerFailureThreshold() {
+        return breakerFailureThreshold;
+    }
+    
+    /**
+     * Sets how many consecutive failed requests open the circuit breaker, after
+     * which the server is not contacted until a backoff has passed.
+     */
+    public void setBreakerFailureThreshold(int breakerFailureThreshold) {
+        this.breakerFailureThreshold = breakerFailureThreshold;
+    }
+    
+    public long getBreakerBaseBackoff() {
+        return breakerBaseBackoff;
+    }
+    
+    /**
+     * Sets the ceiling of the first backoff; it doubles each time a probe fails.
+     */
+    public void setBreakerBaseBackoff(long breakerBaseBackoff) {
+        this.breakerBaseBackoff = breakerBaseBackoff;
+    }
+    
+    public long getBreakerMaxBackoff() {
+        return breakerMaxBackoff;
+    }
+    
+    public void setBreakerMaxBackoff(long breakerMaxBackoff) {
+        this.breakerMaxBackoff = breakerMaxBackoff;
+    }
+    
+    public boolean isHedgingEnabled() {
+        return hedgingEnabled;
+    }
+    
+    /**
+     * With several servers, sends a validation to the next best server as well
+     * when the first is slow to answer, and takes whichever response comes first.
+     */
+    public void setHedgingEnabled(boolean hedgingEnabled) {
+        this.hedgingEnabled = hedgingEnabled;
+    }
+    
+    public long getHedgeDelay() {
+        return hedgeDelay;
+    }
+    
+    /**
+     * Sets the least time to wait for a server before hedging; the wait is at
+     * least twice the server's average latency.
+     */
+    public void setHedgeDelay(long hedgeDelay) {
+        this.hedgeDelay = hedgeDelay;
+    }
+    
+    public boolean isBinaryProtocolEnabled() {
+        return binaryProtocolEnabled;
+    }
+    
+    /**
+     * Sends validations in the server's compact binary encoding instead of JSON.
+     * Needs a server that supports it.
+     */
+    public void setBinaryProtocolEnabled(boolean binaryProtocolEnabled) {
+        this.binaryProtocolEnabled = binaryProtocolEnabled;
+    }
+    
     public static LicenseConfig getDefault() {
         return new LicenseConfig();
     }
@@ -0,0 +1,139 @@
+package com.macmoment.licensing.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Entry point for the checks the injector adds to a plugin.
+ * Configured from the {@code license.properties} the injector writes into the
+ * plugin JAR. Only {@code onEnable()} calls {@link #validate()}, and only
+ * {@code onDisable()} calls {@link #shutdown()}; the checks in
+ * handlers and feature gates read {@link #mode} and {@link #features}, which
+ * each validation (and a background revalidation) updates, so they never
+ * wait on the server.
+ * <p>
+ * The license is registered with the JVM's shared {@link LicenseRuntime}, so
+ * all licensed plugins on a server share one hardware ID, one set of
+ * connections and one revalidation request. Set {@code shared.runtime=false}
+ * to give the plugin a runtime of its own. If the plugin that owns the shared
+ * runtime is disabled, the license is registered again with a new one.
+ */
+public final class LicenseManager {
+    
+    /** Licensed: everything runs. */
+    public static final int FULL = 0;
+    
+    /** Invalid under {@link FailureMode#LIMITED_MODE}: only methods gated as limited run. */
+    public static final int LIMITED = 1;
+    
+    /** Invalid: no gated method runs. */
+    public static final int DISABLED = 2;
+    
+    private static final Logger LOGGER = Logger.getLogger("LicenseClient");
+    
+    /** Current mode, read by injected handler checks. */
+    public static volatile int mode = DISABLED;
+    
+    /** Feature mask of the last validation, read by injected feature gates. */
+    public static volatile long features;
+    
+    private static final Properties props = new Properties();
+    private static final FailureMode failureMode;
+    private static final boolean shared;
+    private static volatile BooleanSupplier validator;
+    
+    static {
+        try (InputStream in = LicenseManager.class.getResourceAsStream("/license.properties")) {
+            if (in != null) {
+                props.load(in);
+            }
+        } catch (IOException e) {
+            LOGGER.warning("Failed to read license.properties: " + e.getMessage());
+        }
+        
+        failureMode = FailureMode.valueOf(props.getProperty("failure.mode", FailureMode.DENY_ON_ERROR.name()));
+        shared = Boolean.parseBoolean(props.getProperty("shared.runtime", "true"));
+        if (props.getProperty("server.url") != null) {
+            validator = register();
+        } else {
+            LOGGER.warning("No license.properties; licensed functionality is disabled");
+        }
+    }
+    
+    private LicenseManager() {
+    }
+    
+    /**
+     * Validates the license and switches the mode to match. From then on the
+     * runtime revalidates in the background whenever the cached status expires.
+     * @return true if the license is valid
+     */
+    public static boolean validate() {
+        BooleanSupplier current = validator;
+        if (current == null && props.getProperty("server.url") != null) {
+            // Enabled again after shutdown()
+            synchronized (LicenseManager.class) {
+                if (validator == null) {
+                    validator = register();
+                }
+                current = validator;
+            }
+        }
+        if (current == null) {
+            update(false, 0L);
+            return false;
+        }
+        return current.getAsBoolean();
+    }
+    
+    /**
+     * Unregisters the license, so the runtime's refresh no longer holds on
+     * to this plugin. If this plugin owns the shared runtime, the runtime
+     * stops and the other plugins move to a new one.
+     */
+    public static synchronized void shutdown() {
+        BooleanSupplier current = validator;
+        validator = null;
+        if (current instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) current).close();
+            } catch (Exception e) {
+                LOGGER.warning("Failed to unregister the license: " + e.getMessage());
+            }
+        }
+    }
+    
+    private static BooleanSupplier register() {
+        if (!shared) {
+            return new LicenseRuntime().apply(props, LicenseManager::update);
+        }
+        try {
+            return LicenseRuntime.shared().apply(props, LicenseManager::update);
+        } catch (IllegalStateException e) {
+            // The runtime shut down as we registered; the next one is published by now or by us
+            return LicenseRuntime.shared().apply(props, LicenseManager::update);
+        }
+    }
+    
+    /**
+     * Takes the outcome of a validation, from this plugin or the runtime's
+     * refresh, or (null, null) when the runtime this license is registered
+     * with has shut down.
+     */
+    private static void update(Boolean valid, Long featureMask) {
+        if (valid == null) {
+            synchronized (LicenseManager.class) {
+                if (validator != null) {
+                    validator = register();
+                }
+            }
+            return;
+        }
+        // Features first, so a gate never sees the new mode with the old mask
+        features = valid ? featureMask : 0;
+        mode = valid ? FULL : failureMode == FailureMode.LIMITED_MODE ? LIMITED : DISABLED;
+    }
+}
@@ -0,0 +1,248 @@
+package com.macmoment.licensing.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Licensing shared by every licensed plugin in a JVM: one set of server
+ * endpoints (breakers, latency figures, connections) per server list, one
+ * hardware ID, and one scheduler that revalidates all registered licenses
+ * of a server list in a single batch request.
+ * <p>
+ * Each plugin bundles its own copy of the client, loaded by its own class
+ * loader, so plugins cannot share these classes. The first plugin to start
+ * publishes its runtime in the system properties as a
+ * {@code BiFunction<Properties, BiConsumer<Boolean, Long>, BooleanSupplier>}
+ * and the others register through that JDK interface: they pass their
+ * {@code license.properties} and a listener for (valid, feature mask), and get
+ * back the call that validates their license now. That call is also an
+ * {@link AutoCloseable} that unregisters the license.
+ * <p>
+ * The runtime belongs to the plugin that published it, as its classes do.
+ * When that plugin unregisters, the runtime stops, removes itself from the
+ * system properties and tells the remaining plugins with a (null, null)
+ * update, so they register again and the next of them publishes a runtime
+ * of its own.
+ */
+final class LicenseRuntime implements BiFunction<Properties, BiConsumer<Boolean, Long>, BooleanSupplier> {
+
+    /** System property holding the shared runtime; versioned with the registration contract. */
+    static final String PROPERTY = "com.macmoment.licensing.runtime.v2";
+
+    private static final Logger LOGGER = Logger.getLogger("LicenseClient");
+    private static final long REFRESH_INTERVAL_MILLIS = 60000;
+
+    private final Map<String, Group> groups = new ConcurrentHashMap<>();
+    private final Random random = new Random();
+    private ScheduledExecutorService refresh;
+    private Registration owner;
+    private boolean closed;
+
+    /**
+     * Gets the JVM's shared runtime, publishing this class loader's if there is none yet.
+     */
+    @SuppressWarnings("unchecked")
+    static BiFunction<Properties, BiConsumer<Boolean, Long>, BooleanSupplier> shared() {
+        Properties system = System.getProperties();
+        Object runtime = system.get(PROPERTY);
+        if (runtime == null) {
+            LicenseRuntime created = new LicenseRuntime();
+            runtime = system.putIfAbsent(PROPERTY, created);
+            if (runtime == null) {
+                return created;
+            }
+        }
+        return (BiFunction<Properties, BiConsumer<Boolean, Long>, BooleanSupplier>) runtime;
+    }
+
+    /**
+     * Registers a plugin's license. The listener is told the outcome of every
+     * validation, including background ones, and is passed (null, null) if
+     * the runtime shuts down.
+     * @return validates the license now and returns whether it is valid;
+     *         closing it unregisters the license
+     * @throws IllegalStateException if the runtime has shut down
+     */
+    @Override
+    public BooleanSupplier apply(Properties props, BiConsumer<Boolean, Long> listener) {
+        LicenseConfig config = new LicenseConfig();
+        config.setFailureMode(FailureMode.valueOf(props.getProperty("failure.mode",
+                FailureMode.DENY_ON_ERROR.name())));
+        config.setBinaryProtocolEnabled(Boolean.parseBoolean(props.getProperty("binary.protocol", "false")));
+        String productId = props.getProperty("product.id");
+
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("License runtime has shut down");
+            }
+            // server.url may list several servers, comma-separated
+            String servers = props.getProperty("server.url");
+            Group group = groups.get(servers);
+            if (group == null) {
+                group = new Group(productId, config, new ServerEndpoints(Arrays.asList(servers.split(",")),
+                        config, System::currentTimeMillis, random));
+                groups.put(servers, group);
+            } else if (config.getFailureMode() != group.config.getFailureMode()
+                    || config.isBinaryProtocolEnabled() != group.config.isBinaryProtocolEnabled()) {
+                LOGGER.warning("License registration of " + productId + " (failure.mode="
+                        + config.getFailureMode() + ", binary.protocol=" + config.isBinaryProtocolEnabled()
+                        + ") shares the connections to " + servers + " set up for " + group.productId
+                        + " (failure.mode=" + group.config.getFailureMode() + ", binary.protocol="
+                        + group.config.isBinaryProtocolEnabled() + ")");
+            }
+            LicenseClient client = new LicenseClient(group.endpoints, productId,
+                    props.getProperty("license.key", ""), config, System::currentTimeMillis);
+            Registration registration = new Registration(productId, client, listener);
+            group.registrations.add(registration);
+            if (owner == null) {
+                owner = registration;
+            }
+            startRefresh();
+            return registration;
+        }
+    }
+
+    private synchronized void startRefresh() {
+        if (refresh != null) {
+            return;
+        }
+        refresh = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "license-runtime-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresh.scheduleWithFixedDelay(this::refreshAll, REFRESH_INTERVAL_MILLIS, REFRESH_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Revalidates, per server list, every license whose cached status has
+     * expired in one request, and tells each plugin the outcome.
+     */
+    private void refreshAll() {
+        for (Group group : groups.values()) {
+            try {
+                List<Registration> registrations = new ArrayList<>(group.registrations);
+                List<LicenseClient> clients = new ArrayList<>(registrations.size());
+                for (Registration registration : registrations) {
+                    clients.add(registration.client);
+                }
+                boolean[] valid = LicenseClient.validateBatch(clients);
+                for (int i = 0; i < registrations.size(); i++) {
+                    registrations.get(i).publish(valid[i]);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.warning("License revalidation failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Drops a registration, such as one whose plugin was disabled or can no
+     * longer take updates. Once the owner's registration or the last one is
+     * dropped, the runtime shuts down.
+     */
+    private void unregister(Registration registration) {
+        List<Registration> remaining = new ArrayList<>();
+        List<ServerEndpoints> endpoints = new ArrayList<>();
+        boolean shutdown;
+        synchronized (this) {
+            boolean removed = false;
+            for (Group group : groups.values()) {
+                removed |= group.registrations.remove(registration);
+                remaining.addAll(group.registrations);
+            }
+            if (!removed) {
+                return;
+            }
+            shutdown = registration == owner || remaining.isEmpty();
+            if (shutdown) {
+                closed = true;
+                System.getProperties().remove(PROPERTY, this);
+                if (refresh != null) {
+                    refresh.shutdownNow();
+                }
+                for (Group group : groups.values()) {
+                    endpoints.add(group.endpoints);
+                }
+                groups.clear();
+            }
+        }
+
+        // Seats are released over the network, so outside the lock
+        registration.client.close();
+        if (!shutdown) {
+            return;
+        }
+        for (ServerEndpoints endpoint : endpoints) {
+            endpoint.close();
+        }
+        // The other plugins register again, with a runtime of their own
+        for (Registration other : remaining) {
+            other.client.close();
+            try {
+                other.listener.accept(null, null);
+            } catch (RuntimeException | LinkageError e) {
+                LOGGER.warning("License registration of " + other.productId + " did not move: " + e);
+            }
+        }
+    }
+
+    private static final class Group {
+        private final String productId;
+        private final LicenseConfig config;
+        private final ServerEndpoints endpoints;
+        private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+
+        private Group(String productId, LicenseConfig config, ServerEndpoints endpoints) {
+            this.productId = productId;
+            this.config = config;
+            this.endpoints = endpoints;
+        }
+    }
+
+    private final class Registration implements BooleanSupplier, AutoCloseable {
+        private final String productId;
+        private final LicenseClient client;
+        private final BiConsumer<Boolean, Long> listener;
+
+        private Registration(String productId, LicenseClient client, BiConsumer<Boolean, Long> listener) {
+            this.productId = productId;
+            this.client = client;
+            this.listener = listener;
+        }
+
+        @Override
+        public boolean getAsBoolean() {
+            return publish(client.validate());
+        }
+
+        @Override
+        public void close() {
+            unregister(this);
+        }
+
+        private boolean publish(boolean valid) {
+            try {
+                listener.accept(valid, valid ? client.getFeatureMask() : 0L);
+            } catch (RuntimeException | LinkageError e) {
+                LOGGER.warning("Dropping license registration of " + productId + ": " + e);
+                unregister(this);
+            }
+            return valid;
+        }
+    }
+}
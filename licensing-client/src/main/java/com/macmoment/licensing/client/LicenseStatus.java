@@ -2,6 +2,7 @@ package com.macmoment.licensing.client;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents the status of a license validation.
@@ -13,6 +14,8 @@ public class LicenseStatus {
     private String tier;
     private long expiryTime;
     private List<String> allowedFeatures;
+    private long featureMask;
+    private Map<String, Integer> featureIds;
     private int maxUsers;
     
     public LicenseStatus() {
@@ -59,6 +62,47 @@ public class LicenseStatus {
         this.allowedFeatures = allowedFeatures;
     }
     
+    /**
+     * Bit {@code n} is set if the tier includes the feature with ID {@code n}.
+     */
+    public long getFeatureMask() {
+        return featureMask;
+    }
+    
+    public void setFeatureMask(long featureMask) {
+        this.featureMask = featureMask;
+    }
+    
+    /**
+     * Feature names of the tier mapped to their IDs, or null if the server did not send them.
+     */
+    public Map<String, Integer> getFeatureIds() {
+        return featureIds;
+    }
+    
+    public void setFeatureIds(Map<String, Integer> featureIds) {
+        this.featureIds = featureIds;
+    }
+    
+    /**
+     * Whether the tier includes a feature, by ID.
+     */
+    public boolean hasFeature(int featureId) {
+        return featureId >= 0 && featureId < Long.SIZE && (featureMask & (1L << featureId)) != 0;
+    }
+    
+    /**
+     * Whether the tier includes a feature, by name.
+     */
+    public boolean hasFeature(String feature) {
+        if (featureIds == null) {
+            // Servers without feature IDs only send the names
+            return getAllowedFeatures().contains(feature);
+        }
+        Integer id = featureIds.get(feature);
+        return id != null && hasFeature(id);
+    }
+    
     public int getMaxUsers() {
         return maxUsers;
     }
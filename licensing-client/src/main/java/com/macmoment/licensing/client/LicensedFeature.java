@@ -0,0 +1,22 @@
+package com.macmoment.licensing.client;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a plugin method as part of a licensed feature.
+ * The injector gates the method so it returns immediately (with a default
+ * value) unless the license tier includes the feature. The gate tests one
+ * bit of the feature mask, with the feature's ID resolved at injection time.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface LicensedFeature {
+    
+    /**
+     * Feature name, as listed in the tier's features.
+     */
+    String value();
+}
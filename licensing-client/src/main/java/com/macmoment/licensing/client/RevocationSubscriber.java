@@ -0,0 +1,172 @@
+package com.macmoment.licensing.client;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Keeps one idle WebSocket open to the server's revocation channel and
+ * invalidates the client's cached status whenever the server pushes a change
+ * for this license. Reconnects with exponential backoff, each time to the
+ * best server available then; every (re)connect also invalidates, since
+ * events may have been missed while disconnected.
+ */
+class RevocationSubscriber implements WebSocket.Listener {
+    
+    private static final Logger LOGGER = Logger.getLogger("LicenseClient");
+    private static final long PING_INTERVAL_SECONDS = 60;
+    private static final long MIN_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 60000;
+    
+    private final Supplier<String> serverUrl;
+    private final String query;
+    private final Runnable onInvalidate;
+    private final ClientMetrics metrics;
+    private final HttpClient httpClient;
+    private final ScheduledExecutorService scheduler;
+    private final StringBuilder partial = new StringBuilder();
+    
+    private volatile WebSocket webSocket;
+    private volatile boolean connected;
+    private volatile boolean closed;
+    private long backoffMillis = MIN_BACKOFF_MILLIS;
+    
+    /**
+     * @param serverUrl picks the server to connect to, asked again on every reconnect
+     */
+    RevocationSubscriber(Supplier<String> serverUrl, String licenseKey, int connectTimeoutMillis,
+                         Runnable onInvalidate, ClientMetrics metrics) {
+        this.serverUrl = serverUrl;
+        this.query = "/api/revocations?licenseKey=" + URLEncoder.encode(licenseKey, StandardCharsets.UTF_8);
+        this.onInvalidate = onInvalidate;
+        this.metrics = metrics;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .build();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "license-revocation-subscriber");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    void start() {
+        scheduler.execute(this::connect);
+        scheduler.scheduleAtFixedRate(this::ping, PING_INTERVAL_SECONDS, PING_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Whether revocations are currently being pushed to this client.
+     */
+    boolean isConnected() {
+        return connected;
+    }
+    
+    private void connect() {
+        if (closed) {
+            return;
+        }
+        URI uri = URI.create(serverUrl.get().replaceFirst("^http", "ws") + query);
+        httpClient.newWebSocketBuilder()
+                .buildAsync(uri, this)
+                .whenComplete((ws, error) -> {
+                    if (error != null) {
+                        onScheduler(() -> scheduleReconnect(error.getMessage()));
+                    }
+                });
+    }
+    
+    private void scheduleReconnect(String reason) {
+        boolean wasConnected = connected;
+        connected = false;
+        if (closed) {
+            return;
+        }
+        if (wasConnected) {
+            LOGGER.warning("Revocation channel lost (" + reason + "); cached statuses expire after the "
+                    + "normal cache duration until it reconnects");
+        }
+        LOGGER.fine("Revocation channel disconnected (" + reason + "), retrying in " + backoffMillis + "ms");
+        scheduler.schedule(this::connect, backoffMillis, TimeUnit.MILLISECONDS);
+        backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+    }
+    
+    private void ping() {
+        WebSocket ws = webSocket;
+        if (ws != null && connected) {
+            ws.sendPing(ByteBuffer.allocate(0));
+        }
+    }
+    
+    @Override
+    public void onOpen(WebSocket ws) {
+        webSocket = ws;
+        connected = true;
+        onScheduler(() -> backoffMillis = MIN_BACKOFF_MILLIS);
+        onInvalidate.run();
+        ws.request(1);
+    }
+    
+    @Override
+    public CompletionStage<?> onText(WebSocket ws, CharSequence data, boolean last) {
+        partial.append(data);
+        if (last) {
+            String message = partial.toString();
+            partial.setLength(0);
+            try {
+                JsonObject event = JsonParser.parseString(message).getAsJsonObject();
+                LOGGER.fine("License event received: " + event.get("type").getAsString());
+                metrics.recordPushInvalidation();
+                onInvalidate.run();
+            } catch (RuntimeException e) {
+                LOGGER.warning("Ignoring malformed revocation event: " + e.getMessage());
+            }
+        }
+        ws.request(1);
+        return null;
+    }
+    
+    @Override
+    public CompletionStage<?> onClose(WebSocket ws, int statusCode, String reason) {
+        onScheduler(() -> scheduleReconnect("closed " + statusCode));
+        return null;
+    }
+    
+    @Override
+    public void onError(WebSocket ws, Throwable error) {
+        onScheduler(() -> scheduleReconnect(error.getMessage()));
+    }
+    
+    // Backoff state is only touched on the scheduler thread
+    private void onScheduler(Runnable task) {
+        try {
+            scheduler.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Closed
+        }
+    }
+    
+    void close() {
+        closed = true;
+        connected = false;
+        WebSocket ws = webSocket;
+        if (ws != null) {
+            ws.sendClose(WebSocket.NORMAL_CLOSURE, "");
+        }
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,222 @@
+package com.macmoment.licensing.client;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * The license servers a {@link LicenseClient} may use, each with its own
+ * circuit breaker, an EWMA of its response time and a health score (a
+ * decaying success ratio). Requests are routed to the healthy endpoint with
+ * the lowest latency relative to its health; endpoints that are not answering
+ * are skipped until their breaker lets a probe through. While another endpoint
+ * is healthy, that probe is a health check sent in the background, so a
+ * recovered server is taken back without delaying any request.
+ */
+class ServerEndpoints {
+
+    /** Weight of the newest sample in the latency EWMA and the health score. */
+    private static final double ALPHA = 0.2;
+
+    private final List<Endpoint> endpoints;
+    private final int connectTimeout;
+    private final int readTimeout;
+    private volatile ExecutorService prober;
+
+    ServerEndpoints(List<String> urls, LicenseConfig config, LongSupplier clock, Random random) {
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("No license server URL");
+        }
+        List<Endpoint> list = new ArrayList<>();
+        for (String url : urls) {
+            list.add(new Endpoint(url.trim(), new CircuitBreaker(config.getBreakerFailureThreshold(),
+                    config.getBreakerBaseBackoff(), config.getBreakerMaxBackoff(),
+                    config.getConnectionTimeout() + config.getReadTimeout(), clock, random)));
+        }
+        this.endpoints = Collections.unmodifiableList(list);
+        this.connectTimeout = config.getConnectionTimeout();
+        this.readTimeout = config.getReadTimeout();
+    }
+
+    /**
+     * The endpoint {@link #route()} would try first, without asking any breaker
+     * for a probe: the best closed endpoint, or the first configured one if
+     * none is closed. Used for long-lived connections such as the revocation channel.
+     */
+    Endpoint best() {
+        Endpoint best = null;
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.breaker.getState() == CircuitBreaker.State.CLOSED
+                    && (best == null || endpoint.score() < best.score())) {
+                best = endpoint;
+            }
+        }
+        return best != null ? best : endpoints.get(0);
+    }
+
+    /**
+     * Returns the endpoints to try, best first: every endpoint whose breaker is
+     * closed, ranked by latency over health. If none is closed, the one endpoint
+     * whose breaker grants a probe, and if none does, nothing. Open endpoints
+     * whose breaker grants a probe while others are closed are health-checked
+     * in the background.
+     */
+    List<Endpoint> route() {
+        List<Endpoint> closed = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.breaker.getState() == CircuitBreaker.State.CLOSED) {
+                closed.add(endpoint);
+            }
+        }
+        if (!closed.isEmpty()) {
+            if (closed.size() < endpoints.size()) {
+                for (Endpoint endpoint : endpoints) {
+                    if (!closed.contains(endpoint) && endpoint.breaker.allowRequest()) {
+                        probe(endpoint);
+                    }
+                }
+            }
+            closed.sort(Comparator.comparingDouble(Endpoint::score));
+            return closed;
+        }
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.breaker.allowRequest()) {
+                return Collections.singletonList(endpoint);
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Asks an endpoint's health check whether it is back, on a background
+     * thread, and reports the outcome to its breaker.
+     */
+    private void probe(Endpoint endpoint) {
+        prober().execute(() -> {
+            boolean healthy = false;
+            try {
+                HttpURLConnection conn = (HttpURLConnection) new URL(endpoint.url + "/api/health").openConnection();
+                conn.setConnectTimeout(connectTimeout);
+                conn.setReadTimeout(readTimeout);
+                healthy = conn.getResponseCode() == 200;
+                conn.disconnect();
+            } catch (IOException | RuntimeException e) {
+                // Reported as a failed probe below
+            } finally {
+                endpoint.recordProbe(healthy);
+            }
+        });
+    }
+    
+    private ExecutorService prober() {
+        ExecutorService executor = prober;
+        if (executor == null) {
+            synchronized (this) {
+                executor = prober;
+                if (executor == null) {
+                    executor = Executors.newSingleThreadExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "license-server-probe");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    prober = executor;
+                }
+            }
+        }
+        return executor;
+    }
+    
+    /**
+     * Describes every endpoint's breaker state, latency and health.
+     */
+    String describe() {
+        return endpoints.stream().map(Endpoint::toString).collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Breaker state of every endpoint; just the state when there is one endpoint.
+     */
+    String breakerStates() {
+        if (endpoints.size() == 1) {
+            return endpoints.get(0).breaker.getState().name();
+        }
+        return endpoints.stream().map(endpoint -> endpoint.url + "=" + endpoint.breaker.getState())
+                .collect(Collectors.joining(","));
+    }
+
+    /**
+     * Stops the health-check thread, if one was started.
+     */
+    synchronized void close() {
+        if (prober != null) {
+            prober.shutdownNow();
+            prober = null;
+        }
+    }
+
+    static final class Endpoint {
+        final String url;
+        final CircuitBreaker breaker;
+
+        private volatile double latencyNanos;
+        private volatile double health = 1.0;
+
+        private Endpoint(String url, CircuitBreaker breaker) {
+            this.url = url;
+            this.breaker = breaker;
+        }
+
+        synchronized void recordSuccess(long latency) {
+            latencyNanos = latencyNanos == 0 ? latency : latencyNanos + ALPHA * (latency - latencyNanos);
+            health += ALPHA * (1.0 - health);
+            breaker.recordSuccess();
+        }
+
+        synchronized void recordFailure() {
+            health -= ALPHA * health;
+            breaker.recordFailure();
+        }
+        
+        /**
+         * Records a background health check. Its latency says nothing about
+         * validations, so only health and the breaker are updated.
+         */
+        synchronized void recordProbe(boolean healthy) {
+            if (healthy) {
+                health += ALPHA * (1.0 - health);
+                breaker.recordSuccess();
+            } else {
+                recordFailure();
+            }
+        }
+
+        /**
+         * Latency EWMA in nanoseconds; zero until the first response.
+         */
+        double latencyNanos() {
+            return latencyNanos;
+        }
+
+        /**
+         * Lower is better. Endpoints without a sample yet rank first so they get measured.
+         */
+        private double score() {
+            return latencyNanos / Math.max(health, 0.01);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s[%s latency=%dus health=%.2f]", url, breaker.getState(),
+                    (long) latencyNanos / 1000, health);
+        }
+    }
+}
@@ -1,11 +1,23 @@
 package com.macmoment.licensing.injector;
 
+import com.macmoment.licensing.client.FailureMode;
+import com.macmoment.licensing.client.LicenseClient;
 import org.objectweb.asm.*;
 import org.objectweb.asm.commons.AdviceAdapter;
 
 import java.io.*;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
 import java.util.jar.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.*;
 
 /**
@@ -13,6 +25,14 @@ import java.util.zip.*;
  */
 public class BytecodePatcher {
     
+    private static final String CLIENT_PACKAGE = "com/macmoment/licensing/client/";
+    private static final String LICENSE_MANAGER = CLIENT_PACKAGE + "LicenseManager";
+    
+    // Gating table values
+    private static final String GATE_FULL = "full";
+    private static final String GATE_LIMITED = "limited";
+    private static final String GATE_FEATURE = "feature:";
+    
     private final InjectorConfig config;
     
     public BytecodePatcher(InjectorConfig config) {
@@ -26,6 +46,17 @@ public class BytecodePatcher {
         try (JarFile input = new JarFile(inputJar);
              JarOutputStream output = new JarOutputStream(new FileOutputStream(outputJar))) {
             
+            // Gate of every patched method, written into the JAR for auditing
+            Map<String, String> gates = new TreeMap<>();
+            
+            // Recomputed frames need the supertypes the plugin's classes use
+            ClassHierarchy hierarchy = metadata.getClassHierarchy();
+            if (config.isComputeFrames()) {
+                for (File library : config.getLibraries()) {
+                    hierarchy.indexJar(library);
+                }
+            }
+            
             // Copy all entries, patching the main class
             java.util.Enumeration<JarEntry> entries = input.entries();
             while (entries.hasMoreElements()) {
@@ -35,15 +66,24 @@ public class BytecodePatcher {
                 // Patch main class
                 if (name.equals(metadata.getMainClass().replace('.', '/') + ".class")) {
                     output.putNextEntry(new ZipEntry(name));
-                    byte[] patched = patchMainClass(input.getInputStream(entry));
+                    byte[] patched = patchMainClass(input.getInputStream(entry), hierarchy, gates);
                     output.write(patched);
                     output.closeEntry();
                 } else if (name.endsWith(".class") && shouldPatchClass(name, metadata)) {
                     // Patch command/listener classes
                     output.putNextEntry(new ZipEntry(name));
-                    byte[] patched = patchCommandOrListener(input.getInputStream(entry));
+                    byte[] patched = patchCommandOrListener(input.getInputStream(entry), hierarchy, gates);
                     output.write(patched);
                     output.closeEntry();
+                } else if (name.endsWith(".class") && isGated(name, metadata)) {
+                    // Gate @LicensedFeature methods only
+                    output.putNextEntry(new ZipEntry(name));
+                    byte[] patched = patchClass(input.getInputStream(entry), false, false, hierarchy, gates);
+                    output.write(patched);
+                    output.closeEntry();
+                } else if (name.startsWith(CLIENT_PACKAGE)) {
+                    // Replaced by the client bundled below
+                    continue;
                 } else if (!name.equals("META-INF/MANIFEST.MF")) {
                     // Copy other files as-is (except manifest, we'll recreate it)
                     output.putNextEntry(new ZipEntry(name));
@@ -57,6 +97,7 @@ public class BytecodePatcher {
             
             // Add license configuration
             addLicenseConfig(output);
+            addGatingTable(output, gates);
         }
     }
     
@@ -69,62 +110,162 @@ public class BytecodePatcher {
     }
     
     /**
-     * Patches the main class to add license validation in onEnable().
+     * Determines if a class has @LicensedFeature methods.
      */
-    private byte[] patchMainClass(InputStream classStream) throws IOException {
-        ClassReader reader = new ClassReader(classStream);
-        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
-        
-        ClassVisitor visitor = new ClassVisitor(Opcodes.ASM9, writer) {
-            @Override
-            public MethodVisitor visitMethod(int access, String name, String descriptor, 
-                                            String signature, String[] exceptions) {
-                MethodVisitor mv = super.visitMethod(access, name, descriptor, signature, exceptions);
-                
-                // Inject into onEnable() method
-                if (name.equals("onEnable") && descriptor.equals("()V")) {
-                    return new AdviceAdapter(Opcodes.ASM9, mv, access, name, descriptor) {
-                        @Override
-                        protected void onMethodEnter() {
-                            // Inject license check at the start of onEnable()
-                            injectLicenseCheck(this);
-                        }
-                    };
-                }
-                
-                return mv;
-            }
-        };
-        
-        reader.accept(visitor, ClassReader.EXPAND_FRAMES);
-        return writer.toByteArray();
+    private boolean isGated(String className, PluginMetadata metadata) {
+        return metadata.getGatedClasses().contains(className.replace('/', '.').replace(".class", ""));
+    }
+    
+    /**
+     * Patches the main class to add license validation in onEnable() and
+     * release the license in onDisable().
+     */
+    private byte[] patchMainClass(InputStream classStream, ClassHierarchy hierarchy,
+                                  Map<String, String> gates) throws IOException {
+        return patchClass(classStream, true, false, hierarchy, gates);
     }
     
     /**
      * Patches command/listener classes to add license checks.
      */
-    private byte[] patchCommandOrListener(InputStream classStream) throws IOException {
+    private byte[] patchCommandOrListener(InputStream classStream, ClassHierarchy hierarchy,
+                                          Map<String, String> gates) throws IOException {
+        return patchClass(classStream, false, true, hierarchy, gates);
+    }
+    
+    /**
+     * Adds license validation to onEnable() of the main class and its release to
+     * onDisable(), which is added if the class does not declare one, a mode check to the
+     * handlers of command/listener classes, and a feature gate to every method
+     * annotated {@code @LicensedFeature}. Each gate is recorded in the gating table.
+     * <p>
+     * The checks branch to a block appended after the method's code that returns
+     * the default value, so the original code keeps its stack map frames and only
+     * that block needs one: the method's entry frame. Frames are recomputed in
+     * full only if configured, resolving supertypes from the class hierarchy.
+     */
+    private byte[] patchClass(InputStream classStream, boolean mainClass, boolean listener,
+                              ClassHierarchy hierarchy, Map<String, String> gates) throws IOException {
         ClassReader reader = new ClassReader(classStream);
-        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+        ClassWriter writer;
+        if (config.isComputeFrames()) {
+            writer = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES) {
+                @Override
+                protected String getCommonSuperClass(String type1, String type2) {
+                    return hierarchy.getCommonSuperClass(type1, type2);
+                }
+            };
+        } else {
+            writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        }
+        // Classes before Java 6 have no stack map frames
+        boolean frames = !config.isComputeFrames() && reader.readUnsignedShort(6) >= Opcodes.V1_6;
+        String owner = reader.getClassName();
+        String className = owner.replace('/', '.');
         
         ClassVisitor visitor = new ClassVisitor(Opcodes.ASM9, writer) {
+            private String superName;
+            private boolean disables;
+            
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName,
+                              String[] interfaces) {
+                this.superName = superName;
+                super.visit(version, access, name, signature, superName, interfaces);
+            }
+            
             @Override
             public MethodVisitor visitMethod(int access, String name, String descriptor, 
                                             String signature, String[] exceptions) {
                 MethodVisitor mv = super.visitMethod(access, name, descriptor, signature, exceptions);
-                
+                if (name.startsWith("<")) {
+                    return mv;
+                }
+                String method = className + "." + name + descriptor;
+                boolean validates = mainClass && name.equals("onEnable") && descriptor.equals("()V");
+                boolean releases = mainClass && name.equals("onDisable") && descriptor.equals("()V");
+                disables |= releases;
                 // Inject into onCommand and event handlers
-                if (name.equals("onCommand") || name.startsWith("on")) {
-                    return new AdviceAdapter(Opcodes.ASM9, mv, access, name, descriptor) {
-                        @Override
-                        protected void onMethodEnter() {
+                boolean handler = listener && name.startsWith("on");
+                // Commands need a valid license; other handlers keep running in limited mode
+                boolean limitedAllowed = !name.equals("onCommand") && !name.equals("onTabComplete");
+                if (handler) {
+                    gates.put(method, limitedAllowed ? GATE_LIMITED : GATE_FULL);
+                }
+                
+                return new AdviceAdapter(Opcodes.ASM9, mv, access, name, descriptor) {
+                    private String feature;
+                    private Label denied;
+                    
+                    @Override
+                    public AnnotationVisitor visitAnnotation(String annotation, boolean visible) {
+                        AnnotationVisitor av = super.visitAnnotation(annotation, visible);
+                        if (!annotation.equals(PluginAnalyzer.LICENSED_FEATURE)) {
+                            return av;
+                        }
+                        return new AnnotationVisitor(Opcodes.ASM9, av) {
+                            @Override
+                            public void visit(String key, Object value) {
+                                feature = (String) value;
+                                gates.merge(method, GATE_FEATURE + feature,
+                                        (gate, featureGate) -> gate + "," + featureGate);
+                                super.visit(key, value);
+                            }
+                        };
+                    }
+                    
+                    @Override
+                    protected void onMethodEnter() {
+                        if (releases) {
+                            injectRelease(this);
+                        }
+                        Label check = new Label();
+                        boolean branches = false;
+                        if (validates) {
+                            branches = injectLicenseCheck(this, check);
+                        } else if (handler) {
                             // Check license before executing
-                            injectLicenseCheck(this);
+                            injectModeCheck(this, limitedAllowed, check);
+                            branches = true;
+                        }
+                        if (feature != null) {
+                            injectFeatureGate(this, feature, check);
+                            branches = true;
                         }
-                    };
+                        if (branches) {
+                            denied = check;
+                        }
+                    }
+                    
+                    @Override
+                    public void visitMaxs(int maxStack, int maxLocals) {
+                        if (denied != null) {
+                            visitLabel(denied);
+                            if (frames) {
+                                Object[] locals = entryLocals(owner, access, descriptor);
+                                visitFrame(Opcodes.F_NEW, locals.length, locals, 0, new Object[0]);
+                            }
+                            returnDefault(this, Type.getReturnType(descriptor));
+                        }
+                        super.visitMaxs(maxStack, maxLocals);
+                    }
+                };
+            }
+            
+            @Override
+            public void visitEnd() {
+                if (mainClass && !disables) {
+                    // public void onDisable() { LicenseManager.shutdown(); super.onDisable(); }
+                    MethodVisitor mv = super.visitMethod(Opcodes.ACC_PUBLIC, "onDisable", "()V", null, null);
+                    mv.visitCode();
+                    injectRelease(mv);
+                    mv.visitVarInsn(Opcodes.ALOAD, 0);
+                    mv.visitMethodInsn(Opcodes.INVOKESPECIAL, superName, "onDisable", "()V", false);
+                    mv.visitInsn(Opcodes.RETURN);
+                    mv.visitMaxs(1, 1);
+                    mv.visitEnd();
                 }
-                
-                return mv;
+                super.visitEnd();
             }
         };
         
@@ -133,89 +274,184 @@ public class BytecodePatcher {
     }
     
     /**
-     * Injects bytecode to check the license.
+     * Injects bytecode to check the license. Returns whether it branches to
+     * {@code denied}.
      */
-    private void injectLicenseCheck(MethodVisitor mv) {
-        // Load LicenseManager and call validate()
+    private boolean injectLicenseCheck(MethodVisitor mv, Label denied) {
+        // Load LicenseManager and call validate(), which also sets the mode handlers check
         // INVOKESTATIC com/macmoment/licensing/client/LicenseManager.validate()Z
-        // IFEQ <fail_label>
+        // IFEQ <denied>, unless the plugin may run in limited mode
         // ... continue normally
-        // <fail_label>:
-        // ... handle license failure based on config
         
         mv.visitMethodInsn(Opcodes.INVOKESTATIC,
-                "com/macmoment/licensing/client/LicenseManager",
+                LICENSE_MANAGER,
                 "validate",
                 "()Z",
                 false);
         
-        Label validLabel = new Label();
-        mv.visitJumpInsn(Opcodes.IFNE, validLabel);
-        
         // License is invalid - handle based on failure mode
-        if (config.getFailureMode() == com.macmoment.licensing.client.FailureMode.KICK_AND_DISABLE) {
-            // Throw exception or return early
-            mv.visitInsn(Opcodes.RETURN);
+        if (config.getFailureMode() == FailureMode.LIMITED_MODE) {
+            mv.visitInsn(Opcodes.POP);
+            return false;
         }
-        
-        mv.visitLabel(validLabel);
+        mv.visitJumpInsn(Opcodes.IFEQ, denied);
+        return true;
     }
     
     /**
-     * Adds the licensing client classes to the JAR.
+     * Injects the release of the license, so a disabled plugin no longer
+     * takes part in (or, for its owner, keeps running) the shared runtime.
      */
-    private void addLicensingClient(JarOutputStream output) throws IOException {
-        // In a real implementation, we would copy the pre-built licensing-client.jar
-        // For now, we'll add a placeholder LicenseManager class
-        
-        output.putNextEntry(new ZipEntry("com/macmoment/licensing/client/LicenseManager.class"));
-        byte[] managerClass = createLicenseManagerClass();
-        output.write(managerClass);
-        output.closeEntry();
+    private void injectRelease(MethodVisitor mv) {
+        // INVOKESTATIC com/macmoment/licensing/client/LicenseManager.shutdown()V
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC,
+                LICENSE_MANAGER,
+                "shutdown",
+                "()V",
+                false);
+    }
+    
+    /**
+     * Injects a check of the mode the last validation left, decided per method now:
+     * a handler allowed in limited mode runs unless the plugin is disabled, any
+     * other only in full mode. At run time it is one static field load and a compare.
+     */
+    private void injectModeCheck(MethodVisitor mv, boolean limitedAllowed, Label denied) {
+        mv.visitFieldInsn(Opcodes.GETSTATIC, LICENSE_MANAGER, "mode", "I");
+        if (limitedAllowed) {
+            // if (LicenseManager.mode >= DISABLED) return <default>;
+            mv.visitInsn(Opcodes.ICONST_2);
+            mv.visitJumpInsn(Opcodes.IF_ICMPGE, denied);
+        } else {
+            // if (LicenseManager.mode != FULL) return <default>;
+            mv.visitJumpInsn(Opcodes.IFNE, denied);
+        }
     }
     
     /**
-     * Creates a simple LicenseManager class.
+     * Injects a gate that returns a default value unless the license includes a feature.
+     * The feature's ID is resolved now, so at run time the gate is one static
+     * field load and a bit test.
      */
-    private byte[] createLicenseManagerClass() {
-        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
-        cw.visit(Opcodes.V11, Opcodes.ACC_PUBLIC, 
-                "com/macmoment/licensing/client/LicenseManager", null, 
-                "java/lang/Object", null);
+    private void injectFeatureGate(MethodVisitor mv, String feature, Label denied) {
+        Integer featureId = config.getFeatureIds().get(feature);
+        if (featureId == null) {
+            throw new IllegalArgumentException("No ID for licensed feature: " + feature);
+        }
         
-        // Static client field
-        FieldVisitor fv = cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC,
-                "client", "Lcom/macmoment/licensing/client/LicenseClient;", null, null);
-        fv.visitEnd();
+        // if ((LicenseManager.features & (1L << id)) == 0) return <default>;
+        mv.visitFieldInsn(Opcodes.GETSTATIC, LICENSE_MANAGER, "features", "J");
+        mv.visitLdcInsn(1L << featureId);
+        mv.visitInsn(Opcodes.LAND);
+        mv.visitInsn(Opcodes.LCONST_0);
+        mv.visitInsn(Opcodes.LCMP);
+        mv.visitJumpInsn(Opcodes.IFEQ, denied);
+    }
+    
+    /**
+     * Returns the locals of a method's entry frame: {@code this} unless the
+     * method is static, then its parameters.
+     */
+    private static Object[] entryLocals(String owner, int access, String descriptor) {
+        List<Object> locals = new ArrayList<>();
+        if ((access & Opcodes.ACC_STATIC) == 0) {
+            locals.add(owner);
+        }
+        for (Type argument : Type.getArgumentTypes(descriptor)) {
+            switch (argument.getSort()) {
+                case Type.LONG:
+                    locals.add(Opcodes.LONG);
+                    break;
+                case Type.FLOAT:
+                    locals.add(Opcodes.FLOAT);
+                    break;
+                case Type.DOUBLE:
+                    locals.add(Opcodes.DOUBLE);
+                    break;
+                case Type.OBJECT:
+                    locals.add(argument.getInternalName());
+                    break;
+                case Type.ARRAY:
+                    locals.add(argument.getDescriptor());
+                    break;
+                default:
+                    locals.add(Opcodes.INTEGER);
+            }
+        }
+        return locals.toArray();
+    }
+    
+    /**
+     * Returns false, zero or null, whichever the method's return type takes.
+     */
+    private void returnDefault(MethodVisitor mv, Type returnType) {
+        switch (returnType.getSort()) {
+            case Type.VOID:
+                mv.visitInsn(Opcodes.RETURN);
+                break;
+            case Type.LONG:
+                mv.visitInsn(Opcodes.LCONST_0);
+                mv.visitInsn(Opcodes.LRETURN);
+                break;
+            case Type.FLOAT:
+                mv.visitInsn(Opcodes.FCONST_0);
+                mv.visitInsn(Opcodes.FRETURN);
+                break;
+            case Type.DOUBLE:
+                mv.visitInsn(Opcodes.DCONST_0);
+                mv.visitInsn(Opcodes.DRETURN);
+                break;
+            case Type.OBJECT:
+            case Type.ARRAY:
+                mv.visitInsn(Opcodes.ACONST_NULL);
+                mv.visitInsn(Opcodes.ARETURN);
+                break;
+            default:
+                mv.visitInsn(Opcodes.ICONST_0);
+                mv.visitInsn(Opcodes.IRETURN);
+        }
+    }
+    
+    /**
+     * Adds the licensing client classes to the JAR.
+     * They are copied from wherever the injector loaded them: its own JAR when
+     * packaged, or the client module's classes when run from a build. Gson is
+     * not bundled; Bukkit-based servers provide it.
+     */
+    private void addLicensingClient(JarOutputStream output) throws IOException {
+        Path source;
+        try {
+            source = Paths.get(LicenseClient.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Cannot locate the licensing client classes", e);
+        }
         
-        // Static validate method
-        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC,
-                "validate", "()Z", null, null);
-        mv.visitCode();
-        mv.visitFieldInsn(Opcodes.GETSTATIC,
-                "com/macmoment/licensing/client/LicenseManager",
-                "client",
-                "Lcom/macmoment/licensing/client/LicenseClient;");
-        Label notNull = new Label();
-        mv.visitJumpInsn(Opcodes.IFNONNULL, notNull);
-        mv.visitInsn(Opcodes.ICONST_0);
-        mv.visitInsn(Opcodes.IRETURN);
-        mv.visitLabel(notNull);
-        mv.visitFieldInsn(Opcodes.GETSTATIC,
-                "com/macmoment/licensing/client/LicenseManager",
-                "client",
-                "Lcom/macmoment/licensing/client/LicenseClient;");
-        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL,
-                "com/macmoment/licensing/client/LicenseClient",
-                "validate",
-                "()Z",
-                false);
-        mv.visitInsn(Opcodes.IRETURN);
-        mv.visitMaxs(1, 0);
-        mv.visitEnd();
+        if (Files.isDirectory(source)) {
+            List<Path> classes;
+            try (Stream<Path> files = Files.walk(source.resolve(CLIENT_PACKAGE))) {
+                classes = files.filter(file -> file.toString().endsWith(".class"))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+            for (Path file : classes) {
+                output.putNextEntry(new ZipEntry(source.relativize(file).toString().replace(File.separatorChar, '/')));
+                Files.copy(file, output);
+                output.closeEntry();
+            }
+            return;
+        }
         
-        cw.visitEnd();
-        return cw.toByteArray();
+        try (JarFile client = new JarFile(source.toFile())) {
+            java.util.Enumeration<JarEntry> entries = client.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (entry.getName().startsWith(CLIENT_PACKAGE) && entry.getName().endsWith(".class")) {
+                    output.putNextEntry(new ZipEntry(entry.getName()));
+                    copyStream(client.getInputStream(entry), output);
+                    output.closeEntry();
+                }
+            }
+        }
     }
     
     /**
@@ -229,11 +465,26 @@ public class BytecodePatcher {
         props.setProperty("product.id", config.getProductId());
         props.setProperty("license.key", config.getLicenseKey());
         props.setProperty("failure.mode", config.getFailureMode().name());
+        props.setProperty("binary.protocol", Boolean.toString(config.isBinaryProtocol()));
+        props.setProperty("shared.runtime", Boolean.toString(config.isSharedRuntime()));
         
         props.store(output, "License Configuration");
         output.closeEntry();
     }
     
+    /**
+     * Adds the gating table: every patched method and the gate injected into it
+     * ({@code full}, {@code limited} or {@code feature:<name>}).
+     */
+    private void addGatingTable(JarOutputStream output, Map<String, String> gates) throws IOException {
+        output.putNextEntry(new ZipEntry("license-gates.properties"));
+        
+        Properties props = new Properties();
+        props.putAll(gates);
+        props.store(output, "License Gates");
+        output.closeEntry();
+    }
+    
     /**
      * Copies an input stream to an output stream.
      */
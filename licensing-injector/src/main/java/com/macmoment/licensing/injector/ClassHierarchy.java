@@ -0,0 +1,112 @@
+package com.macmoment.licensing.injector;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Superclass index of the plugin's classes and its libraries, read from class
+ * headers without loading anything. Frame computation asks it for the common
+ * supertype of two classes, which the injector's own classloader could not
+ * answer for plugin or Bukkit types. JDK classes are read on demand.
+ */
+public class ClassHierarchy {
+
+    private static final String OBJECT = "java/lang/Object";
+
+    private final Map<String, Node> classes = new HashMap<>();
+
+    /**
+     * Indexes a class from its header.
+     */
+    public void add(ClassReader reader) {
+        classes.put(reader.getClassName(),
+                new Node(reader.getSuperName(), (reader.getAccess() & Opcodes.ACC_INTERFACE) != 0));
+    }
+
+    /**
+     * Indexes every class of a JAR, such as the Spigot API.
+     */
+    public void indexJar(File jarFile) throws IOException {
+        try (JarFile jar = new JarFile(jarFile)) {
+            java.util.Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (entry.getName().endsWith(".class") && !entry.getName().endsWith("module-info.class")) {
+                    try (InputStream in = jar.getInputStream(entry)) {
+                        add(new ClassReader(in));
+                    }
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return classes.size();
+    }
+
+    /**
+     * Returns the closest common superclass of two classes, or
+     * {@code java/lang/Object} if either is an interface, as the verifier
+     * treats interfaces.
+     */
+    public String getCommonSuperClass(String type1, String type2) {
+        if (type1.equals(type2)) {
+            return type1;
+        }
+        if (node(type1).isInterface || node(type2).isInterface) {
+            return OBJECT;
+        }
+
+        Set<String> ancestors = new HashSet<>();
+        for (String type = type2; type != null; type = node(type).superName) {
+            ancestors.add(type);
+        }
+        for (String type = type1; type != null; type = node(type).superName) {
+            if (ancestors.contains(type)) {
+                return type;
+            }
+        }
+        return OBJECT;
+    }
+
+    /**
+     * Looks a class up, reading it from the JDK if it is not indexed.
+     */
+    private Node node(String type) {
+        Node node = classes.get(type);
+        if (node != null) {
+            return node;
+        }
+        try (InputStream in = ClassLoader.getSystemResourceAsStream(type + ".class")) {
+            if (in == null) {
+                throw new TypeNotPresentException(type.replace('/', '.'),
+                        new IOException("Not in the plugin or its libraries; pass its JAR with --library"));
+            }
+            ClassReader reader = new ClassReader(in);
+            add(reader);
+            return classes.get(type);
+        } catch (IOException e) {
+            throw new TypeNotPresentException(type.replace('/', '.'), e);
+        }
+    }
+
+    private static final class Node {
+        private final String superName;
+        private final boolean isInterface;
+
+        private Node(String superName, boolean isInterface) {
+            this.superName = superName;
+            this.isInterface = isInterface;
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package com.macmoment.licensing.injector;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.macmoment.licensing.client.FailureMode;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
@@ -7,6 +11,17 @@ import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
 /**
@@ -25,9 +40,10 @@ public class InjectorCLI implements Callable<Integer> {
     private File outputJar;
     
     @Option(names = {"-s", "--server"}, 
-            description = "License server URL", 
-            required = true)
-    private String serverUrl;
+            description = "License server URL; repeat or separate with commas for several servers", 
+            required = true,
+            split = ",")
+    private List<String> serverUrls;
     
     @Option(names = {"-p", "--product"}, 
             description = "Product ID", 
@@ -43,6 +59,26 @@ public class InjectorCLI implements Callable<Integer> {
             defaultValue = "DISABLE_ONLY")
     private FailureMode failureMode;
     
+    @Option(names = {"-f", "--feature"},
+            description = "Feature ID for @LicensedFeature gates, as name=id (default: fetched from the server)")
+    private Map<String, Integer> featureIds = new HashMap<>();
+    
+    @Option(names = {"--binary-protocol"},
+            description = "Send validations in the server's binary encoding (the servers must support it)")
+    private boolean binaryProtocol;
+    
+    @Option(names = {"--no-shared-runtime"},
+            description = "Give the plugin a licensing runtime of its own instead of the JVM's shared one")
+    private boolean noSharedRuntime;
+    
+    @Option(names = {"--compute-frames"},
+            description = "Recompute all stack map frames of patched classes instead of keeping the original ones")
+    private boolean computeFrames;
+    
+    @Option(names = {"-l", "--library"},
+            description = "JAR the plugin compiles against, such as the Spigot API, for --compute-frames")
+    private List<File> libraries = new ArrayList<>();
+    
     @Option(names = {"-v", "--verbose"}, 
             description = "Enable verbose output")
     private boolean verbose;
@@ -74,10 +110,38 @@ public class InjectorCLI implements Callable<Integer> {
         
         // Configure injector
         InjectorConfig config = new InjectorConfig();
-        config.setServerUrl(serverUrl);
+        config.setServerUrl(String.join(",", serverUrls));
         config.setProductId(productId);
         config.setLicenseKey(licenseKey);
         config.setFailureMode(failureMode);
+        config.setBinaryProtocol(binaryProtocol);
+        config.setSharedRuntime(!noSharedRuntime);
+        config.setComputeFrames(computeFrames);
+        config.setLibraries(libraries);
+        
+        // Feature gates compile in the feature IDs; they come from the server unless given
+        if (!metadata.getLicensedFeatures().isEmpty()) {
+            if (!featureIds.keySet().containsAll(metadata.getLicensedFeatures())) {
+                Map<String, Integer> registry;
+                try {
+                    registry = fetchFeatureIds();
+                } catch (IOException e) {
+                    System.err.println("Error: Could not get feature IDs from " + serverUrls + ": " + e.getMessage()
+                            + " (pass them with --feature name=id)");
+                    return 1;
+                }
+                registry.putAll(featureIds);
+                featureIds = registry;
+            }
+            for (String feature : metadata.getLicensedFeatures()) {
+                if (!featureIds.containsKey(feature)) {
+                    System.err.println("Error: Feature '" + feature + "' is not used by any tier of product "
+                            + productId);
+                    return 1;
+                }
+            }
+            config.setFeatureIds(featureIds);
+        }
         
         // Patch plugin
         System.out.println("\nInjecting licensing...");
@@ -86,13 +150,57 @@ public class InjectorCLI implements Callable<Integer> {
         
         System.out.println("✓ Successfully injected licensing into: " + outputJar.getName());
         System.out.println("\nConfiguration:");
-        System.out.println("  Server URL: " + serverUrl);
+        System.out.println("  Server URL: " + String.join(", ", serverUrls));
         System.out.println("  Product ID: " + productId);
         System.out.println("  Failure Mode: " + failureMode);
+        if (binaryProtocol) {
+            System.out.println("  Binary Protocol: enabled");
+        }
+        if (noSharedRuntime) {
+            System.out.println("  Shared Runtime: disabled");
+        }
+        if (!metadata.getLicensedFeatures().isEmpty()) {
+            System.out.println("  Feature Gates: " + metadata.getLicensedFeatures());
+        }
         
         return 0;
     }
     
+    /**
+     * Gets the product's feature registry from the first license server that answers.
+     */
+    private Map<String, Integer> fetchFeatureIds() throws IOException {
+        IOException failure = null;
+        for (String serverUrl : serverUrls) {
+            try {
+                return fetchFeatureIds(serverUrl);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        throw failure;
+    }
+    
+    private Map<String, Integer> fetchFeatureIds(String serverUrl) throws IOException {
+        URL url = new URL(serverUrl + "/api/products/"
+                + URLEncoder.encode(productId, StandardCharsets.UTF_8) + "/features");
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setConnectTimeout(5000);
+        conn.setReadTimeout(5000);
+        if (conn.getResponseCode() != 200) {
+            throw new IOException("Server returned error: " + conn.getResponseCode());
+        }
+        
+        Map<String, Integer> registry = new HashMap<>();
+        try (Reader reader = new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8)) {
+            for (JsonElement element : new Gson().fromJson(reader, JsonArray.class)) {
+                JsonObject feature = element.getAsJsonObject();
+                registry.put(feature.get("name").getAsString(), feature.get("id").getAsInt());
+            }
+        }
+        return registry;
+    }
+    
     public static void main(String[] args) {
         int exitCode = new CommandLine(new InjectorCLI()).execute(args);
         System.exit(exitCode);
@@ -2,6 +2,12 @@ package com.macmoment.licensing.injector;
 
 import com.macmoment.licensing.client.FailureMode;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Configuration for the injector.
  */
@@ -11,7 +17,15 @@ public class InjectorConfig {
     private String productId;
     private String licenseKey;
     private FailureMode failureMode = FailureMode.DISABLE_ONLY;
+    private boolean binaryProtocol;
+    private boolean sharedRuntime = true;
+    private Map<String, Integer> featureIds = new HashMap<>();
+    private boolean computeFrames;
+    private List<File> libraries = new ArrayList<>();
     
+    /**
+     * Server URL, or several separated by commas.
+     */
     public String getServerUrl() {
         return serverUrl;
     }
@@ -43,4 +57,62 @@ public class InjectorConfig {
     public void setFailureMode(FailureMode failureMode) {
         this.failureMode = failureMode;
     }
+    
+    /**
+     * Whether the plugin sends validations in the server's binary encoding.
+     */
+    public boolean isBinaryProtocol() {
+        return binaryProtocol;
+    }
+    
+    public void setBinaryProtocol(boolean binaryProtocol) {
+        this.binaryProtocol = binaryProtocol;
+    }
+    
+    /**
+     * Whether the plugin joins the JVM's shared licensing runtime rather than
+     * starting one of its own.
+     */
+    public boolean isSharedRuntime() {
+        return sharedRuntime;
+    }
+    
+    public void setSharedRuntime(boolean sharedRuntime) {
+        this.sharedRuntime = sharedRuntime;
+    }
+    
+    /**
+     * IDs of the product's features, compiled into feature gates.
+     */
+    public Map<String, Integer> getFeatureIds() {
+        return featureIds;
+    }
+    
+    public void setFeatureIds(Map<String, Integer> featureIds) {
+        this.featureIds = featureIds;
+    }
+    
+    /**
+     * Whether patched classes get all their stack map frames recomputed instead
+     * of keeping the original frames and adding one for the injected code.
+     */
+    public boolean isComputeFrames() {
+        return computeFrames;
+    }
+    
+    public void setComputeFrames(boolean computeFrames) {
+        this.computeFrames = computeFrames;
+    }
+    
+    /**
+     * JARs the plugin compiles against, such as the Spigot API, indexed for
+     * frame recomputation.
+     */
+    public List<File> getLibraries() {
+        return libraries;
+    }
+    
+    public void setLibraries(List<File> libraries) {
+        this.libraries = libraries;
+    }
 }
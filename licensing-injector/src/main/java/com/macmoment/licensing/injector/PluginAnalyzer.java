@@ -1,5 +1,10 @@
 package com.macmoment.licensing.injector;
 
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 import org.yaml.snakeyaml.Yaml;
 
 import java.io.*;
@@ -13,6 +18,8 @@ import java.util.zip.ZipEntry;
  */
 public class PluginAnalyzer {
     
+    static final String LICENSED_FEATURE = "Lcom/macmoment/licensing/client/LicensedFeature;";
+    
     private final File jarFile;
     
     public PluginAnalyzer(File jarFile) {
@@ -61,7 +68,8 @@ public class PluginAnalyzer {
     }
     
     /**
-     * Scans JAR for classes that might be commands or listeners.
+     * Scans JAR for classes that might be commands or listeners, indexing the
+     * class hierarchy on the way.
      */
     private void scanClasses(JarFile jar, PluginMetadata metadata) throws IOException {
         Enumeration<JarEntry> entries = jar.entries();
@@ -80,10 +88,44 @@ public class PluginAnalyzer {
                 if (name.contains("Listener") || name.contains("Command")) {
                     listeners.add(className);
                 }
+                
+                ClassReader reader;
+                try (InputStream in = jar.getInputStream(entry)) {
+                    reader = new ClassReader(in);
+                }
+                metadata.getClassHierarchy().add(reader);
+                scanFeatureGates(reader, className, metadata);
             }
         }
         
         metadata.setListeners(listeners);
         metadata.setAllClasses(allClasses);
     }
+    
+    /**
+     * Records the features a class's {@code @LicensedFeature} methods use.
+     */
+    private void scanFeatureGates(ClassReader reader, String className, PluginMetadata metadata) {
+        reader.accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor,
+                                             String signature, String[] exceptions) {
+                return new MethodVisitor(Opcodes.ASM9) {
+                    @Override
+                    public AnnotationVisitor visitAnnotation(String annotation, boolean visible) {
+                        if (!annotation.equals(LICENSED_FEATURE)) {
+                            return null;
+                        }
+                        return new AnnotationVisitor(Opcodes.ASM9) {
+                            @Override
+                            public void visit(String key, Object value) {
+                                metadata.getGatedClasses().add(className);
+                                metadata.getLicensedFeatures().add((String) value);
+                            }
+                        };
+                    }
+                };
+            }
+        }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+    }
 }
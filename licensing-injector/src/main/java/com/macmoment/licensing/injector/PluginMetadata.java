@@ -2,6 +2,8 @@ package com.macmoment.licensing.injector;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Metadata extracted from a plugin JAR.
@@ -14,6 +16,9 @@ public class PluginMetadata {
     private List<String> commands = new ArrayList<>();
     private List<String> listeners = new ArrayList<>();
     private List<String> allClasses = new ArrayList<>();
+    private Set<String> gatedClasses = new TreeSet<>();
+    private Set<String> licensedFeatures = new TreeSet<>();
+    private ClassHierarchy classHierarchy = new ClassHierarchy();
     
     public String getName() {
         return name;
@@ -63,9 +68,43 @@ public class PluginMetadata {
         this.allClasses = allClasses;
     }
     
+    /**
+     * Classes with methods annotated {@code @LicensedFeature}.
+     */
+    public Set<String> getGatedClasses() {
+        return gatedClasses;
+    }
+    
+    public void setGatedClasses(Set<String> gatedClasses) {
+        this.gatedClasses = gatedClasses;
+    }
+    
+    /**
+     * Feature names used by {@code @LicensedFeature} annotations.
+     */
+    public Set<String> getLicensedFeatures() {
+        return licensedFeatures;
+    }
+    
+    public void setLicensedFeatures(Set<String> licensedFeatures) {
+        this.licensedFeatures = licensedFeatures;
+    }
+    
+    /**
+     * Superclasses of the plugin's classes, for frame computation.
+     */
+    public ClassHierarchy getClassHierarchy() {
+        return classHierarchy;
+    }
+    
+    public void setClassHierarchy(ClassHierarchy classHierarchy) {
+        this.classHierarchy = classHierarchy;
+    }
+    
     @Override
     public String toString() {
-        return String.format("Plugin: %s v%s\nMain: %s\nCommands: %d\nListeners: %d\nTotal Classes: %d",
-                name, version, mainClass, commands.size(), listeners.size(), allClasses.size());
+        return String.format("Plugin: %s v%s\nMain: %s\nCommands: %d\nListeners: %d\nTotal Classes: %d\n" +
+                        "Licensed Features: %s",
+                name, version, mainClass, commands.size(), listeners.size(), allClasses.size(), licensedFeatures);
     }
 }
@@ -0,0 +1,255 @@
+package com.macmoment.licensing.server;
+
+import org.sqlite.SQLiteConnection;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Online backups of a SQLite license database. A snapshot is copied with
+ * SQLite's backup API, a few hundred pages per step, on a connection of its
+ * own that holds one read transaction for the whole copy: in WAL mode the
+ * copy sees a consistent state while validations and admin writes carry on
+ * through the other connections, and concurrent writes never restart it.
+ * The copy is gzipped into {@code <name>-<yyyyMMdd-HHmmss>.db.gz} and only
+ * the newest {@code keep} snapshots are retained.
+ */
+public class BackupManager implements AutoCloseable {
+
+    // 256 pages is 1 MiB with the default page size; each step holds the read lock only briefly
+    private static final int PAGES_PER_STEP = 256;
+    private static final int BUSY_RETRY_MILLIS = 50;
+    private static final int BUSY_RETRIES = 100;
+    private static final String SUFFIX = ".db.gz";
+
+    private final String url;
+    private final Path directory;
+    private final String prefix;
+    private final int keep;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong lastBackupTime = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * @param dbPath the SQLite database to back up
+     * @param directory where snapshots are written
+     * @param intervalMillis time between scheduled snapshots; 0 takes them only on request
+     * @param keep number of snapshots to retain
+     */
+    public BackupManager(String dbPath, Path directory, long intervalMillis, int keep) {
+        Path db = Paths.get(dbPath).toAbsolutePath();
+        this.url = "jdbc:sqlite:" + db;
+        this.directory = directory.toAbsolutePath();
+        this.prefix = snapshotPrefix(db);
+        this.keep = Math.max(1, keep);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "database-backup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (intervalMillis > 0) {
+            scheduler.scheduleWithFixedDelay(this::backupQuietly, intervalMillis, intervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+
+        Metrics.registerGauge("licensing_backup_last_success_timestamp_seconds",
+                "Time of the last completed database snapshot", () -> lastBackupTime.get() / 1000.0);
+        Metrics.registerCounter("licensing_backup_failures_total",
+                "Database snapshots that failed", failures::get);
+    }
+
+    /**
+     * Takes a snapshot now on the backup thread and waits for it.
+     * @return the snapshot's description, as listed by {@link #list()}
+     */
+    public Map<String, Object> backupNow() throws IOException, InterruptedException {
+        try {
+            return scheduler.submit(this::backup).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Database backup failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Lists the retained snapshots, newest first, with {@code name}, {@code size} and {@code created_at}.
+     */
+    public List<Map<String, Object>> list() throws IOException {
+        List<Map<String, Object>> snapshots = new ArrayList<>();
+        for (Path snapshot : snapshots()) {
+            snapshots.add(describe(snapshot));
+        }
+        return snapshots;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private Map<String, Object> backup() throws IOException, SQLException {
+        Files.createDirectories(directory);
+        long now = System.currentTimeMillis();
+        String name = prefix + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(now));
+        Path copy = directory.resolve(name + ".db.tmp");
+        Path compressed = directory.resolve(name + SUFFIX + ".tmp");
+        Path snapshot = directory.resolve(name + SUFFIX);
+
+        try {
+            Files.deleteIfExists(copy);
+            copyOnline(copy);
+            try (InputStream in = Files.newInputStream(copy);
+                 FileChannel out = FileChannel.open(compressed, StandardOpenOption.CREATE,
+                         StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                GZIPOutputStream gzip = new GZIPOutputStream(Channels.newOutputStream(out), 64 * 1024);
+                in.transferTo(gzip);
+                gzip.finish();
+                gzip.flush();
+                out.force(true);
+            }
+            Files.move(compressed, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(copy);
+            Files.deleteIfExists(compressed);
+        }
+        lastBackupTime.set(now);
+
+        List<Path> snapshots = snapshots();
+        for (Path old : snapshots.subList(Math.min(keep, snapshots.size()), snapshots.size())) {
+            Files.deleteIfExists(old);
+        }
+        return describe(snapshot);
+    }
+
+    /**
+     * Copies the database page by page under one read transaction.
+     */
+    private void copyOnline(Path target) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url)) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA busy_timeout = 5000");
+                // Starts the read transaction; every step then copies this same version of the database
+                try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM sqlite_master")) {
+                    rs.next();
+                }
+                int rc = conn.unwrap(SQLiteConnection.class).getDatabase().backup("main", target.toString(),
+                        null, BUSY_RETRY_MILLIS, BUSY_RETRIES, PAGES_PER_STEP);
+                if (rc != 0 && rc != 101) { // SQLITE_OK, SQLITE_DONE
+                    throw new SQLException("SQLite backup failed with result code " + rc);
+                }
+            } finally {
+                conn.rollback();
+            }
+        }
+    }
+
+    private void backupQuietly() {
+        try {
+            Map<String, Object> snapshot = backup();
+            System.out.println("✓ Database snapshot " + snapshot.get("name"));
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            System.err.println("Database backup failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Retained snapshots, newest first (their names sort by time).
+     */
+    private List<Path> snapshots() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> isSnapshot(path, prefix))
+                    .sorted(Comparator.comparing(Path::getFileName).reversed())
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static Map<String, Object> describe(Path snapshot) throws IOException {
+        Map<String, Object> description = new HashMap<>();
+        description.put("name", snapshot.getFileName().toString());
+        description.put("size", Files.size(snapshot));
+        description.put("created_at", Files.getLastModifiedTime(snapshot).toMillis());
+        return description;
+    }
+
+    private static String snapshotPrefix(Path db) {
+        String name = db.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return (dot > 0 ? name.substring(0, dot) : name) + "-";
+    }
+
+    private static boolean isSnapshot(Path path, String prefix) {
+        String name = path.getFileName().toString();
+        return name.startsWith(prefix) && name.endsWith(SUFFIX);
+    }
+
+    /**
+     * Replaces a database with a snapshot before the server opens it. The
+     * snapshot is decompressed next to the database and moved into place; the
+     * old database is kept as {@code <dbPath>.before-restore}.
+     * @param snapshot a snapshot file, or {@code latest} for the newest in {@code directory}
+     * @return the snapshot that was restored
+     */
+    public static Path restore(String snapshot, String dbPath, Path directory) throws IOException {
+        Path db = Paths.get(dbPath).toAbsolutePath();
+        Path source;
+        if ("latest".equals(snapshot)) {
+            String prefix = snapshotPrefix(db);
+            try (Stream<Path> files = Files.list(directory)) {
+                source = files.filter(path -> isSnapshot(path, prefix))
+                        .max(Comparator.comparing(Path::getFileName))
+                        .orElseThrow(() -> new FileNotFoundException("No snapshot of " + db + " in " + directory));
+            }
+        } else {
+            source = Paths.get(snapshot);
+        }
+
+        Path temp = db.resolveSibling(db.getFileName() + ".restore");
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(source), 64 * 1024);
+             FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            in.transferTo(Channels.newOutputStream(out));
+            out.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        // The old WAL moves with the old database, so it still opens with every committed change
+        for (String suffix : new String[] {"", "-wal", "-shm"}) {
+            Path file = db.resolveSibling(db.getFileName() + suffix);
+            if (Files.exists(file)) {
+                Files.move(file, db.resolveSibling(db.getFileName() + ".before-restore" + suffix),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(temp, db, StandardCopyOption.ATOMIC_MOVE);
+        return source;
+    }
+}
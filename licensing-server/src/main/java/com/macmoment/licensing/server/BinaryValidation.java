@@ -0,0 +1,192 @@
+package com.macmoment.licensing.server;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary encoding of {@code /api/validate}, used instead of JSON when
+ * the request's Content-Type is {@link #CONTENT_TYPE}. Integers are unsigned
+ * LEB128 varints, strings are a varint byte length and UTF-8.
+ * <pre>
+ * request:  version(1) hwid(32 raw bytes) ipLength(0|4|16) ip productId licenseKey [instanceId]
+ * response: version(1) result(1)
+ *           and if the result is 0 (valid): expiryTime featureMask tier
+ *           featureCount feature... (names in ID order)
+ * </pre>
+ * Results other than 0 are 1 invalid key, 2 wrong product, 3 deactivated,
+ * 4 expired, 5 bound to different hardware, 6 all seats in use.
+ */
+public final class BinaryValidation {
+
+    public static final String CONTENT_TYPE = "application/x-license-validation";
+
+    private static final int VERSION = 1;
+    private static final int HWID_LENGTH = 32;
+
+    private static final byte[] INVALID_KEY = {VERSION, 1};
+    private static final byte[] WRONG_PRODUCT = {VERSION, 2};
+    private static final byte[] DEACTIVATED = {VERSION, 3};
+    private static final byte[] EXPIRED = {VERSION, 4};
+    private static final byte[] HWID_MISMATCH = {VERSION, 5};
+    private static final byte[] SEATS_FULL = {VERSION, 6};
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private BinaryValidation() {
+    }
+
+    /**
+     * Whether a request's Content-Type asks for the binary encoding.
+     */
+    public static boolean accepts(String contentType) {
+        return contentType != null && contentType.startsWith(CONTENT_TYPE);
+    }
+
+    /**
+     * Decodes a binary validation request. The raw HWID becomes the lowercase
+     * hex form it is stored in.
+     * @throws IllegalArgumentException if the body is malformed
+     */
+    public static ValidationRequest decodeRequest(byte[] body) {
+        Reader reader = new Reader(body);
+        if (reader.readByte() != VERSION) {
+            throw new IllegalArgumentException("Unsupported binary validation version");
+        }
+
+        char[] hwid = new char[HWID_LENGTH * 2];
+        for (int i = 0; i < HWID_LENGTH; i++) {
+            int b = reader.readByte();
+            hwid[2 * i] = HEX[b >>> 4];
+            hwid[2 * i + 1] = HEX[b & 0xF];
+        }
+
+        int ipLength = reader.readByte();
+        String ip = "UNKNOWN";
+        if (ipLength == 4 || ipLength == 16) {
+            try {
+                ip = InetAddress.getByAddress(reader.readBytes(ipLength)).getHostAddress();
+            } catch (UnknownHostException e) {
+                throw new IllegalArgumentException("Malformed IP address", e);
+            }
+        } else if (ipLength != 0) {
+            throw new IllegalArgumentException("Malformed IP address");
+        }
+
+        String productId = reader.readString();
+        String licenseKey = reader.readString();
+        // Older clients end the request here
+        String instanceId = reader.hasMore() ? reader.readString() : null;
+        return new ValidationRequest(productId, licenseKey, new String(hwid), ip, instanceId);
+    }
+
+    /**
+     * Encodes the response to a rejected validation.
+     */
+    public static byte[] failure(ValidationOutcome outcome) {
+        switch (outcome) {
+            case WRONG_PRODUCT:
+                return WRONG_PRODUCT;
+            case INACTIVE:
+                return DEACTIVATED;
+            case EXPIRED:
+                return EXPIRED;
+            case HWID_MISMATCH:
+                return HWID_MISMATCH;
+            case SEATS_FULL:
+                return SEATS_FULL;
+            default:
+                return INVALID_KEY;
+        }
+    }
+
+    /**
+     * Encodes a successful validation response.
+     * @param features the tier's features in ID order, as stored
+     */
+    public static byte[] success(String tierName, long expiryTime, String features, long featureMask) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        out.write(VERSION);
+        out.write(0);
+        writeVarint(out, expiryTime);
+        writeVarint(out, featureMask);
+        writeString(out, tierName != null ? tierName : "");
+        if (features == null || features.isEmpty()) {
+            writeVarint(out, 0);
+        } else {
+            String[] names = features.split(",");
+            writeVarint(out, names.length);
+            for (String name : names) {
+                writeString(out, name);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int pos;
+
+        private Reader(byte[] data) {
+            this.data = data;
+        }
+
+        private boolean hasMore() {
+            return pos < data.length;
+        }
+
+        private int readByte() {
+            if (pos >= data.length) {
+                throw new IllegalArgumentException("Truncated binary validation request");
+            }
+            return data[pos++] & 0xFF;
+        }
+
+        private byte[] readBytes(int length) {
+            if (length > data.length - pos) {
+                throw new IllegalArgumentException("Truncated binary validation request");
+            }
+            byte[] bytes = new byte[length];
+            System.arraycopy(data, pos, bytes, 0, length);
+            pos += length;
+            return bytes;
+        }
+
+        private long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        private String readString() {
+            long length = readVarint();
+            if (length > data.length - pos) {
+                throw new IllegalArgumentException("Truncated binary validation request");
+            }
+            String value = new String(data, pos, (int) length, StandardCharsets.UTF_8);
+            pos += (int) length;
+            return value;
+        }
+    }
+}
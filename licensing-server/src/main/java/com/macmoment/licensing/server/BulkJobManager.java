@@ -0,0 +1,147 @@
+package com.macmoment.licensing.server;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs bulk license operations in the background and tracks their progress.
+ * Jobs run one at a time so two large operations never hold write
+ * transactions at once. The most recent jobs are kept for status queries.
+ */
+public class BulkJobManager implements AutoCloseable {
+
+    private static final int RETAINED_JOBS = 100;
+
+    private final DatabaseManager database;
+    private final ExecutorService executor;
+    private final Map<String, Job> jobs = new LinkedHashMap<String, Job>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Job> eldest) {
+            return size() > RETAINED_JOBS;
+        }
+    };
+
+    public BulkJobManager(DatabaseManager database) {
+        this.database = database;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bulk-jobs");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues an operation on an explicit key list, or on every license matching a filter.
+     * @param keys licenses to change, or null to use the filter
+     */
+    public Job submit(BulkOperation operation, List<String> keys, LicenseFilter filter) {
+        Job job = new Job(UUID.randomUUID().toString(), operation);
+        synchronized (jobs) {
+            jobs.put(job.id, job);
+        }
+        executor.execute(() -> run(job, keys, filter));
+        return job;
+    }
+
+    /**
+     * Gets a recent job, or null if it is unknown or has been evicted.
+     */
+    public Job get(String jobId) {
+        synchronized (jobs) {
+            return jobs.get(jobId);
+        }
+    }
+
+    private void run(Job job, List<String> keys, LicenseFilter filter) {
+        job.status = Job.RUNNING;
+        try {
+            List<String> selected = keys != null ? keys : database.findLicenseKeys(filter);
+            job.total = selected.size();
+            job.changed = database.updateLicenses(job.operation, selected, processed -> job.processed = processed);
+            job.processed = selected.size();
+            job.status = Job.COMPLETED;
+        } catch (Exception e) {
+            job.error = e.getMessage();
+            job.status = Job.FAILED;
+            System.err.println("Bulk " + job.operation + " job " + job.id + " failed: " + e.getMessage());
+        } finally {
+            job.finishedAt = System.currentTimeMillis();
+            job.done.countDown();
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * A bulk operation and its progress.
+     */
+    public static final class Job {
+        static final String QUEUED = "queued";
+        static final String RUNNING = "running";
+        static final String COMPLETED = "completed";
+        static final String FAILED = "failed";
+
+        private final String id;
+        private final BulkOperation operation;
+        private final long createdAt = System.currentTimeMillis();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile String status = QUEUED;
+        private volatile int total = -1;
+        private volatile int processed;
+        private volatile int changed;
+        private volatile String error;
+        private volatile long finishedAt;
+
+        private Job(String id, BulkOperation operation) {
+            this.id = id;
+            this.operation = operation;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public boolean isFinished() {
+            return done.getCount() == 0;
+        }
+
+        /**
+         * Waits up to the given time for the job to finish.
+         * @return true if it finished
+         */
+        public boolean await(long timeoutMillis) throws InterruptedException {
+            return done.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Gets the job's state as returned by the REST API.
+         */
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("jobId", id);
+            map.put("operation", operation.name());
+            map.put("status", status);
+            map.put("total", total);
+            map.put("processed", processed);
+            map.put("changed", changed);
+            map.put("createdAt", createdAt);
+            if (finishedAt > 0) {
+                map.put("finishedAt", finishedAt);
+            }
+            if (error != null) {
+                map.put("error", error);
+            }
+            return map;
+        }
+    }
+}
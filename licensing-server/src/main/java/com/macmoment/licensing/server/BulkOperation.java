@@ -0,0 +1,11 @@
+package com.macmoment.licensing.server;
+
+/**
+ * Operations that can be applied to many licenses at once.
+ */
+public enum BulkOperation {
+    ACTIVATE,
+    DEACTIVATE,
+    RESET_HWID,
+    DELETE
+}
@@ -0,0 +1,367 @@
+package com.macmoment.licensing.server;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Decorator that serves {@link #getLicense(String)} and {@link #getCatalog()} from memory.
+ * Writes made through this instance publish a {@link LicenseEvent}; the cache
+ * is invalidated by listening on the same bus, so events replicated from
+ * other cluster nodes take the same path as local ones.
+ */
+public class CachedDatabaseManager implements DatabaseManager {
+    
+    private static final int DEFAULT_MAX_ENTRIES = 100_000;
+    private static final int PRELOAD_CHUNK = 1000;
+    
+    private final DatabaseManager delegate;
+    private final LicenseEventBus events;
+    private final int maxEntries;
+    private final Map<String, Map<String, Object>> licenses = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final Consumer<LicenseEvent> listener = this::onEvent;
+    
+    // Bumped on every invalidation; a load that raced with one is not cached
+    private final AtomicLong generation = new AtomicLong();
+    
+    // Any event may change the catalog's counts; a cached catalog is valid for one generation
+    private final AtomicLong catalogGeneration = new AtomicLong();
+    private volatile Catalog catalog;
+    
+    public CachedDatabaseManager(DatabaseManager delegate, LicenseEventBus events) {
+        this(delegate, events, DEFAULT_MAX_ENTRIES);
+    }
+    
+    public CachedDatabaseManager(DatabaseManager delegate, LicenseEventBus events, int maxEntries) {
+        this.delegate = delegate;
+        this.events = events;
+        this.maxEntries = maxEntries;
+        events.subscribe(listener);
+        
+        Metrics.registerCounter("licensing_license_cache_hits_total",
+                "License lookups served from the cache", hits::sum);
+        Metrics.registerCounter("licensing_license_cache_misses_total",
+                "License lookups that went to storage", misses::sum);
+        Metrics.registerGauge("licensing_license_cache_entries",
+                "Licenses currently cached", licenses::size);
+    }
+    
+    /**
+     * Drops cached licenses affected by an event.
+     */
+    private void onEvent(LicenseEvent event) {
+        invalidateCatalog();
+        if (event.getType() == LicenseEvent.Type.CATALOG_CHANGED) {
+            return;
+        }
+        generation.incrementAndGet();
+        switch (event.getType()) {
+            case LICENSE_CHANGED:
+            case LICENSE_REVOKED:
+            case LICENSE_DELETED:
+                for (String key : event.getIds()) {
+                    licenses.remove(key);
+                }
+                break;
+            case TIER_CHANGED:
+                licenses.values().removeIf(license -> event.getIds().contains(license.get("tier_id")));
+                break;
+            default:
+                licenses.clear();
+        }
+    }
+    
+    private void invalidate(String key) {
+        generation.incrementAndGet();
+        licenses.remove(key);
+    }
+    
+    private void invalidateCatalog() {
+        catalogGeneration.incrementAndGet();
+    }
+    
+    public long getHits() {
+        return hits.sum();
+    }
+    
+    public long getMisses() {
+        return misses.sum();
+    }
+    
+    // License operations
+    
+    @Override
+    public Map<String, Object> getLicense(String key) throws SQLException {
+        Map<String, Object> license = licenses.get(key);
+        if (license != null) {
+            hits.increment();
+            return license;
+        }
+        
+        misses.increment();
+        long loadGeneration = generation.get();
+        license = delegate.getLicense(key);
+        if (license == null) {
+            return null;
+        }
+        
+        license = Collections.unmodifiableMap(license);
+        if (licenses.size() < maxEntries && generation.get() == loadGeneration) {
+            licenses.put(key, license);
+        }
+        return license;
+    }
+    
+    /**
+     * Loads licenses into the cache ahead of their first validation, up to the
+     * cache's capacity, and builds the catalog. Keys are fetched in bulk
+     * chunks, several at once; a chunk that raced with an invalidation is
+     * left to load on demand.
+     * @param threads number of chunks loaded in parallel
+     * @return the number of licenses cached
+     */
+    public int preload(List<String> keys, int threads) throws SQLException, InterruptedException {
+        List<String> wanted = keys.subList(0, Math.min(keys.size(), Math.max(0, maxEntries - licenses.size())));
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "license-cache-preload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> loads = new ArrayList<>();
+            loads.add(pool.submit(this::getCatalog));
+            for (int from = 0; from < wanted.size(); from += PRELOAD_CHUNK) {
+                List<String> chunk = wanted.subList(from, Math.min(wanted.size(), from + PRELOAD_CHUNK));
+                loads.add(pool.submit(() -> {
+                    long loadGeneration = generation.get();
+                    List<Map<String, Object>> loaded = delegate.getLicenses(chunk);
+                    if (generation.get() == loadGeneration) {
+                        for (Map<String, Object> license : loaded) {
+                            licenses.putIfAbsent((String) license.get("key"), Collections.unmodifiableMap(license));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> load : loads) {
+                try {
+                    load.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof SQLException) {
+                        throw (SQLException) e.getCause();
+                    }
+                    throw new SQLException("Cache preload failed: " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return licenses.size();
+    }
+    
+    @Override
+    public List<Map<String, Object>> getLicenses(List<String> keys) throws SQLException {
+        return delegate.getLicenses(keys);
+    }
+    
+    @Override
+    public void createLicense(String key, String productId, String tierId, Long expiryTime) throws SQLException {
+        delegate.createLicense(key, productId, tierId, expiryTime);
+        events.publish(new LicenseEvent(LicenseEvent.Type.CATALOG_CHANGED, (String) null));
+    }
+    
+    @Override
+    public List<String> createLicenses(List<String> keys, String productId, String tierId, Long expiryTime)
+            throws SQLException {
+        try {
+            return delegate.createLicenses(keys, productId, tierId, expiryTime);
+        } finally {
+            events.publish(new LicenseEvent(LicenseEvent.Type.CATALOG_CHANGED, (String) null));
+        }
+    }
+    
+    @Override
+    public List<Map<String, Object>> getAllLicenses() throws SQLException {
+        return delegate.getAllLicenses();
+    }
+    
+    @Override
+    public boolean updateLicenseBinding(String key, String hwid, String ip) throws SQLException {
+        // Bindings are compare-and-set in storage, so other nodes only need to
+        // re-read when their own bind attempt fails; no event is published
+        try {
+            return delegate.updateLicenseBinding(key, hwid, ip);
+        } finally {
+            invalidate(key);
+        }
+    }
+    
+    @Override
+    public void toggleLicense(String key, boolean active) throws SQLException {
+        delegate.toggleLicense(key, active);
+        events.publish(new LicenseEvent(
+                active ? LicenseEvent.Type.LICENSE_CHANGED : LicenseEvent.Type.LICENSE_REVOKED, key));
+    }
+    
+    @Override
+    public void resetLicenseHwid(String key) throws SQLException {
+        delegate.resetLicenseHwid(key);
+        events.publish(new LicenseEvent(LicenseEvent.Type.LICENSE_CHANGED, key));
+    }
+    
+    @Override
+    public void deleteLicense(String key) throws SQLException {
+        delegate.deleteLicense(key);
+        events.publish(new LicenseEvent(LicenseEvent.Type.LICENSE_DELETED, key));
+    }
+    
+    @Override
+    public List<String> findLicenseKeys(LicenseFilter filter) throws SQLException {
+        return delegate.findLicenseKeys(filter);
+    }
+    
+    @Override
+    public int updateLicenses(BulkOperation operation, List<String> keys, IntConsumer progress)
+            throws SQLException {
+        // One event for the whole set, so caches, seats and subscribers are updated
+        // in a single pass; also on failure, as earlier chunks may have been committed
+        LicenseEvent.Type type;
+        switch (operation) {
+            case DEACTIVATE:
+                type = LicenseEvent.Type.LICENSE_REVOKED;
+                break;
+            case DELETE:
+                type = LicenseEvent.Type.LICENSE_DELETED;
+                break;
+            default:
+                type = LicenseEvent.Type.LICENSE_CHANGED;
+        }
+        try {
+            return delegate.updateLicenses(operation, keys, progress);
+        } finally {
+            events.publish(new LicenseEvent(type, keys));
+        }
+    }
+    
+    // Product and tier operations
+    
+    @Override
+    public void createProduct(String id, String name, String description) throws SQLException {
+        delegate.createProduct(id, name, description);
+        events.publish(new LicenseEvent(LicenseEvent.Type.CATALOG_CHANGED, (String) null));
+    }
+    
+    @Override
+    public List<Map<String, Object>> getAllProducts() throws SQLException {
+        return delegate.getAllProducts();
+    }
+    
+    @Override
+    public void deleteProduct(String id) throws SQLException {
+        delegate.deleteProduct(id);
+        events.publish(new LicenseEvent(LicenseEvent.Type.CATALOG_CHANGED, (String) null));
+    }
+    
+    @Override
+    public void createTier(String id, String productId, String name, String features, int maxUsers)
+            throws SQLException {
+        delegate.createTier(id, productId, name, features, maxUsers);
+        events.publish(new LicenseEvent(LicenseEvent.Type.CATALOG_CHANGED, (String) null));
+    }
+    
+    @Override
+    public List<Map<String, Object>> getTiersByProduct(String productId) throws SQLException {
+        return delegate.getTiersByProduct(productId);
+    }
+    
+    @Override
+    public void deleteTier(String id) throws SQLException {
+        delegate.deleteTier(id);
+        events.publish(new LicenseEvent(LicenseEvent.Type.TIER_CHANGED, id));
+    }
+    
+    @Override
+    public Map<String, Integer> getFeatureIds(String productId) throws SQLException {
+        return delegate.getFeatureIds(productId);
+    }
+    
+    @Override
+    public List<Map<String, Object>> getCatalog() throws SQLException {
+        Catalog cached = catalog;
+        long current = catalogGeneration.get();
+        if (cached != null && cached.generation == current) {
+            return cached.products;
+        }
+        cached = new Catalog(current, Collections.unmodifiableList(delegate.getCatalog()));
+        catalog = cached;
+        return cached.products;
+    }
+    
+    // Validation logs and stats
+    
+    @Override
+    public void logValidation(String key, String hwid, String ip, boolean success) throws SQLException {
+        delegate.logValidation(key, hwid, ip, success);
+    }
+    
+    @Override
+    public void logValidations(List<ValidationLog> entries) throws SQLException {
+        delegate.logValidations(entries);
+    }
+    
+    @Override
+    public List<Map<String, Object>> getValidationLogs(int limit) throws SQLException {
+        return delegate.getValidationLogs(limit);
+    }
+    
+    @Override
+    public List<String> findRecentlyValidatedKeys(long since, int limit) throws SQLException {
+        return delegate.findRecentlyValidatedKeys(since, limit);
+    }
+    
+    @Override
+    public Map<String, Object> getStats() throws SQLException {
+        return delegate.getStats();
+    }
+    
+    // Server settings
+    
+    @Override
+    public String getSetting(String name) throws SQLException {
+        return delegate.getSetting(name);
+    }
+    
+    @Override
+    public String initSetting(String name, String value) throws SQLException {
+        return delegate.initSetting(name, value);
+    }
+    
+    @Override
+    public void close() throws SQLException {
+        events.unsubscribe(listener);
+        delegate.close();
+    }
+    
+    private static final class Catalog {
+        final long generation;
+        final List<Map<String, Object>> products;
+        
+        Catalog(long generation, List<Map<String, Object>> products) {
+            this.generation = generation;
+            this.products = products;
+        }
+    }
+}
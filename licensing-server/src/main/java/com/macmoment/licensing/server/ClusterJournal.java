@@ -0,0 +1,239 @@
+package com.macmoment.licensing.server;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Shared file through which the cluster leader replicates {@link LicenseEvent}s.
+ * The leader appends one JSON line per event; followers poll the file and
+ * republish new lines on their local bus. The first line names an epoch; the
+ * leader starts a new epoch (truncating the file) on startup and whenever the
+ * file grows past {@link #MAX_BYTES}, and followers that notice a new epoch
+ * invalidate everything rather than trying to work out what they missed.
+ * Events covering many licenses are written as several lines of at most
+ * {@link #MAX_IDS_PER_LINE} IDs, so every line fits a follower's read buffer.
+ */
+public class ClusterJournal implements AutoCloseable {
+    
+    private static final long MAX_BYTES = 16L * 1024 * 1024;
+    private static final int MAX_HEADER_BYTES = 64;
+    // About 350 KB per line with the longest key format
+    private static final int MAX_IDS_PER_LINE = 10_000;
+    private static final int SKIP_BUFFER_BYTES = 64 * 1024;
+    private static final String EPOCH_PREFIX = "EPOCH ";
+    
+    private final Path path;
+    private FileChannel channel;
+    private Thread follower;
+    private volatile boolean closed;
+    
+    // Follower state
+    private String epoch;
+    private long offset;
+    
+    public ClusterJournal(Path path) {
+        this.path = path;
+    }
+    
+    /**
+     * Takes ownership of the journal as leader, starting a new epoch.
+     */
+    public synchronized void openForAppend() throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        startEpoch();
+    }
+    
+    /**
+     * Appends an event. Called by the leader for every local write.
+     */
+    public synchronized void append(LicenseEvent event) {
+        if (channel == null) {
+            return;
+        }
+        List<String> ids = event.getIds();
+        try {
+            if (ids.size() <= 1) {
+                JsonObject line = new JsonObject();
+                line.addProperty("type", event.getType().name());
+                line.addProperty("id", event.getId());
+                appendLine(line);
+                return;
+            }
+            for (int from = 0; from < ids.size(); from += MAX_IDS_PER_LINE) {
+                List<String> chunk = ids.subList(from, Math.min(ids.size(), from + MAX_IDS_PER_LINE));
+                JsonObject line = new JsonObject();
+                line.addProperty("type", event.getType().name());
+                JsonArray array = new JsonArray(chunk.size());
+                for (String id : chunk) {
+                    array.add(id);
+                }
+                line.add("ids", array);
+                appendLine(line);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to replicate " + event + ": " + e.getMessage());
+        }
+    }
+    
+    private void appendLine(JsonObject line) throws IOException {
+        if (channel.position() > MAX_BYTES) {
+            startEpoch();
+        }
+        write(line + "\n");
+    }
+    
+    private void startEpoch() throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        write(EPOCH_PREFIX + UUID.randomUUID() + "\n");
+    }
+    
+    private void write(String line) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+    
+    /**
+     * Starts a daemon thread that republishes the leader's events on the given bus.
+     */
+    public synchronized void follow(LicenseEventBus events, long pollMillis) {
+        follower = new Thread(() -> {
+            while (!closed) {
+                try {
+                    poll(events);
+                } catch (IOException e) {
+                    System.err.println("Failed to read cluster journal: " + e.getMessage());
+                }
+                try {
+                    Thread.sleep(pollMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "cluster-journal-follower");
+        follower.setDaemon(true);
+        follower.start();
+    }
+    
+    private void poll(LicenseEventBus events) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = in.size();
+            ByteBuffer head = ByteBuffer.allocate((int) Math.min(size, MAX_HEADER_BYTES));
+            in.read(head, 0);
+            String header = completeLines(head.array(), head.position());
+            int newline = header.indexOf('\n');
+            if (newline < 0 || !header.startsWith(EPOCH_PREFIX)) {
+                return;
+            }
+            
+            String currentEpoch = header.substring(0, newline);
+            if (!currentEpoch.equals(epoch) || size < offset) {
+                epoch = currentEpoch;
+                offset = newline + 1;
+                events.publish(new LicenseEvent(LicenseEvent.Type.ALL_CHANGED, (String) null));
+            }
+            if (size <= offset) {
+                return;
+            }
+            
+            ByteBuffer tail = ByteBuffer.allocate((int) Math.min(size - offset, MAX_BYTES));
+            in.read(tail, offset);
+            String lines = completeLines(tail.array(), tail.position());
+            if (lines.isEmpty() && tail.position() == MAX_BYTES) {
+                // A line longer than the buffer, which this version never writes;
+                // skip it once it is complete and assume anything may have changed
+                long end = lineEnd(in, offset + MAX_BYTES, size);
+                if (end >= 0) {
+                    offset = end;
+                    events.publish(new LicenseEvent(LicenseEvent.Type.ALL_CHANGED, (String) null));
+                }
+                return;
+            }
+            offset += lines.getBytes(StandardCharsets.UTF_8).length;
+            for (String line : lines.split("\n")) {
+                if (!line.isEmpty()) {
+                    publish(events, line);
+                }
+            }
+        }
+    }
+    
+    private static void publish(LicenseEventBus events, String line) {
+        try {
+            JsonObject event = JsonParser.parseString(line).getAsJsonObject();
+            LicenseEvent.Type type = LicenseEvent.Type.valueOf(event.get("type").getAsString());
+            if (event.has("ids")) {
+                List<String> ids = new ArrayList<>();
+                for (JsonElement id : event.getAsJsonArray("ids")) {
+                    ids.add(id.getAsString());
+                }
+                events.publish(new LicenseEvent(type, ids));
+                return;
+            }
+            String id = event.has("id") && !event.get("id").isJsonNull() ? event.get("id").getAsString() : null;
+            events.publish(new LicenseEvent(type, id));
+        } catch (JsonParseException | IllegalStateException | IllegalArgumentException e) {
+            // Torn read across an epoch change; the next poll sees the new epoch
+        }
+    }
+    
+    // Offset just past the first newline at or after from, or -1 if there is none yet
+    private static long lineEnd(FileChannel in, long from, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SKIP_BUFFER_BYTES);
+        for (long position = from; position < size; position += buffer.position()) {
+            buffer.clear();
+            if (in.read(buffer, position) <= 0) {
+                break;
+            }
+            for (int i = 0; i < buffer.position(); i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+        }
+        return -1;
+    }
+    
+    // Text up to and including the last newline
+    private static String completeLines(byte[] bytes, int length) {
+        int end = length;
+        while (end > 0 && bytes[end - 1] != '\n') {
+            end--;
+        }
+        return new String(bytes, 0, end, StandardCharsets.UTF_8);
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        if (follower != null) {
+            follower.interrupt();
+        }
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.macmoment.licensing.server;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Role of this server in a cluster sharing one SQLite database.
+ * The leader accepts admin writes and replicates cache invalidations through
+ * a {@link ClusterJournal}; followers serve validations and reads from their
+ * own cache and reject admin writes.
+ */
+public class ClusterNode implements AutoCloseable {
+    
+    public enum Role {
+        STANDALONE,
+        LEADER,
+        FOLLOWER
+    }
+    
+    private final Role role;
+    private final LicenseEventBus events;
+    private final ClusterJournal journal;
+    private final String leaderUrl;
+    private final long pollMillis;
+    
+    public ClusterNode(Role role, LicenseEventBus events, ClusterJournal journal, String leaderUrl,
+                       long pollMillis) {
+        this.role = role;
+        this.events = events;
+        this.journal = journal;
+        this.leaderUrl = leaderUrl;
+        this.pollMillis = pollMillis;
+    }
+    
+    /**
+     * A node that is not part of a cluster.
+     */
+    public static ClusterNode standalone(LicenseEventBus events) {
+        return new ClusterNode(Role.STANDALONE, events, null, null, 0);
+    }
+    
+    /**
+     * Reads the cluster configuration:
+     * -Dlicensing.cluster.role=standalone|leader|follower,
+     * -Dlicensing.cluster.journal=&lt;shared file&gt;,
+     * -Dlicensing.cluster.leader=&lt;leader base URL, followers only&gt;,
+     * -Dlicensing.cluster.pollMillis=&lt;follower poll interval&gt;.
+     */
+    public static ClusterNode fromSystemProperties(LicenseEventBus events) {
+        Role role = Role.valueOf(System.getProperty("licensing.cluster.role", "standalone").toUpperCase());
+        if (role == Role.STANDALONE) {
+            return standalone(events);
+        }
+        ClusterJournal journal = new ClusterJournal(
+                Paths.get(System.getProperty("licensing.cluster.journal", "cluster.journal")));
+        String leaderUrl = System.getProperty("licensing.cluster.leader");
+        long pollMillis = Long.getLong("licensing.cluster.pollMillis", 50);
+        return new ClusterNode(role, events, journal, leaderUrl, pollMillis);
+    }
+    
+    /**
+     * Starts replicating: the leader forwards local events to the journal,
+     * followers republish the journal on their local bus.
+     */
+    public void start() throws IOException {
+        if (role == Role.LEADER) {
+            journal.openForAppend();
+            events.subscribe(journal::append);
+        } else if (role == Role.FOLLOWER) {
+            journal.follow(events, pollMillis);
+        }
+    }
+    
+    public Role getRole() {
+        return role;
+    }
+    
+    public LicenseEventBus getEvents() {
+        return events;
+    }
+    
+    /**
+     * Whether admin writes may be served by this node.
+     */
+    public boolean acceptsWrites() {
+        return role != Role.FOLLOWER;
+    }
+    
+    /**
+     * Gets the leader's base URL that followers redirect writes to, or null.
+     */
+    public String getLeaderUrl() {
+        return leaderUrl;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+}
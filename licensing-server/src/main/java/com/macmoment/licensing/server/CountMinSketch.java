@@ -0,0 +1,63 @@
+package com.macmoment.licensing.server;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free count-min sketch of how often each value was seen.
+ * Estimates never undercount; they overcount by at most
+ * {@code e * total / width} with probability {@code 1 - e^-depth}.
+ */
+final class CountMinSketch {
+
+    private final int depth;
+    private final int width;
+    private final AtomicLongArray counts;
+
+    /**
+     * @param width counters per row, a power of two
+     */
+    CountMinSketch(int depth, int width) {
+        if (Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("width must be a power of two");
+        }
+        this.depth = depth;
+        this.width = width;
+        this.counts = new AtomicLongArray(depth * width);
+    }
+
+    /**
+     * Counts one occurrence of a value by its {@link HyperLogLog#hash(String)}.
+     * @return the value's estimated count, including this occurrence
+     */
+    long add(long hash) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts.incrementAndGet(indexOf(row, hash)));
+        }
+        return estimate;
+    }
+
+    long estimate(long hash) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts.get(indexOf(row, hash)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Halves every counter so older traffic weighs less than recent traffic.
+     */
+    void decay() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.getAndUpdate(i, count -> count >>> 1);
+        }
+    }
+
+    // Row hashes derived from two halves of one 64-bit hash (Kirsch-Mitzenmacher)
+    private int indexOf(int row, long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return row * width + ((h1 + row * h2) & (width - 1));
+    }
+}
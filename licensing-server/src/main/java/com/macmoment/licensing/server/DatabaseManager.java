@@ -1,371 +1,170 @@
 package com.macmoment.licensing.server;
 
-import java.sql.*;
-import java.util.*;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
 
 /**
- * Database manager for license data.
+ * Storage engine for license data.
+ * Rows are exchanged as maps keyed by column name so every engine returns
+ * the same shapes the REST API serializes.
  */
-public class DatabaseManager {
+public interface DatabaseManager {
     
-    private Connection connection;
+    /** Storage engine backed by a single SQLite file. */
+    String SQLITE = "sqlite";
     
-    public DatabaseManager(String dbPath) throws SQLException {
-        connection = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
-        initializeTables();
-    }
+    /** Volatile storage engine for tests and benchmarks. */
+    String MEMORY = "memory";
+    
+    /** Append-only journal with an in-memory index and periodic snapshots. */
+    String JOURNAL = "journal";
     
     /**
-     * Creates database tables if they don't exist.
+     * Opens a storage engine by name, instrumented for {@link Metrics}.
+     * @param engine one of {@link #SQLITE}, {@link #MEMORY} or {@link #JOURNAL}
+     * @param path database file (SQLite) or journal file (journal); ignored for memory
      */
-    private void initializeTables() throws SQLException {
-        try (Statement stmt = connection.createStatement()) {
-            // Products table
-            stmt.execute(
-                "CREATE TABLE IF NOT EXISTS products (" +
-                "id TEXT PRIMARY KEY," +
-                "name TEXT NOT NULL," +
-                "description TEXT," +
-                "created_at INTEGER NOT NULL" +
-                ")"
-            );
-            
-            // Tiers table
-            stmt.execute(
-                "CREATE TABLE IF NOT EXISTS tiers (" +
-                "id TEXT PRIMARY KEY," +
-                "product_id TEXT NOT NULL," +
-                "name TEXT NOT NULL," +
-                "features TEXT," +
-                "max_users INTEGER," +
-                "FOREIGN KEY (product_id) REFERENCES products(id)" +
-                ")"
-            );
-            
-            // Licenses table
-            stmt.execute(
-                "CREATE TABLE IF NOT EXISTS licenses (" +
-                "key TEXT PRIMARY KEY," +
-                "product_id TEXT NOT NULL," +
-                "tier_id TEXT," +
-                "hwid TEXT," +
-                "ip TEXT," +
-                "expiry_time INTEGER," +
-                "created_at INTEGER NOT NULL," +
-                "last_validated INTEGER," +
-                "active BOOLEAN DEFAULT 1," +
-                "FOREIGN KEY (product_id) REFERENCES products(id)," +
-                "FOREIGN KEY (tier_id) REFERENCES tiers(id)" +
-                ")"
-            );
-            
-            // Validation logs table
-            stmt.execute(
-                "CREATE TABLE IF NOT EXISTS validation_logs (" +
-                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                "license_key TEXT NOT NULL," +
-                "hwid TEXT," +
-                "ip TEXT," +
-                "timestamp INTEGER NOT NULL," +
-                "success BOOLEAN NOT NULL," +
-                "FOREIGN KEY (license_key) REFERENCES licenses(key)" +
-                ")"
-            );
-        }
+    static DatabaseManager open(String engine, String path) throws SQLException {
+        DatabaseManager storage;
+        switch (engine) {
+            case SQLITE:
+                storage = new SqliteDatabaseManager(path);
+                break;
+            case MEMORY:
+                storage = new InMemoryDatabaseManager();
+                break;
+            case JOURNAL:
+                storage = new JournalDatabaseManager(path);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown storage engine: " + engine);
+        }
+        return new InstrumentedDatabaseManager(storage);
     }
     
     // Product operations
     
-    public void createProduct(String id, String name, String description) throws SQLException {
-        String sql = "INSERT INTO products (id, name, description, created_at) VALUES (?, ?, ?, ?)";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, id);
-            stmt.setString(2, name);
-            stmt.setString(3, description);
-            stmt.setLong(4, System.currentTimeMillis());
-            stmt.executeUpdate();
-        }
-    }
+    void createProduct(String id, String name, String description) throws SQLException;
     
-    public List<Map<String, Object>> getAllProducts() throws SQLException {
-        String sql = "SELECT * FROM products ORDER BY created_at DESC";
-        List<Map<String, Object>> products = new ArrayList<>();
-        
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                Map<String, Object> product = new HashMap<>();
-                product.put("id", rs.getString("id"));
-                product.put("name", rs.getString("name"));
-                product.put("description", rs.getString("description"));
-                product.put("created_at", rs.getLong("created_at"));
-                products.add(product);
-            }
-        }
-        
-        return products;
-    }
+    List<Map<String, Object>> getAllProducts() throws SQLException;
+    
+    void deleteProduct(String id) throws SQLException;
     
     // Tier operations
     
-    public void createTier(String id, String productId, String name, String features, int maxUsers) 
-            throws SQLException {
-        String sql = "INSERT INTO tiers (id, product_id, name, features, max_users) VALUES (?, ?, ?, ?, ?)";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, id);
-            stmt.setString(2, productId);
-            stmt.setString(3, name);
-            stmt.setString(4, features);
-            stmt.setInt(5, maxUsers);
-            stmt.executeUpdate();
-        }
-    }
+    /**
+     * Creates a tier, registering any of its comma-separated features the product
+     * has not used before. The tier row carries {@code feature_mask}, with the bit
+     * of each feature ID set, and {@code features} in ID order.
+     * @throws IllegalArgumentException if the product would exceed 64 features
+     */
+    void createTier(String id, String productId, String name, String features, int maxUsers)
+            throws SQLException;
     
-    public List<Map<String, Object>> getTiersByProduct(String productId) throws SQLException {
-        String sql = "SELECT * FROM tiers WHERE product_id = ?";
-        List<Map<String, Object>> tiers = new ArrayList<>();
-        
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, productId);
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    Map<String, Object> tier = new HashMap<>();
-                    tier.put("id", rs.getString("id"));
-                    tier.put("product_id", rs.getString("product_id"));
-                    tier.put("name", rs.getString("name"));
-                    tier.put("features", rs.getString("features"));
-                    tier.put("max_users", rs.getInt("max_users"));
-                    tiers.add(tier);
-                }
-            }
-        }
-        
-        return tiers;
-    }
+    List<Map<String, Object>> getTiersByProduct(String productId) throws SQLException;
+    
+    void deleteTier(String id) throws SQLException;
+    
+    /**
+     * Gets a product's feature registry: every feature name its tiers have used,
+     * mapped to its bit index in feature masks, in ID order. IDs are never reused.
+     */
+    Map<String, Integer> getFeatureIds(String productId) throws SQLException;
+    
+    /**
+     * Gets every product with its tiers nested under {@code tiers}, plus license
+     * counts ({@code license_count}, {@code active_count}) per product and per tier.
+     */
+    List<Map<String, Object>> getCatalog() throws SQLException;
     
     // License operations
     
-    public void createLicense(String key, String productId, String tierId, Long expiryTime) 
-            throws SQLException {
-        String sql = "INSERT INTO licenses (key, product_id, tier_id, expiry_time, created_at, active) " +
-                     "VALUES (?, ?, ?, ?, ?, 1)";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, key);
-            stmt.setString(2, productId);
-            stmt.setString(3, tierId);
-            if (expiryTime != null) {
-                stmt.setLong(4, expiryTime);
-            } else {
-                stmt.setNull(4, Types.INTEGER);
-            }
-            stmt.setLong(5, System.currentTimeMillis());
-            stmt.executeUpdate();
-        }
-    }
+    void createLicense(String key, String productId, String tierId, Long expiryTime) throws SQLException;
     
-    public Map<String, Object> getLicense(String key) throws SQLException {
-        String sql = "SELECT l.*, t.name as tier_name, t.features, t.max_users " +
-                     "FROM licenses l " +
-                     "LEFT JOIN tiers t ON l.tier_id = t.id " +
-                     "WHERE l.key = ?";
-        
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, key);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    Map<String, Object> license = new HashMap<>();
-                    license.put("key", rs.getString("key"));
-                    license.put("product_id", rs.getString("product_id"));
-                    license.put("tier_id", rs.getString("tier_id"));
-                    license.put("tier_name", rs.getString("tier_name"));
-                    license.put("features", rs.getString("features"));
-                    license.put("max_users", rs.getInt("max_users"));
-                    license.put("hwid", rs.getString("hwid"));
-                    license.put("ip", rs.getString("ip"));
-                    license.put("expiry_time", rs.getLong("expiry_time"));
-                    license.put("active", rs.getBoolean("active"));
-                    license.put("created_at", rs.getLong("created_at"));
-                    return license;
-                }
-            }
-        }
-        
-        return null;
-    }
+    /**
+     * Creates many licenses with the same product, tier and expiry. Storage may
+     * commit them in chunks; if it fails part way, the chunks already committed stay.
+     * Keys that already exist are left untouched.
+     * @return the keys that were skipped because they already exist
+     */
+    List<String> createLicenses(List<String> keys, String productId, String tierId, Long expiryTime)
+            throws SQLException;
     
-    public void updateLicenseBinding(String key, String hwid, String ip) throws SQLException {
-        String sql = "UPDATE licenses SET hwid = ?, ip = ?, last_validated = ? WHERE key = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, hwid);
-            stmt.setString(2, ip);
-            stmt.setLong(3, System.currentTimeMillis());
-            stmt.setString(4, key);
-            stmt.executeUpdate();
-        }
-    }
+    /**
+     * Gets a license joined with its tier, or null if the key does not exist.
+     */
+    Map<String, Object> getLicense(String key) throws SQLException;
     
-    public List<Map<String, Object>> getAllLicenses() throws SQLException {
-        String sql = "SELECT l.*, p.name as product_name, t.name as tier_name " +
-                     "FROM licenses l " +
-                     "JOIN products p ON l.product_id = p.id " +
-                     "LEFT JOIN tiers t ON l.tier_id = t.id " +
-                     "ORDER BY l.created_at DESC";
-        List<Map<String, Object>> licenses = new ArrayList<>();
-        
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                Map<String, Object> license = new HashMap<>();
-                license.put("key", rs.getString("key"));
-                license.put("product_id", rs.getString("product_id"));
-                license.put("product_name", rs.getString("product_name"));
-                license.put("tier_id", rs.getString("tier_id"));
-                license.put("tier_name", rs.getString("tier_name"));
-                license.put("hwid", rs.getString("hwid"));
-                license.put("ip", rs.getString("ip"));
-                license.put("expiry_time", rs.getLong("expiry_time"));
-                license.put("active", rs.getBoolean("active"));
-                license.put("created_at", rs.getLong("created_at"));
-                licenses.add(license);
-            }
-        }
-        
-        return licenses;
-    }
+    /**
+     * Gets many licenses in the shape of {@link #getLicense(String)}, in no
+     * particular order; keys that do not exist are left out. Callers may load
+     * disjoint key sets from several threads at once.
+     */
+    List<Map<String, Object>> getLicenses(List<String> keys) throws SQLException;
     
-    public void logValidation(String key, String hwid, String ip, boolean success) 
-            throws SQLException {
-        String sql = "INSERT INTO validation_logs (license_key, hwid, ip, timestamp, success) " +
-                     "VALUES (?, ?, ?, ?, ?)";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, key);
-            stmt.setString(2, hwid);
-            stmt.setString(3, ip);
-            stmt.setLong(4, System.currentTimeMillis());
-            stmt.setBoolean(5, success);
-            stmt.executeUpdate();
-        }
-    }
+    List<Map<String, Object>> getAllLicenses() throws SQLException;
+    
+    /**
+     * Binds a license to a HWID and IP unless it is already bound to a different HWID.
+     * The check and the write are atomic, so concurrent first validations from
+     * different machines (or cluster nodes) cannot both win.
+     * @return true if the license is now bound to the given HWID
+     */
+    boolean updateLicenseBinding(String key, String hwid, String ip) throws SQLException;
     
-    // Toggle license active status
+    void toggleLicense(String key, boolean active) throws SQLException;
     
-    public void toggleLicense(String key, boolean active) throws SQLException {
-        String sql = "UPDATE licenses SET active = ? WHERE key = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setBoolean(1, active);
-            stmt.setString(2, key);
-            stmt.executeUpdate();
-        }
-    }
+    void resetLicenseHwid(String key) throws SQLException;
     
-    // Reset HWID binding
+    void deleteLicense(String key) throws SQLException;
     
-    public void resetLicenseHwid(String key) throws SQLException {
-        String sql = "UPDATE licenses SET hwid = NULL, ip = NULL WHERE key = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, key);
-            stmt.executeUpdate();
-        }
-    }
+    /**
+     * Finds the keys of every license matching a filter, in key order.
+     */
+    List<String> findLicenseKeys(LicenseFilter filter) throws SQLException;
     
-    // Delete operations
+    /**
+     * Applies one operation to many licenses. Storage may commit the keys in
+     * chunks; if it fails part way, the chunks already committed stay applied.
+     * Keys that do not exist are ignored.
+     * @param progress receives the number of keys committed so far as the work proceeds; may be null
+     * @return the number of licenses changed
+     */
+    int updateLicenses(BulkOperation operation, List<String> keys, IntConsumer progress) throws SQLException;
     
-    public void deleteProduct(String id) throws SQLException {
-        try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM products WHERE id = ?")) {
-            stmt.setString(1, id);
-            stmt.executeUpdate();
-        }
-    }
+    // Validation logs and stats
     
-    public void deleteLicense(String key) throws SQLException {
-        try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM licenses WHERE key = ?")) {
-            stmt.setString(1, key);
-            stmt.executeUpdate();
-        }
-    }
+    void logValidation(String key, String hwid, String ip, boolean success) throws SQLException;
     
-    public void deleteTier(String id) throws SQLException {
-        try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM tiers WHERE id = ?")) {
-            stmt.setString(1, id);
-            stmt.executeUpdate();
-        }
-    }
+    /**
+     * Writes a batch of validation attempts, keeping their original timestamps.
+     */
+    void logValidations(List<ValidationLog> entries) throws SQLException;
     
-    // Dashboard stats
+    List<Map<String, Object>> getValidationLogs(int limit) throws SQLException;
     
-    public Map<String, Object> getStats() throws SQLException {
-        Map<String, Object> stats = new HashMap<>();
-        
-        try (Statement stmt = connection.createStatement()) {
-            ResultSet rs = stmt.executeQuery("SELECT COUNT(*) as count FROM products");
-            stats.put("totalProducts", rs.next() ? rs.getInt("count") : 0);
-        }
-        
-        try (Statement stmt = connection.createStatement()) {
-            ResultSet rs = stmt.executeQuery("SELECT COUNT(*) as count FROM licenses");
-            stats.put("totalLicenses", rs.next() ? rs.getInt("count") : 0);
-        }
-        
-        try (Statement stmt = connection.createStatement()) {
-            ResultSet rs = stmt.executeQuery("SELECT COUNT(*) as count FROM licenses WHERE active = 1");
-            stats.put("activeLicenses", rs.next() ? rs.getInt("count") : 0);
-        }
-        
-        try (Statement stmt = connection.createStatement()) {
-            ResultSet rs = stmt.executeQuery(
-                "SELECT COUNT(*) as count FROM licenses WHERE expiry_time > 0 AND expiry_time < " + 
-                System.currentTimeMillis());
-            stats.put("expiredLicenses", rs.next() ? rs.getInt("count") : 0);
-        }
-        
-        try (Statement stmt = connection.createStatement()) {
-            ResultSet rs = stmt.executeQuery("SELECT COUNT(*) as count FROM tiers");
-            stats.put("totalTiers", rs.next() ? rs.getInt("count") : 0);
-        }
-        
-        try (Statement stmt = connection.createStatement()) {
-            ResultSet rs = stmt.executeQuery(
-                "SELECT COUNT(*) as count FROM validation_logs WHERE timestamp > " + 
-                (System.currentTimeMillis() - 86400000));
-            stats.put("validationsToday", rs.next() ? rs.getInt("count") : 0);
-        }
-        
-        return stats;
-    }
+    /**
+     * Finds the keys of licenses validated successfully since a time, most
+     * recently validated first.
+     */
+    List<String> findRecentlyValidatedKeys(long since, int limit) throws SQLException;
     
-    // Validation logs
-    
-    public List<Map<String, Object>> getValidationLogs(int limit) throws SQLException {
-        String sql = "SELECT vl.*, l.product_id, p.name as product_name " +
-                     "FROM validation_logs vl " +
-                     "LEFT JOIN licenses l ON vl.license_key = l.key " +
-                     "LEFT JOIN products p ON l.product_id = p.id " +
-                     "ORDER BY vl.timestamp DESC LIMIT ?";
-        List<Map<String, Object>> logs = new ArrayList<>();
-        
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, limit);
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    Map<String, Object> log = new HashMap<>();
-                    log.put("id", rs.getInt("id"));
-                    log.put("license_key", rs.getString("license_key"));
-                    log.put("hwid", rs.getString("hwid"));
-                    log.put("ip", rs.getString("ip"));
-                    log.put("timestamp", rs.getLong("timestamp"));
-                    log.put("success", rs.getBoolean("success"));
-                    log.put("product_name", rs.getString("product_name"));
-                    logs.add(log);
-                }
-            }
-        }
-        
-        return logs;
-    }
+    Map<String, Object> getStats() throws SQLException;
     
-    public void close() throws SQLException {
-        if (connection != null && !connection.isClosed()) {
-            connection.close();
-        }
-    }
+    // Server settings
+    
+    /**
+     * Gets a server setting, or null if it was never set.
+     */
+    String getSetting(String name) throws SQLException;
+    
+    /**
+     * Sets a server setting unless it is already set.
+     * @return the stored value, which is another node's if it set one first
+     */
+    String initSetting(String name, String value) throws SQLException;
+    
+    void close() throws SQLException;
 }
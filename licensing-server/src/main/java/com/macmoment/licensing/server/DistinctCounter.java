@@ -0,0 +1,62 @@
+package com.macmoment.licensing.server;
+
+import java.util.Arrays;
+
+/**
+ * Counts distinct values by their {@link HyperLogLog#hash(String)}: exactly
+ * while there are at most {@code exactLimit} of them, then with a HyperLogLog.
+ * Comparing the count against the limit is therefore exact, which linear
+ * counting alone is not for small sets. Once past the limit the estimate never
+ * drops back to it.
+ */
+final class DistinctCounter {
+
+    private final int exactLimit;
+    private final int precision;
+    private long[] exact;
+    private int size;
+    private HyperLogLog estimator;
+
+    /**
+     * @param exactLimit distinct values kept exactly before switching to the estimator
+     * @param precision precision of the HyperLogLog used past the limit
+     */
+    DistinctCounter(int exactLimit, int precision) {
+        this.exactLimit = exactLimit;
+        this.precision = precision;
+        this.exact = new long[Math.min(exactLimit, 4)];
+    }
+
+    /**
+     * Adds a value by its hash.
+     * @return true if the count may have changed
+     */
+    synchronized boolean add(long hash) {
+        if (estimator != null) {
+            return estimator.add(hash);
+        }
+        for (int i = 0; i < size; i++) {
+            if (exact[i] == hash) {
+                return false;
+            }
+        }
+        if (size == exactLimit) {
+            estimator = new HyperLogLog(precision);
+            for (int i = 0; i < size; i++) {
+                estimator.add(exact[i]);
+            }
+            estimator.add(hash);
+            exact = null;
+            return true;
+        }
+        if (size == exact.length) {
+            exact = Arrays.copyOf(exact, Math.min(exactLimit, size * 2));
+        }
+        exact[size++] = hash;
+        return true;
+    }
+
+    synchronized long estimate() {
+        return estimator != null ? Math.max(estimator.estimate(), exactLimit + 1L) : size;
+    }
+}
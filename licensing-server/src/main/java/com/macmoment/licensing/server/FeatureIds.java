@@ -0,0 +1,83 @@
+package com.macmoment.licensing.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Per-product feature registry shared by the storage engines.
+ * Every feature name a product's tiers use gets a bit index (0-63) the first
+ * time it appears; indexes are never reused, so masks held by clients and
+ * gates compiled into plugins stay valid as tiers come and go. A tier stores
+ * its features as a mask plus the names ordered by index, so the n-th name is
+ * the n-th set bit of the mask.
+ */
+final class FeatureIds {
+
+    static final int MAX_FEATURES = Long.SIZE;
+
+    private FeatureIds() {
+    }
+
+    /**
+     * Splits a comma-separated feature list into distinct, trimmed names.
+     */
+    static List<String> parse(String features) {
+        if (features == null || features.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<String> names = new LinkedHashSet<>();
+        for (String name : features.split(",")) {
+            name = name.trim();
+            if (!name.isEmpty()) {
+                names.add(name);
+            }
+        }
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * Returns a copy of the registry with IDs assigned to any names it does not have yet.
+     * @throws IllegalArgumentException if the product would exceed {@link #MAX_FEATURES}
+     */
+    static Map<String, Integer> register(Map<String, Integer> registry, List<String> names) {
+        Map<String, Integer> updated = new LinkedHashMap<>(registry);
+        for (String name : names) {
+            if (!updated.containsKey(name)) {
+                checkCapacity(updated.size());
+                updated.put(name, updated.size());
+            }
+        }
+        return updated;
+    }
+
+    static void checkCapacity(int id) {
+        if (id >= MAX_FEATURES) {
+            throw new IllegalArgumentException("A product can have at most " + MAX_FEATURES + " features");
+        }
+    }
+
+    /**
+     * Mask with the bit of every named feature set. Names must be registered.
+     */
+    static long mask(Map<String, Integer> registry, List<String> names) {
+        long mask = 0;
+        for (String name : names) {
+            mask |= 1L << registry.get(name);
+        }
+        return mask;
+    }
+
+    /**
+     * Joins names in bit order, the form tiers store their features in.
+     */
+    static String join(Map<String, Integer> registry, List<String> names) {
+        List<String> sorted = new ArrayList<>(names);
+        sorted.sort((a, b) -> Integer.compare(registry.get(a), registry.get(b)));
+        return String.join(",", sorted);
+    }
+}
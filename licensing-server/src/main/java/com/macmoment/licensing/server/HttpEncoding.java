@@ -0,0 +1,81 @@
+package com.macmoment.licensing.server;
+
+import spark.Request;
+import spark.Route;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Response compression and conditional-request helpers.
+ */
+public final class HttpEncoding {
+    
+    /** Smaller bodies gain little from compression and cost a deflater each. */
+    public static final int GZIP_MIN_BYTES = 1024;
+    
+    private HttpEncoding() {
+    }
+    
+    /**
+     * Wraps a route so string bodies of at least {@link #GZIP_MIN_BYTES} are sent
+     * gzip-compressed to clients that accept it.
+     */
+    public static Route compressed(Route route) {
+        return (req, res) -> {
+            Object body = route.handle(req, res);
+            res.header("Vary", "Accept-Encoding");
+            if (body instanceof String && ((String) body).length() >= GZIP_MIN_BYTES && acceptsGzip(req)) {
+                // Spark wraps the output stream in a GZIPOutputStream when this header is set
+                res.header("Content-Encoding", "gzip");
+            }
+            return body;
+        };
+    }
+    
+    public static boolean acceptsGzip(Request req) {
+        String accept = req.headers("Accept-Encoding");
+        return accept != null && accept.contains("gzip");
+    }
+    
+    /**
+     * Strong ETag for a response body.
+     */
+    public static String etag(String body) {
+        return etag(body.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    public static String etag(byte[] body) {
+        return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(sha256(body), 16)) + "\"";
+    }
+    
+    /**
+     * Whether an {@code If-None-Match} header matches the given ETag.
+     */
+    public static boolean matchesEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,667 @@
+package com.macmoment.licensing.server;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/**
+ * Volatile storage engine that keeps everything in concurrent maps.
+ * Reads are lock-free; writes are serialized on this instance. Only the most
+ * recent validation logs are retained.
+ */
+public class InMemoryDatabaseManager implements DatabaseManager {
+
+    private static final int DEFAULT_RETAINED_LOGS = 100_000;
+    private static final int MINUTES_PER_DAY = 1440;
+    private static final int PROGRESS_INTERVAL = 1000;
+
+    private final Map<String, Product> products = new ConcurrentHashMap<>();
+    private final Map<String, Tier> tiers = new ConcurrentHashMap<>();
+    private final Map<String, License> licenses = new ConcurrentHashMap<>();
+    // Product ID -> immutable feature registry, replaced on write
+    private final Map<String, Map<String, Integer>> featureIds = new ConcurrentHashMap<>();
+    private final AtomicLong insertOrder = new AtomicLong();
+    private final Map<String, String> settings = new ConcurrentHashMap<>();
+
+    private final int retainedLogs;
+    private final Deque<LogEntry> logs = new ArrayDeque<>();
+    private long nextLogId = 1;
+
+    // Validation counts per minute over the last day, for getStats()
+    private final long[] logMinutes = new long[MINUTES_PER_DAY];
+    private final long[] logCounts = new long[MINUTES_PER_DAY];
+
+    public InMemoryDatabaseManager() {
+        this(DEFAULT_RETAINED_LOGS);
+    }
+
+    public InMemoryDatabaseManager(int retainedLogs) {
+        this.retainedLogs = retainedLogs;
+    }
+
+    // Product operations
+
+    @Override
+    public synchronized void createProduct(String id, String name, String description) throws SQLException {
+        insertProduct(id, name, description, System.currentTimeMillis());
+    }
+
+    @Override
+    public List<Map<String, Object>> getAllProducts() {
+        List<Product> sorted = new ArrayList<>(products.values());
+        sorted.sort(Comparator.comparingLong((Product p) -> p.createdAt).reversed()
+                .thenComparingLong(p -> p.order));
+
+        List<Map<String, Object>> result = new ArrayList<>(sorted.size());
+        for (Product product : sorted) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("id", product.id);
+            map.put("name", product.name);
+            map.put("description", product.description);
+            map.put("created_at", product.createdAt);
+            result.add(map);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void deleteProduct(String id) throws SQLException {
+        products.remove(id);
+    }
+
+    // Tier operations
+
+    @Override
+    public synchronized void createTier(String id, String productId, String name, String features, int maxUsers)
+            throws SQLException {
+        insertTier(id, productId, name, features, maxUsers);
+    }
+
+    @Override
+    public List<Map<String, Object>> getTiersByProduct(String productId) {
+        List<Tier> matching = new ArrayList<>();
+        for (Tier tier : tiers.values()) {
+            if (tier.productId.equals(productId)) {
+                matching.add(tier);
+            }
+        }
+        matching.sort(Comparator.comparingLong(t -> t.order));
+
+        List<Map<String, Object>> result = new ArrayList<>(matching.size());
+        for (Tier tier : matching) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("id", tier.id);
+            map.put("product_id", tier.productId);
+            map.put("name", tier.name);
+            map.put("features", tier.features);
+            map.put("feature_mask", tier.featureMask);
+            map.put("max_users", tier.maxUsers);
+            result.add(map);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void deleteTier(String id) throws SQLException {
+        tiers.remove(id);
+    }
+
+    @Override
+    public Map<String, Integer> getFeatureIds(String productId) {
+        return featureIds.getOrDefault(productId, Collections.emptyMap());
+    }
+
+    @Override
+    public List<Map<String, Object>> getCatalog() {
+        // Counts per product and per tier in one pass over the licenses
+        Map<String, long[]> productCounts = new HashMap<>();
+        Map<String, long[]> tierCounts = new HashMap<>();
+        for (License license : licenses.values()) {
+            count(productCounts, license.productId, license.active);
+            if (license.tierId != null) {
+                count(tierCounts, license.tierId, license.active);
+            }
+        }
+
+        List<Map<String, Object>> result = getAllProducts();
+        for (Map<String, Object> product : result) {
+            long[] counts = productCounts.getOrDefault(product.get("id"), new long[2]);
+            product.put("license_count", counts[0]);
+            product.put("active_count", counts[1]);
+            List<Map<String, Object>> productTiers = getTiersByProduct((String) product.get("id"));
+            for (Map<String, Object> tier : productTiers) {
+                long[] tierCount = tierCounts.getOrDefault(tier.get("id"), new long[2]);
+                tier.put("license_count", tierCount[0]);
+                tier.put("active_count", tierCount[1]);
+            }
+            product.put("tiers", productTiers);
+        }
+        return result;
+    }
+
+    private static void count(Map<String, long[]> counts, String id, boolean active) {
+        long[] entry = counts.computeIfAbsent(id, k -> new long[2]);
+        entry[0]++;
+        if (active) {
+            entry[1]++;
+        }
+    }
+
+    // License operations
+
+    @Override
+    public synchronized void createLicense(String key, String productId, String tierId, Long expiryTime)
+            throws SQLException {
+        insertLicense(key, productId, tierId, expiryTime, System.currentTimeMillis());
+    }
+
+    @Override
+    public synchronized List<String> createLicenses(List<String> keys, String productId, String tierId,
+                                                    Long expiryTime) throws SQLException {
+        List<String> skipped = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (String key : keys) {
+            if (hasLicense(key)) {
+                skipped.add(key);
+            } else {
+                insertLicense(key, productId, tierId, expiryTime, now);
+            }
+        }
+        return skipped;
+    }
+
+    @Override
+    public Map<String, Object> getLicense(String key) {
+        License license = licenses.get(key);
+        if (license == null) {
+            return null;
+        }
+        Tier tier = license.tierId != null ? tiers.get(license.tierId) : null;
+
+        Map<String, Object> map = new HashMap<>();
+        map.put("key", license.key);
+        map.put("product_id", license.productId);
+        map.put("tier_id", license.tierId);
+        map.put("tier_name", tier != null ? tier.name : null);
+        map.put("features", tier != null ? tier.features : null);
+        map.put("feature_mask", tier != null ? tier.featureMask : 0L);
+        map.put("max_users", tier != null ? tier.maxUsers : 0);
+        map.put("hwid", license.hwid);
+        map.put("ip", license.ip);
+        map.put("expiry_time", license.expiryTime != null ? license.expiryTime : 0L);
+        map.put("active", license.active);
+        map.put("created_at", license.createdAt);
+        return map;
+    }
+
+    @Override
+    public List<Map<String, Object>> getLicenses(List<String> keys) {
+        List<Map<String, Object>> result = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            Map<String, Object> license = getLicense(key);
+            if (license != null) {
+                result.add(license);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Map<String, Object>> getAllLicenses() {
+        List<License> sorted = new ArrayList<>(licenses.values());
+        sorted.sort(Comparator.comparingLong((License l) -> l.createdAt).reversed()
+                .thenComparingLong(l -> l.order));
+
+        List<Map<String, Object>> result = new ArrayList<>(sorted.size());
+        for (License license : sorted) {
+            Product product = products.get(license.productId);
+            if (product == null) {
+                continue; // Matches the inner join on products in the SQL engine
+            }
+            Tier tier = license.tierId != null ? tiers.get(license.tierId) : null;
+
+            Map<String, Object> map = new HashMap<>();
+            map.put("key", license.key);
+            map.put("product_id", license.productId);
+            map.put("product_name", product.name);
+            map.put("tier_id", license.tierId);
+            map.put("tier_name", tier != null ? tier.name : null);
+            map.put("hwid", license.hwid);
+            map.put("ip", license.ip);
+            map.put("expiry_time", license.expiryTime != null ? license.expiryTime : 0L);
+            map.put("active", license.active);
+            map.put("created_at", license.createdAt);
+            result.add(map);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized boolean updateLicenseBinding(String key, String hwid, String ip) throws SQLException {
+        if (!isBindable(key, hwid)) {
+            return false;
+        }
+        applyBinding(key, hwid, ip, System.currentTimeMillis());
+        return true;
+    }
+
+    @Override
+    public synchronized void toggleLicense(String key, boolean active) throws SQLException {
+        License license = licenses.get(key);
+        if (license != null) {
+            licenses.put(key, license.withActive(active));
+        }
+    }
+
+    @Override
+    public synchronized void resetLicenseHwid(String key) throws SQLException {
+        License license = licenses.get(key);
+        if (license != null) {
+            licenses.put(key, license.withBinding(null, null, license.lastValidated));
+        }
+    }
+
+    @Override
+    public synchronized void deleteLicense(String key) throws SQLException {
+        licenses.remove(key);
+    }
+
+    @Override
+    public List<String> findLicenseKeys(LicenseFilter filter) {
+        List<String> keys = new ArrayList<>();
+        for (License license : licenses.values()) {
+            if (filter.matches(license.productId, license.tierId, license.hwid, license.expiryTime)) {
+                keys.add(license.key);
+            }
+        }
+        Collections.sort(keys);
+        return keys;
+    }
+
+    @Override
+    public synchronized int updateLicenses(BulkOperation operation, List<String> keys, IntConsumer progress)
+            throws SQLException {
+        int changed = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            if (applyBulk(operation, keys.get(i))) {
+                changed++;
+            }
+            if (progress != null && ((i + 1) % PROGRESS_INTERVAL == 0 || i + 1 == keys.size())) {
+                progress.accept(i + 1);
+            }
+        }
+        return changed;
+    }
+
+    // Validation logs and stats
+
+    @Override
+    public void logValidation(String key, String hwid, String ip, boolean success)
+            throws SQLException {
+        appendLog(key, hwid, ip, System.currentTimeMillis(), success);
+    }
+
+    @Override
+    public void logValidations(List<ValidationLog> entries) throws SQLException {
+        for (ValidationLog entry : entries) {
+            appendLog(entry.getLicenseKey(), entry.getHwid(), entry.getIp(), entry.getTimestamp(),
+                    entry.isSuccess());
+        }
+    }
+
+    @Override
+    public List<String> findRecentlyValidatedKeys(long since, int limit) {
+        Set<String> keys = new LinkedHashSet<>();
+        synchronized (logs) {
+            Iterator<LogEntry> it = logs.descendingIterator();
+            while (it.hasNext() && keys.size() < limit) {
+                LogEntry entry = it.next();
+                if (entry.success && entry.timestamp >= since) {
+                    keys.add(entry.licenseKey);
+                }
+            }
+        }
+        return new ArrayList<>(keys);
+    }
+
+    @Override
+    public List<Map<String, Object>> getValidationLogs(int limit) {
+        List<LogEntry> recent = new ArrayList<>(Math.max(0, Math.min(limit, retainedLogs)));
+        synchronized (logs) {
+            Iterator<LogEntry> it = logs.descendingIterator();
+            while (it.hasNext() && recent.size() < limit) {
+                recent.add(it.next());
+            }
+        }
+
+        List<Map<String, Object>> result = new ArrayList<>(recent.size());
+        for (LogEntry entry : recent) {
+            License license = licenses.get(entry.licenseKey);
+            Product product = license != null ? products.get(license.productId) : null;
+
+            Map<String, Object> map = new HashMap<>();
+            map.put("id", (int) entry.id);
+            map.put("license_key", entry.licenseKey);
+            map.put("hwid", entry.hwid);
+            map.put("ip", entry.ip);
+            map.put("timestamp", entry.timestamp);
+            map.put("success", entry.success);
+            map.put("product_name", product != null ? product.name : null);
+            result.add(map);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        long now = System.currentTimeMillis();
+        int active = 0;
+        int expired = 0;
+        for (License license : licenses.values()) {
+            if (license.active) {
+                active++;
+            }
+            if (license.expiryTime != null && license.expiryTime > 0 && license.expiryTime < now) {
+                expired++;
+            }
+        }
+
+        long validationsToday = 0;
+        long currentMinute = now / 60000;
+        synchronized (logs) {
+            for (int i = 0; i < MINUTES_PER_DAY; i++) {
+                if (logMinutes[i] > currentMinute - MINUTES_PER_DAY) {
+                    validationsToday += logCounts[i];
+                }
+            }
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalProducts", products.size());
+        stats.put("totalLicenses", licenses.size());
+        stats.put("activeLicenses", active);
+        stats.put("expiredLicenses", expired);
+        stats.put("totalTiers", tiers.size());
+        stats.put("validationsToday", (int) validationsToday);
+        return stats;
+    }
+
+    // Server settings
+
+    @Override
+    public String getSetting(String name) {
+        return settings.get(name);
+    }
+
+    @Override
+    public synchronized String initSetting(String name, String value) throws SQLException {
+        String existing = settings.putIfAbsent(name, value);
+        return existing != null ? existing : value;
+    }
+
+    @Override
+    public void close() throws SQLException {
+    }
+
+    // Mutations with explicit timestamps, shared with the journal engine's replay.
+    // The check* methods throw what the matching insert would, without changing anything.
+
+    protected void checkProduct(String id) throws SQLException {
+        if (products.containsKey(id)) {
+            throw new SQLException("UNIQUE constraint failed: products.id");
+        }
+    }
+
+    protected void insertProduct(String id, String name, String description, long createdAt)
+            throws SQLException {
+        Product product = new Product(id, name, description, createdAt, insertOrder.incrementAndGet());
+        if (products.putIfAbsent(id, product) != null) {
+            throw new SQLException("UNIQUE constraint failed: products.id");
+        }
+    }
+
+    protected void checkTier(String id, String productId, String features) throws SQLException {
+        if (tiers.containsKey(id)) {
+            throw new SQLException("UNIQUE constraint failed: tiers.id");
+        }
+        FeatureIds.register(getFeatureIds(productId), FeatureIds.parse(features));
+    }
+
+    protected void insertTier(String id, String productId, String name, String features, int maxUsers)
+            throws SQLException {
+        if (tiers.containsKey(id)) {
+            throw new SQLException("UNIQUE constraint failed: tiers.id");
+        }
+        tiers.put(id, registerFeatures(new Tier(id, productId, name, features, 0, maxUsers,
+                insertOrder.incrementAndGet())));
+    }
+
+    // Registers the tier's features and returns it with its features in ID order and its mask
+    private Tier registerFeatures(Tier tier) {
+        List<String> names = FeatureIds.parse(tier.features);
+        Map<String, Integer> registry = FeatureIds.register(getFeatureIds(tier.productId), names);
+        featureIds.put(tier.productId, Collections.unmodifiableMap(registry));
+        return new Tier(tier.id, tier.productId, tier.name, FeatureIds.join(registry, names),
+                FeatureIds.mask(registry, names), tier.maxUsers, tier.order);
+    }
+
+    protected void insertLicense(String key, String productId, String tierId, Long expiryTime, long createdAt)
+            throws SQLException {
+        License license = new License(key, productId, tierId, null, null, expiryTime, createdAt, null, true,
+                insertOrder.incrementAndGet());
+        if (licenses.putIfAbsent(key, license) != null) {
+            throw new SQLException("UNIQUE constraint failed: licenses.key");
+        }
+    }
+
+    protected void checkLicense(String key) throws SQLException {
+        if (licenses.containsKey(key)) {
+            throw new SQLException("UNIQUE constraint failed: licenses.key");
+        }
+    }
+
+    protected boolean hasLicense(String key) {
+        return licenses.containsKey(key);
+    }
+
+    protected boolean isBindable(String key, String hwid) {
+        License license = licenses.get(key);
+        return license != null
+                && (license.hwid == null || license.hwid.isEmpty() || license.hwid.equals(hwid));
+    }
+
+    protected void applyBinding(String key, String hwid, String ip, long lastValidated) {
+        License license = licenses.get(key);
+        if (license != null) {
+            licenses.put(key, license.withBinding(hwid, ip, lastValidated));
+        }
+    }
+
+    protected boolean applyBulk(BulkOperation operation, String key) {
+        License license = licenses.get(key);
+        if (license == null) {
+            return false;
+        }
+        switch (operation) {
+            case ACTIVATE:
+                licenses.put(key, license.withActive(true));
+                break;
+            case DEACTIVATE:
+                licenses.put(key, license.withActive(false));
+                break;
+            case RESET_HWID:
+                licenses.put(key, license.withBinding(null, null, license.lastValidated));
+                break;
+            default:
+                licenses.remove(key);
+        }
+        return true;
+    }
+
+    protected void appendLog(String key, String hwid, String ip, long timestamp, boolean success) {
+        synchronized (logs) {
+            logs.addLast(new LogEntry(nextLogId++, key, hwid, ip, timestamp, success));
+            if (logs.size() > retainedLogs) {
+                logs.removeFirst();
+            }
+
+            long minute = timestamp / 60000;
+            int slot = (int) (minute % MINUTES_PER_DAY);
+            if (logMinutes[slot] != minute) {
+                logMinutes[slot] = minute;
+                logCounts[slot] = 0;
+            }
+            logCounts[slot]++;
+        }
+    }
+
+    // Snapshot support for the journal engine
+
+    protected State captureState() {
+        State state = new State();
+        state.products = new ArrayList<>(products.values());
+        state.tiers = new ArrayList<>(tiers.values());
+        state.featureIds = new HashMap<>(featureIds);
+        state.licenses = new ArrayList<>(licenses.values());
+        state.settings = new HashMap<>(settings);
+        synchronized (logs) {
+            state.logs = new ArrayList<>(logs);
+        }
+        return state;
+    }
+
+    protected void restoreState(State state) {
+        long maxOrder = 0;
+        for (Product product : state.products) {
+            products.put(product.id, product);
+            maxOrder = Math.max(maxOrder, product.order);
+        }
+        featureIds.putAll(state.featureIds);
+        List<Tier> restoredTiers = new ArrayList<>(state.tiers);
+        restoredTiers.sort(Comparator.comparingLong(t -> t.order));
+        for (Tier tier : restoredTiers) {
+            // Snapshots taken before feature masks existed register their tiers' features now
+            if (tier.featureMask == 0 && tier.features != null && !tier.features.isEmpty()) {
+                tier = registerFeatures(tier);
+            }
+            tiers.put(tier.id, tier);
+            maxOrder = Math.max(maxOrder, tier.order);
+        }
+        for (License license : state.licenses) {
+            licenses.put(license.key, license);
+            maxOrder = Math.max(maxOrder, license.order);
+        }
+        insertOrder.set(maxOrder);
+        settings.putAll(state.settings);
+
+        for (LogEntry entry : state.logs) {
+            appendLog(entry.licenseKey, entry.hwid, entry.ip, entry.timestamp, entry.success);
+        }
+    }
+
+    /**
+     * Point-in-time copy of all records.
+     */
+    protected static class State {
+        List<Product> products = new ArrayList<>();
+        List<Tier> tiers = new ArrayList<>();
+        Map<String, Map<String, Integer>> featureIds = new HashMap<>();
+        List<License> licenses = new ArrayList<>();
+        Map<String, String> settings = new HashMap<>();
+        List<LogEntry> logs = new ArrayList<>();
+    }
+
+    static final class Product {
+        final String id;
+        final String name;
+        final String description;
+        final long createdAt;
+        final long order;
+
+        Product(String id, String name, String description, long createdAt, long order) {
+            this.id = id;
+            this.name = name;
+            this.description = description;
+            this.createdAt = createdAt;
+            this.order = order;
+        }
+    }
+
+    static final class Tier {
+        final String id;
+        final String productId;
+        final String name;
+        final String features;
+        final long featureMask;
+        final int maxUsers;
+        final long order;
+
+        Tier(String id, String productId, String name, String features, long featureMask, int maxUsers,
+             long order) {
+            this.id = id;
+            this.productId = productId;
+            this.name = name;
+            this.features = features;
+            this.featureMask = featureMask;
+            this.maxUsers = maxUsers;
+            this.order = order;
+        }
+    }
+
+    static final class License {
+        final String key;
+        final String productId;
+        final String tierId;
+        final String hwid;
+        final String ip;
+        final Long expiryTime;
+        final long createdAt;
+        final Long lastValidated;
+        final boolean active;
+        final long order;
+
+        License(String key, String productId, String tierId, String hwid, String ip, Long expiryTime,
+                long createdAt, Long lastValidated, boolean active, long order) {
+            this.key = key;
+            this.productId = productId;
+            this.tierId = tierId;
+            this.hwid = hwid;
+            this.ip = ip;
+            this.expiryTime = expiryTime;
+            this.createdAt = createdAt;
+            this.lastValidated = lastValidated;
+            this.active = active;
+            this.order = order;
+        }
+
+        License withActive(boolean newActive) {
+            return new License(key, productId, tierId, hwid, ip, expiryTime, createdAt, lastValidated,
+                    newActive, order);
+        }
+
+        License withBinding(String newHwid, String newIp, Long newLastValidated) {
+            return new License(key, productId, tierId, newHwid, newIp, expiryTime, createdAt, newLastValidated,
+                    active, order);
+        }
+    }
+
+    static final class LogEntry {
+        final long id;
+        final String licenseKey;
+        final String hwid;
+        final String ip;
+        final long timestamp;
+        final boolean success;
+
+        LogEntry(long id, String licenseKey, String hwid, String ip, long timestamp, boolean success) {
+            this.id = id;
+            this.licenseKey = licenseKey;
+            this.hwid = hwid;
+            this.ip = ip;
+            this.timestamp = timestamp;
+            this.success = success;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.macmoment.licensing.server;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Decorator that records the latency of every storage call in {@link Metrics}.
+ */
+public class InstrumentedDatabaseManager implements DatabaseManager {
+    
+    private final DatabaseManager delegate;
+    
+    public InstrumentedDatabaseManager(DatabaseManager delegate) {
+        this.delegate = delegate;
+    }
+    
+    /**
+     * Gets the wrapped storage engine.
+     */
+    public DatabaseManager getDelegate() {
+        return delegate;
+    }
+    
+    @Override
+    public void createProduct(String id, String name, String description) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            delegate.createProduct(id, name, description);
+        } finally {
+            Metrics.recordQuery("createProduct", start);
+        }
+    }
+    
+    @Override
+    public List<Map<String, Object>> getAllProducts() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return delegate.getAllProducts();
+        } finally {
+            Metrics.recordQuery("getAllProducts", start);
+        }
+    }
+    
+    @Override
+    public void deleteProduct(String id) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            delegate.deleteProduct(id);
+        } finally {
+            Metrics.recordQuery("deleteProduct", start);
+        }
+    }
+    
+    @Override
+    public void createTier(String id, String productId, String name, String features, int maxUsers)
+            throws SQLException {
+        long start = System.nanoTime();
+        try {
+            delegate.createTier(id, productId, name, features, maxUsers);
+        } finally {
+            Metrics.recordQuery("createTier", start);
+        }
+    }
+    
+    @Override
+    public List<Map<String, Object>> getTiersByProduct(String productId) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return delegate.getTiersByProduct(productId);
+        } finally {
+            Metrics.recordQuery("getTiersByProduct", start);
+        }
+    }
+    
+    @Override
+    public void deleteTier(String id) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            delegate.deleteTier(id);
+        } finally {
+            Metrics.recordQuery("deleteTier", start);
+        }
+    }
+    
+    @Override
+    public Map<String, Integer> getFeatureIds(String productId) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return delegate.getFeatureIds(productId);
+        } finally {
+            Metrics.recordQuery("getFeatureIds", start);
+        }
+    }
+    
+    @Override
+    public List<Map<String, Object>> getCatalog() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return delegate.getCatalog();
+        } finally {
+            Metrics.recordQuery("getCatalog", start);
+        }
+    }
+    
+    @Override
+    public void createLicense(String key, String productId, String tierId, Long expiryTime)
+            throws SQLException {
+        long start = System.nanoTime();
+        try {
+            delegate.createLicense(key, productId, tierId, expiryTime);
+        } finally {
+            Metrics.recordQuery("createLicense", start);
+        }
+    }
+    
+    @Override
+    public List<String> createLicenses(List<String> keys, String productId, String tierId, Long expiryTime)
+            throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return delegate.createLicenses(keys, productId, tierId, expiryTime);
+        } finally {
+            Metrics.recordQuery("createLicenses", start);
+        }
+    }
+    
+    @Override
+    public Map<String, Object> getLicense(String key) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return delegate.getLicense(key);
+        } finally {
+            Metrics.recordQuery("getLicense", start);
+        }
+    }
+    
+    @Override
+    public List<Map<String, Object>> getLicenses(List<String> keys) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return delegate.getLicenses(keys);
+        } finally {
+            Metrics.recordQuery("getLicenses", start);
+        }
+    }
+    
+    @Override
+    public List<Map<String, Object>> getAllLicenses() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return delegate.getAllLicenses();
+        } finally {
+            Metrics.recordQuery("getAllLicenses", start);
+        }
+    }
+    
+    @Override
+    public boolean updateLicenseBinding(String key, String hwid, String ip) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return delegate.updateLicenseBinding(key, hwid, ip);
+        } finally {
+            Metrics.recordQuery("updateLicenseBinding", start);
+        }
+    }
+    
+    @Override
+    public void toggleLicense(String key, boolean active) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            delegate.toggleLicense(key, active);
+        } finally {
+            Metrics.recordQuery("toggleLicense", start);
+        }
+    }
+    
+    @Override
+    public void resetLicenseHwid(String key) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            delegate.resetLicenseHwid(key);
+        } finally {
+            Metrics.recordQuery("resetLicenseHwid", start);
+        }
+    }
+    
+    @Override
+    public void deleteLicense(String key) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            delegate.deleteLicense(key);
+        } finally {
+            Metrics.recordQuery("deleteLicense", start);
+        }
+    }
+    
+    @Override
+    public List<String> findLicenseKeys(LicenseFilter filter) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return delegate.findLicenseKeys(filter);
+        } finally {
+            Metrics.recordQuery("findLicenseKeys", start);
+        }
+    }
+    
+    @Override
+    public int updateLicenses(BulkOperation operation, List<String> keys, IntConsumer progress)
+            throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return delegate.updateLicenses(operation, keys, progress);
+        } finally {
+            Metrics.recordQuery("updateLicenses", start);
+        }
+    }
+    
+    @Override
+    public void logValidation(String key, String hwid, String ip, boolean success) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            delegate.logValidation(key, hwid, ip, success);
+        } finally {
+            Metrics.recordQuery("logValidation", start);
+        }
+    }
+    
+    @Override
+    public void logValidations(List<ValidationLog> entries) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            delegate.logValidations(entries);
+        } finally {
+            Metrics.recordQuery("logValidations", start);
+        }
+    }
+    
+    @Override
+    public List<String> findRecentlyValidatedKeys(long since, int limit) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return delegate.findRecentlyValidatedKeys(since, limit);
+        } finally {
+            Metrics.recordQuery("findRecentlyValidatedKeys", start);
+        }
+    }
+    
+    @Override
+    public List<Map<String, Object>> getValidationLogs(int limit) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return delegate.getValidationLogs(limit);
+        } finally {
+            Metrics.recordQuery("getValidationLogs", start);
+        }
+    }
+    
+    @Override
+    public Map<String, Object> getStats() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return delegate.getStats();
+        } finally {
+            Metrics.recordQuery("getStats", start);
+        }
+    }
+    
+    @Override
+    public String getSetting(String name) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return delegate.getSetting(name);
+        } finally {
+            Metrics.recordQuery("getSetting", start);
+        }
+    }
+    
+    @Override
+    public String initSetting(String name, String value) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return delegate.initSetting(name, value);
+        } finally {
+            Metrics.recordQuery("initSetting", start);
+        }
+    }
+    
+    @Override
+    public void close() throws SQLException {
+        delegate.close();
+    }
+}
@@ -0,0 +1,497 @@
+package com.macmoment.licensing.server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Log-structured storage engine. Every write is appended to a journal segment
+ * and then applied to the in-memory index inherited from {@link InMemoryDatabaseManager},
+ * so reads run at memory speed and writes are sequential appends. A write is
+ * checked first and applied only once its record is written, so a failed
+ * append never leaves memory ahead of the journal.
+ *
+ * A background thread fsyncs the journal every second and periodically writes a
+ * full snapshot, after which older segments are deleted. On startup the snapshot
+ * is loaded and any newer journal records are replayed.
+ */
+public class JournalDatabaseManager extends InMemoryDatabaseManager {
+
+    private static final Gson GSON = new Gson();
+    private static final long SYNC_INTERVAL_MILLIS = 1000;
+    private static final long SNAPSHOT_INTERVAL_MILLIS = 60_000;
+
+    private final Path journalPath;
+    private final Path snapshotPath;
+    private final Pattern segmentPattern;
+    private final Object snapshotLock = new Object();
+    private final ScheduledExecutorService scheduler;
+
+    // Guarded by this
+    private long sequence;
+    private int segment;
+    private FileChannel channel;
+    private Writer writer;
+    private boolean dirty;
+
+    private volatile long snapshotSequence;
+
+    public JournalDatabaseManager(String path) throws SQLException {
+        journalPath = Paths.get(path).toAbsolutePath();
+        snapshotPath = journalPath.resolveSibling(journalPath.getFileName() + ".snapshot");
+        segmentPattern = Pattern.compile(Pattern.quote(journalPath.getFileName().toString()) + "\\.(\\d+)");
+
+        try {
+            Files.createDirectories(journalPath.getParent());
+            recover();
+            openSegment(segment + 1);
+        } catch (IOException e) {
+            throw new SQLException("Failed to open journal " + journalPath + ": " + e.getMessage(), e);
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::syncQuietly,
+                SYNC_INTERVAL_MILLIS, SYNC_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::snapshotQuietly,
+                SNAPSHOT_INTERVAL_MILLIS, SNAPSHOT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // Product operations
+
+    @Override
+    public synchronized void createProduct(String id, String name, String description) throws SQLException {
+        long now = System.currentTimeMillis();
+        checkProduct(id);
+        append("createProduct", "id", id, "name", name, "description", description, "createdAt", now);
+        insertProduct(id, name, description, now);
+    }
+
+    @Override
+    public synchronized void deleteProduct(String id) throws SQLException {
+        append("deleteProduct", "id", id);
+        super.deleteProduct(id);
+    }
+
+    // Tier operations
+
+    @Override
+    public synchronized void createTier(String id, String productId, String name, String features, int maxUsers)
+            throws SQLException {
+        checkTier(id, productId, features);
+        append("createTier", "id", id, "productId", productId, "name", name, "features", features,
+                "maxUsers", maxUsers);
+        insertTier(id, productId, name, features, maxUsers);
+    }
+
+    @Override
+    public synchronized void deleteTier(String id) throws SQLException {
+        append("deleteTier", "id", id);
+        super.deleteTier(id);
+    }
+
+    // License operations
+
+    @Override
+    public synchronized void createLicense(String key, String productId, String tierId, Long expiryTime)
+            throws SQLException {
+        long now = System.currentTimeMillis();
+        checkLicense(key);
+        append("createLicense", "key", key, "productId", productId, "tierId", tierId,
+                "expiryTime", expiryTime, "createdAt", now);
+        insertLicense(key, productId, tierId, expiryTime, now);
+    }
+
+    @Override
+    public synchronized List<String> createLicenses(List<String> keys, String productId, String tierId,
+                                                    Long expiryTime) throws SQLException {
+        List<String> skipped = new ArrayList<>();
+        Set<String> created = new LinkedHashSet<>();
+        long now = System.currentTimeMillis();
+        for (String key : keys) {
+            if (hasLicense(key) || !created.add(key)) {
+                skipped.add(key);
+                continue;
+            }
+            write("createLicense", "key", key, "productId", productId, "tierId", tierId,
+                    "expiryTime", expiryTime, "createdAt", now);
+        }
+        flush();
+        for (String key : created) {
+            insertLicense(key, productId, tierId, expiryTime, now);
+        }
+        return skipped;
+    }
+
+    @Override
+    public synchronized boolean updateLicenseBinding(String key, String hwid, String ip) throws SQLException {
+        if (!isBindable(key, hwid)) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        append("bindLicense", "key", key, "hwid", hwid, "ip", ip, "lastValidated", now);
+        applyBinding(key, hwid, ip, now);
+        return true;
+    }
+
+    @Override
+    public synchronized void toggleLicense(String key, boolean active) throws SQLException {
+        append("toggleLicense", "key", key, "active", active);
+        super.toggleLicense(key, active);
+    }
+
+    @Override
+    public synchronized void resetLicenseHwid(String key) throws SQLException {
+        append("resetLicenseHwid", "key", key);
+        super.resetLicenseHwid(key);
+    }
+
+    @Override
+    public synchronized void deleteLicense(String key) throws SQLException {
+        append("deleteLicense", "key", key);
+        super.deleteLicense(key);
+    }
+
+    @Override
+    public synchronized int updateLicenses(BulkOperation operation, List<String> keys, IntConsumer progress)
+            throws SQLException {
+        // A single record, so replay applies the whole set or (if torn) none of it
+        append("updateLicenses", "operation", operation.name(), "keys", keys);
+        return super.updateLicenses(operation, keys, progress);
+    }
+
+    // Validation logs
+
+    @Override
+    public synchronized void logValidation(String key, String hwid, String ip, boolean success)
+            throws SQLException {
+        long now = System.currentTimeMillis();
+        append("logValidation", "key", key, "hwid", hwid, "ip", ip, "timestamp", now, "success", success);
+        appendLog(key, hwid, ip, now, success);
+    }
+
+    @Override
+    public synchronized void logValidations(List<ValidationLog> entries) throws SQLException {
+        for (ValidationLog entry : entries) {
+            write("logValidation", "key", entry.getLicenseKey(), "hwid", entry.getHwid(), "ip", entry.getIp(),
+                    "timestamp", entry.getTimestamp(), "success", entry.isSuccess());
+        }
+        flush();
+        for (ValidationLog entry : entries) {
+            appendLog(entry.getLicenseKey(), entry.getHwid(), entry.getIp(), entry.getTimestamp(),
+                    entry.isSuccess());
+        }
+    }
+
+    // Server settings
+
+    @Override
+    public synchronized String initSetting(String name, String value) throws SQLException {
+        String existing = getSetting(name);
+        if (existing != null) {
+            return existing;
+        }
+        append("initSetting", "name", name, "value", value);
+        return super.initSetting(name, value);
+    }
+
+    /**
+     * Writes a snapshot of the current state and deletes the journal segments it covers.
+     * Writers are only blocked while the in-memory state is copied.
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            State state;
+            long coveredSequence;
+            int lastCoveredSegment;
+            synchronized (this) {
+                if (sequence == snapshotSequence) {
+                    return;
+                }
+                state = captureState();
+                coveredSequence = sequence;
+                lastCoveredSegment = segment;
+                openSegment(segment + 1);
+            }
+
+            Snapshot snapshot = new Snapshot();
+            snapshot.sequence = coveredSequence;
+            snapshot.state = state;
+
+            Path temp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 Writer snapshotWriter = new BufferedWriter(Channels.newWriter(out, StandardCharsets.UTF_8))) {
+                GSON.toJson(snapshot, snapshotWriter);
+                snapshotWriter.flush();
+                out.force(true);
+            }
+            Files.move(temp, snapshotPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            snapshotSequence = coveredSequence;
+
+            for (Path old : listSegments()) {
+                if (segmentNumber(old) <= lastCoveredSegment) {
+                    Files.deleteIfExists(old);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        scheduler.shutdownNow();
+        try {
+            snapshot();
+            synchronized (this) {
+                writer.flush();
+                channel.force(false);
+                writer.close();
+            }
+        } catch (IOException e) {
+            throw new SQLException("Failed to close journal: " + e.getMessage(), e);
+        }
+    }
+
+    // Journal writing
+
+    private void append(String op, Object... fields) throws SQLException {
+        write(op, fields);
+        flush();
+    }
+
+    // Buffers a record; callers appending several records flush once at the end
+    private void write(String op, Object... fields) throws SQLException {
+        try {
+            JsonWriter json = new JsonWriter(writer);
+            json.beginObject();
+            json.name("seq").value(++sequence);
+            json.name("op").value(op);
+            for (int i = 0; i < fields.length; i += 2) {
+                json.name((String) fields[i]);
+                Object value = fields[i + 1];
+                if (value == null) {
+                    json.nullValue();
+                } else if (value instanceof Number) {
+                    json.value((Number) value);
+                } else if (value instanceof Boolean) {
+                    json.value((Boolean) value);
+                } else if (value instanceof List) {
+                    json.beginArray();
+                    for (Object item : (List<?>) value) {
+                        json.value(item.toString());
+                    }
+                    json.endArray();
+                } else {
+                    json.value(value.toString());
+                }
+            }
+            json.endObject();
+            writer.write('\n');
+            dirty = true;
+        } catch (IOException e) {
+            throw new SQLException("Failed to append to journal: " + e.getMessage(), e);
+        }
+    }
+
+    private void flush() throws SQLException {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new SQLException("Failed to append to journal: " + e.getMessage(), e);
+        }
+    }
+
+    // Caller holds this, or is the constructor
+    private void openSegment(int number) throws IOException {
+        if (writer != null) {
+            writer.flush();
+            channel.force(false);
+            writer.close();
+        }
+        segment = number;
+        Path path = journalPath.resolveSibling(journalPath.getFileName() + String.format(".%06d", number));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+        dirty = false;
+    }
+
+    private void syncQuietly() {
+        FileChannel toSync;
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            toSync = channel;
+        }
+        try {
+            toSync.force(false);
+        } catch (ClosedChannelException ignored) {
+            // Segment was rotated; rotation already forced it
+        } catch (IOException e) {
+            System.err.println("Journal sync failed: " + e.getMessage());
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException e) {
+            System.err.println("Journal snapshot failed: " + e.getMessage());
+        }
+    }
+
+    // Recovery
+
+    private void recover() throws IOException {
+        if (Files.exists(snapshotPath)) {
+            try (Reader reader = Files.newBufferedReader(snapshotPath, StandardCharsets.UTF_8)) {
+                Snapshot snapshot = GSON.fromJson(reader, Snapshot.class);
+                restoreState(snapshot.state);
+                sequence = snapshot.sequence;
+                snapshotSequence = snapshot.sequence;
+            }
+        }
+
+        for (Path path : listSegments()) {
+            segment = Math.max(segment, segmentNumber(path));
+            replay(path);
+        }
+    }
+
+    private void replay(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                JsonObject record;
+                try {
+                    record = JsonParser.parseString(line).getAsJsonObject();
+                } catch (JsonParseException | IllegalStateException e) {
+                    // Torn write at the tail of the last segment
+                    System.err.println("Ignoring truncated journal record in " + path.getFileName());
+                    break;
+                }
+
+                long seq = record.get("seq").getAsLong();
+                if (seq <= sequence) {
+                    continue;
+                }
+                try {
+                    apply(record);
+                } catch (SQLException e) {
+                    throw new IOException("Failed to replay journal record " + seq + ": " + e.getMessage(), e);
+                }
+                sequence = seq;
+            }
+        }
+    }
+
+    private void apply(JsonObject record) throws SQLException {
+        switch (record.get("op").getAsString()) {
+            case "createProduct":
+                insertProduct(string(record, "id"), string(record, "name"), string(record, "description"),
+                        record.get("createdAt").getAsLong());
+                break;
+            case "deleteProduct":
+                super.deleteProduct(string(record, "id"));
+                break;
+            case "createTier":
+                insertTier(string(record, "id"), string(record, "productId"), string(record, "name"),
+                        string(record, "features"), record.get("maxUsers").getAsInt());
+                break;
+            case "deleteTier":
+                super.deleteTier(string(record, "id"));
+                break;
+            case "createLicense":
+                JsonElement expiry = record.get("expiryTime");
+                insertLicense(string(record, "key"), string(record, "productId"), string(record, "tierId"),
+                        expiry == null || expiry.isJsonNull() ? null : expiry.getAsLong(),
+                        record.get("createdAt").getAsLong());
+                break;
+            case "bindLicense":
+                applyBinding(string(record, "key"), string(record, "hwid"), string(record, "ip"),
+                        record.get("lastValidated").getAsLong());
+                break;
+            case "toggleLicense":
+                super.toggleLicense(string(record, "key"), record.get("active").getAsBoolean());
+                break;
+            case "resetLicenseHwid":
+                super.resetLicenseHwid(string(record, "key"));
+                break;
+            case "deleteLicense":
+                super.deleteLicense(string(record, "key"));
+                break;
+            case "updateLicenses":
+                BulkOperation operation = BulkOperation.valueOf(string(record, "operation"));
+                for (JsonElement key : record.getAsJsonArray("keys")) {
+                    applyBulk(operation, key.getAsString());
+                }
+                break;
+            case "initSetting":
+                super.initSetting(string(record, "name"), string(record, "value"));
+                break;
+            case "logValidation":
+                appendLog(string(record, "key"), string(record, "hwid"), string(record, "ip"),
+                        record.get("timestamp").getAsLong(), record.get("success").getAsBoolean());
+                break;
+            default:
+                throw new SQLException("Unknown journal operation: " + record.get("op"));
+        }
+    }
+
+    private static String string(JsonObject record, String name) {
+        JsonElement value = record.get(name);
+        return value == null || value.isJsonNull() ? null : value.getAsString();
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(journalPath.getParent())) {
+            for (Path path : dir) {
+                if (segmentPattern.matcher(path.getFileName().toString()).matches()) {
+                    segments.add(path);
+                }
+            }
+        }
+        segments.sort((a, b) -> Integer.compare(segmentNumber(a), segmentNumber(b)));
+        return segments;
+    }
+
+    private int segmentNumber(Path path) {
+        Matcher matcher = segmentPattern.matcher(path.getFileName().toString());
+        return matcher.matches() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
+    private static class Snapshot {
+        long sequence;
+        State state;
+    }
+}
@@ -0,0 +1,83 @@
+package com.macmoment.licensing.server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Takes and frees validation seats in the cluster leader's lease table, so
+ * that a tier's {@code max_users} holds across every node rather than per node.
+ * Used by followers, whose own lease table is not consulted for validations.
+ */
+public class LeaderSeats {
+
+    private static final Gson GSON = new Gson();
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    private static final int READ_TIMEOUT_MILLIS = 5000;
+
+    private final String leaderUrl;
+
+    /**
+     * @param leaderUrl the leader's base URL, or null if none is configured
+     */
+    public LeaderSeats(String leaderUrl) {
+        this.leaderUrl = leaderUrl;
+    }
+
+    /**
+     * Takes or renews the holder's validation seat on the leader.
+     * @return false if every seat is taken
+     * @throws IOException if the leader cannot be asked
+     */
+    public boolean acquire(String productId, String licenseKey, String holder) throws IOException {
+        return post("/api/leases/validation", productId, licenseKey, holder).get("granted").getAsBoolean();
+    }
+
+    /**
+     * Frees the holder's seat on the leader.
+     * @throws IOException if the leader cannot be asked
+     */
+    public void release(String productId, String licenseKey, String holder) throws IOException {
+        post("/api/leases/release", productId, licenseKey, holder);
+    }
+
+    private JsonObject post(String route, String productId, String licenseKey, String holder) throws IOException {
+        if (leaderUrl == null) {
+            throw new IOException("No cluster leader configured for seat checks");
+        }
+        JsonObject request = new JsonObject();
+        request.addProperty("productId", productId);
+        request.addProperty("licenseKey", licenseKey);
+        request.addProperty("instanceId", holder);
+        byte[] body = request.toString().getBytes(StandardCharsets.UTF_8);
+
+        HttpURLConnection conn = (HttpURLConnection) new URL(leaderUrl + route).openConnection();
+        try {
+            conn.setRequestMethod("POST");
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            conn.setReadTimeout(READ_TIMEOUT_MILLIS);
+            conn.setDoOutput(true);
+            conn.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = conn.getOutputStream()) {
+                out.write(body);
+            }
+            if (conn.getResponseCode() != 200) {
+                throw new IOException("Cluster leader answered " + conn.getResponseCode() + " to " + route);
+            }
+            try (InputStream in = conn.getInputStream()) {
+                return GSON.fromJson(new String(in.readAllBytes(), StandardCharsets.UTF_8), JsonObject.class);
+            } catch (JsonParseException e) {
+                throw new IOException("Unreadable answer from cluster leader to " + route, e);
+            }
+        } finally {
+            conn.disconnect();
+        }
+    }
+}
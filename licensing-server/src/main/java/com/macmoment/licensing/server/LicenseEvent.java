@@ -0,0 +1,66 @@
+package com.macmoment.licensing.server;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A change to license data that caches on this or other nodes must observe.
+ */
+public class LicenseEvent {
+    
+    public enum Type {
+        /** Licenses were modified (e.g. HWID reset or reactivated). */
+        LICENSE_CHANGED,
+        /** Licenses were deactivated. */
+        LICENSE_REVOKED,
+        /** Licenses were deleted. */
+        LICENSE_DELETED,
+        /** A tier was changed or deleted; the ID is the tier ID. */
+        TIER_CHANGED,
+        /** Products, tiers or license counts changed without affecting any license's state; the ID is null. */
+        CATALOG_CHANGED,
+        /** Anything may have changed; the ID is null. */
+        ALL_CHANGED
+    }
+    
+    private final Type type;
+    private final List<String> ids;
+    
+    public LicenseEvent(Type type, String id) {
+        this(type, id != null ? Collections.singletonList(id) : Collections.<String>emptyList());
+    }
+    
+    /**
+     * Creates an event covering many licenses at once, e.g. after a bulk operation.
+     */
+    public LicenseEvent(Type type, List<String> ids) {
+        this.type = type;
+        this.ids = Collections.unmodifiableList(ids);
+    }
+    
+    public Type getType() {
+        return type;
+    }
+    
+    /**
+     * Gets the license key or tier ID this event refers to (the first one for bulk events).
+     */
+    public String getId() {
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+    
+    /**
+     * Gets every license key or tier ID this event refers to.
+     */
+    public List<String> getIds() {
+        return ids;
+    }
+    
+    @Override
+    public String toString() {
+        if (ids.size() > 1) {
+            return type + " " + ids.size() + " ids";
+        }
+        return type + (ids.isEmpty() ? "" : " " + ids.get(0));
+    }
+}
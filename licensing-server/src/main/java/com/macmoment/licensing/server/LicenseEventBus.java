@@ -0,0 +1,35 @@
+package com.macmoment.licensing.server;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Synchronous fan-out of {@link LicenseEvent}s to in-process listeners.
+ */
+public class LicenseEventBus {
+    
+    private final List<Consumer<LicenseEvent>> listeners = new CopyOnWriteArrayList<>();
+    
+    public void subscribe(Consumer<LicenseEvent> listener) {
+        listeners.add(listener);
+    }
+    
+    public void unsubscribe(Consumer<LicenseEvent> listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Delivers an event to every listener on the calling thread.
+     * A failing listener does not prevent delivery to the others.
+     */
+    public void publish(LicenseEvent event) {
+        for (Consumer<LicenseEvent> listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                System.err.println("License event listener failed on " + event + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.macmoment.licensing.server;
+
+/**
+ * Selects licenses for a bulk operation. Every field that is set must match;
+ * fields left null do not constrain the selection.
+ */
+public class LicenseFilter {
+    
+    private final String productId;
+    private final String tierId;
+    private final String hwid;
+    private final Long expiredBefore;
+    
+    /**
+     * @param expiredBefore matches licenses with an expiry time before this instant
+     *                      (licenses that never expire are not matched)
+     */
+    public LicenseFilter(String productId, String tierId, String hwid, Long expiredBefore) {
+        this.productId = productId;
+        this.tierId = tierId;
+        this.hwid = hwid;
+        this.expiredBefore = expiredBefore;
+    }
+    
+    public String getProductId() {
+        return productId;
+    }
+    
+    public String getTierId() {
+        return tierId;
+    }
+    
+    public String getHwid() {
+        return hwid;
+    }
+    
+    public Long getExpiredBefore() {
+        return expiredBefore;
+    }
+    
+    /**
+     * Whether no field is set, i.e. the filter would match every license.
+     */
+    public boolean isEmpty() {
+        return productId == null && tierId == null && hwid == null && expiredBefore == null;
+    }
+    
+    /**
+     * Tests one license's fields against this filter.
+     */
+    public boolean matches(String productId, String tierId, String hwid, Long expiryTime) {
+        return (this.productId == null || this.productId.equals(productId))
+                && (this.tierId == null || this.tierId.equals(tierId))
+                && (this.hwid == null || this.hwid.equals(hwid))
+                && (expiredBefore == null || (expiryTime != null && expiryTime > 0 && expiryTime < expiredBefore));
+    }
+}
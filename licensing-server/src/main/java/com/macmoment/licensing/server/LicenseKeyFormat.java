@@ -0,0 +1,303 @@
+package com.macmoment.licensing.server;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Self-checking license key format: {@code PPPP-SSSSS-SSSSS-SSSSS-SSSSS}.
+ * The first group is a product prefix; the remaining 20 Crockford base32
+ * characters carry a 64-bit serial and a 36-bit SipHash-2-4 MAC of the prefix
+ * and serial under a server secret. Forged, mistyped or wrong-product keys
+ * are rejected without touching storage, and every key maps to a 64-bit
+ * integer ID for lookups. Legacy keys (16 hex characters) map to their own
+ * 64-bit value, so both formats share one ID space.
+ */
+public class LicenseKeyFormat {
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final byte[] DECODE = new byte[128];
+    private static final int PREFIX_CHARS = 4;
+    private static final int BODY_CHARS = 20;
+    private static final int GROUP_CHARS = 5;
+    private static final int KEY_LENGTH = PREFIX_CHARS + 1 + BODY_CHARS + BODY_CHARS / GROUP_CHARS - 1;
+    private static final int MAC_BITS = 36;
+    private static final int LEGACY_LENGTH = 16;
+    private static final String SECRET_SETTING = "key_secret";
+
+    static {
+        Arrays.fill(DECODE, (byte) -1);
+        // Only the canonical spelling decodes, so each ID has exactly one key text
+        for (int i = 0; i < ALPHABET.length; i++) {
+            DECODE[ALPHABET[i]] = (byte) i;
+        }
+    }
+
+    private final long k0;
+    private final long k1;
+    private final boolean allowLegacy;
+
+    public LicenseKeyFormat(byte[] secret, boolean allowLegacy) {
+        if (secret.length != 16) {
+            throw new IllegalArgumentException("Key secret must be 16 bytes");
+        }
+        this.k0 = readLong(secret, 0);
+        this.k1 = readLong(secret, 8);
+        this.allowLegacy = allowLegacy;
+    }
+
+    /**
+     * Loads the MAC secret from the database's {@code key_secret} setting, so
+     * every node sharing the database, and every backup of it, verifies keys
+     * the same way. On first use the secret is imported from {@code secretFile}
+     * if there is one, or else generated; generating is refused if the
+     * database already holds keys in this format, as they were issued under
+     * a secret it does not have.
+     */
+    public static LicenseKeyFormat load(DatabaseManager database, Path secretFile, boolean allowLegacy)
+            throws IOException, SQLException {
+        String secret = database.getSetting(SECRET_SETTING);
+        if (secret == null) {
+            if (Files.exists(secretFile)) {
+                secret = new String(Files.readAllBytes(secretFile), StandardCharsets.US_ASCII).trim();
+                decodeHex(secret);
+            } else {
+                for (Map<String, Object> license : database.getAllLicenses()) {
+                    if (parse((String) license.get("key")) != null) {
+                        throw new IllegalStateException("The database holds license keys but no key secret; "
+                                + "point -Dlicensing.keys.secretFile at the secret they were issued under");
+                    }
+                }
+                byte[] generated = new byte[16];
+                new SecureRandom().nextBytes(generated);
+                secret = encodeHex(generated);
+            }
+            secret = database.initSetting(SECRET_SETTING, secret);
+        }
+        return new LicenseKeyFormat(decodeHex(secret), allowLegacy);
+    }
+
+    /**
+     * Encodes a serial as a key for the given product.
+     */
+    public String format(String productId, long serial) {
+        int prefix = productPrefix(productId);
+        long mac = mac(prefix, serial);
+
+        char[] out = new char[KEY_LENGTH];
+        for (int i = PREFIX_CHARS - 1; i >= 0; i--) {
+            out[i] = ALPHABET[prefix & 31];
+            prefix >>>= 5;
+        }
+
+        // 100-bit body: serial (64) then MAC (36); the last 12 digits carry the low 60 bits
+        long high = serial >>> 24;
+        long low = ((serial & 0xFFFFFFL) << MAC_BITS) | mac;
+        int pos = KEY_LENGTH - 1;
+        for (int i = 0; i < BODY_CHARS; i++) {
+            if (i > 0 && i % GROUP_CHARS == 0) {
+                out[pos--] = '-';
+            }
+            long digit;
+            if (i < 12) {
+                digit = low & 31;
+                low >>>= 5;
+            } else {
+                digit = high & 31;
+                high >>>= 5;
+            }
+            out[pos--] = ALPHABET[(int) digit];
+        }
+        out[pos] = '-';
+        return new String(out);
+    }
+
+    /**
+     * Checks a key's shape and MAC, and that it was issued for the given product.
+     * Legacy keys pass on shape alone (if allowed); storage has the final word.
+     */
+    public boolean accepts(String key, String productId) {
+        if (isLegacy(key)) {
+            return allowLegacy;
+        }
+        long[] parsed = parse(key);
+        return parsed != null
+                && parsed[0] == productPrefix(productId)
+                && parsed[2] == mac((int) parsed[0], parsed[1]);
+    }
+
+    /**
+     * Maps a key of either format to its 64-bit ID, without checking the MAC.
+     * @throws IllegalArgumentException if the key is in neither format
+     */
+    public static long id(String key) {
+        if (isLegacy(key)) {
+            return Long.parseUnsignedLong(key, 16);
+        }
+        long[] parsed = parse(key);
+        if (parsed == null) {
+            throw new IllegalArgumentException("Not a license key: " + key);
+        }
+        return parsed[1];
+    }
+
+    /**
+     * Whether a key maps to an ID at all (either format, MAC not checked).
+     */
+    public static boolean isDecodable(String key) {
+        return isLegacy(key) || parse(key) != null;
+    }
+
+    public static boolean isLegacy(String key) {
+        if (key == null || key.length() != LEGACY_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < LEGACY_LENGTH; i++) {
+            char c = key.charAt(i);
+            if (!(c >= '0' && c <= '9') && !(c >= 'A' && c <= 'F')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Returns {prefix, serial, mac}, or null if the key is not in the new format
+    private static long[] parse(String key) {
+        if (key == null || key.length() != KEY_LENGTH) {
+            return null;
+        }
+        long prefix = 0;
+        for (int i = 0; i < PREFIX_CHARS; i++) {
+            int digit = digit(key.charAt(i));
+            if (digit < 0) {
+                return null;
+            }
+            prefix = (prefix << 5) | digit;
+        }
+
+        long high = 0;
+        long low = 0;
+        int index = 0;
+        for (int i = PREFIX_CHARS; i < KEY_LENGTH; i++) {
+            char c = key.charAt(i);
+            if (c == '-') {
+                if ((i - PREFIX_CHARS) % (GROUP_CHARS + 1) != 0) {
+                    return null;
+                }
+                continue;
+            }
+            int digit = digit(c);
+            if (digit < 0) {
+                return null;
+            }
+            // First 8 digits hold serial bits 63..24, the last 12 the rest of the serial and the MAC
+            if (index < 8) {
+                high = (high << 5) | digit;
+            } else {
+                low = (low << 5) | digit;
+            }
+            index++;
+        }
+        if (index != BODY_CHARS) {
+            return null;
+        }
+        long serial = (high << 24) | (low >>> MAC_BITS);
+        long mac = low & ((1L << MAC_BITS) - 1);
+        return new long[] {prefix, serial, mac};
+    }
+
+    private static int digit(char c) {
+        return c < 128 ? DECODE[c] : -1;
+    }
+
+    // 20-bit FNV-1a of the product ID; only a routing hint, the MAC covers it
+    private static int productPrefix(String productId) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < productId.length(); i++) {
+            hash ^= productId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return (int) (hash ^ (hash >>> 20) ^ (hash >>> 40)) & 0xFFFFF;
+    }
+
+    private long mac(int prefix, long serial) {
+        return sipHash(k0, k1, serial, prefix) & ((1L << MAC_BITS) - 1);
+    }
+
+    /**
+     * SipHash-2-4 of a 16-byte message given as two little-endian words.
+     */
+    static long sipHash(long k0, long k1, long m0, long m1) {
+        long v0 = 0x736f6d6570736575L ^ k0;
+        long v1 = 0x646f72616e646f6dL ^ k1;
+        long v2 = 0x6c7967656e657261L ^ k0;
+        long v3 = 0x7465646279746573L ^ k1;
+
+        long[] v = {v0, v1, v2, v3};
+        compress(v, m0);
+        compress(v, m1);
+        compress(v, 16L << 56);
+
+        v[2] ^= 0xff;
+        for (int i = 0; i < 4; i++) {
+            round(v);
+        }
+        return v[0] ^ v[1] ^ v[2] ^ v[3];
+    }
+
+    private static void compress(long[] v, long m) {
+        v[3] ^= m;
+        round(v);
+        round(v);
+        v[0] ^= m;
+    }
+
+    private static void round(long[] v) {
+        v[0] += v[1];
+        v[1] = Long.rotateLeft(v[1], 13);
+        v[1] ^= v[0];
+        v[0] = Long.rotateLeft(v[0], 32);
+        v[2] += v[3];
+        v[3] = Long.rotateLeft(v[3], 16);
+        v[3] ^= v[2];
+        v[0] += v[3];
+        v[3] = Long.rotateLeft(v[3], 21);
+        v[3] ^= v[0];
+        v[2] += v[1];
+        v[1] = Long.rotateLeft(v[1], 17);
+        v[1] ^= v[2];
+        v[2] = Long.rotateLeft(v[2], 32);
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 7; i >= 0; i--) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static byte[] decodeHex(String hex) {
+        if (hex.length() != 32) {
+            throw new IllegalArgumentException("Key secret must be 32 hex characters");
+        }
+        byte[] bytes = new byte[16];
+        for (int i = 0; i < 16; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static String encodeHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
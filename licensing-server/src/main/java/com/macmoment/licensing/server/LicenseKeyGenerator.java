@@ -0,0 +1,54 @@
+package com.macmoment.licensing.server;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates license keys in the {@link LicenseKeyFormat} from random 64-bit serials.
+ * Randomness for a whole batch is drawn from one private {@link SecureRandom}
+ * in a single call, which avoids the per-key locking and formatting cost of
+ * {@code UUID.randomUUID()} while keeping keys unpredictable.
+ */
+public class LicenseKeyGenerator {
+    
+    private final LicenseKeyFormat format;
+    private final SecureRandom random = new SecureRandom();
+    
+    public LicenseKeyGenerator(LicenseKeyFormat format) {
+        this.format = format;
+    }
+    
+    public String next(String productId) {
+        return generate(productId, 1).get(0);
+    }
+    
+    /**
+     * Generates keys with distinct serials. Uniqueness against existing licenses is up to storage.
+     */
+    public List<String> generate(String productId, int count) {
+        byte[] bytes = new byte[count * Long.BYTES];
+        random.nextBytes(bytes);
+        
+        List<String> keys = new ArrayList<>(count);
+        Set<Long> seen = new HashSet<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            long serial = toLong(bytes, i * Long.BYTES);
+            while (!seen.add(serial)) {
+                serial = random.nextLong();
+            }
+            keys.add(format.format(productId, serial));
+        }
+        return keys;
+    }
+    
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+}
@@ -1,11 +1,27 @@
 package com.macmoment.licensing.server;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import spark.Response;
 import spark.Spark;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
 import java.util.*;
+import java.util.zip.GZIPOutputStream;
 
+import static com.macmoment.licensing.server.HttpEncoding.compressed;
+import static com.macmoment.licensing.server.Metrics.timed;
 import static spark.Spark.*;
 
 /**
@@ -14,52 +30,95 @@ import static spark.Spark.*;
 public class LicenseServer {
     
     private static final Gson GSON = new Gson();
+    private static final int MAX_BULK_LICENSES = 1_000_000;
+    private static final int MAX_BATCH_VALIDATIONS = 256;
+    // Clients ping the revocation channel well within this
+    private static final int REVOCATION_IDLE_TIMEOUT_MILLIS = 5 * 60 * 1000;
+    // Bulk operations that finish within this are answered directly instead of with a job to poll
+    private static final long BULK_SYNC_WAIT_MILLIS = 2000;
+    
     private static DatabaseManager db;
+    private static ClusterNode cluster;
+    private static ValidationLogQueue logQueue;
+    private static SeatLeaseManager leases;
+    // Followers take validation seats in the leader's lease table; null on the leader
+    private static LeaderSeats leaderSeats;
+    private static boolean seatsOnValidate;
+    private static LicenseKeyFormat keyFormat;
+    private static LicenseKeyGenerator keyGenerator;
+    private static BulkJobManager bulkJobs;
+    private static ValidationEventStream validationEvents;
+    private static SharingDetector sharing;
+    private static BackupManager backups;
+    // Set once the server accepts requests, cleared as soon as it starts shutting down
+    private static volatile boolean ready;
     
     public static void main(String[] args) {
         try {
-            // Initialize database
-            db = new DatabaseManager("licenses.db");
-            System.out.println("✓ Database initialized");
-            
-            // Configure server
-            port(8080);
+            // Initialize storage (-Dlicensing.storage=sqlite|memory|journal, -Dlicensing.db=<path>)
+            String engine = System.getProperty("licensing.storage", DatabaseManager.SQLITE);
+            String dbPath = System.getProperty("licensing.db",
+                    engine.equals(DatabaseManager.JOURNAL) ? "licenses.journal" : "licenses.db");
+            int serverPort = Integer.getInteger("licensing.port", 8080);
             
-            // Try to serve static files from classpath
-            try {
-                staticFiles.location("/web");
-            } catch (Exception e) {
-                System.out.println("Note: Static files not available - web UI may not load");
+            LicenseEventBus events = new LicenseEventBus();
+            ClusterNode node = ClusterNode.fromSystemProperties(events);
+            if (node.getRole() != ClusterNode.Role.STANDALONE && !engine.equals(DatabaseManager.SQLITE)) {
+                throw new IllegalArgumentException("Cluster mode requires the sqlite storage engine");
             }
             
-            // Enable CORS
-            options("/*", (request, response) -> {
-                String accessControlRequestHeaders = request.headers("Access-Control-Request-Headers");
-                if (accessControlRequestHeaders != null) {
-                    response.header("Access-Control-Allow-Headers", accessControlRequestHeaders);
+            // Snapshots (-Dlicensing.backup.dir, .intervalMillis, .keep; -Dlicensing.restore=<file>|latest)
+            Path backupDir = Paths.get(System.getProperty("licensing.backup.dir", "backups"));
+            String restore = System.getProperty("licensing.restore");
+            if (restore != null) {
+                if (!engine.equals(DatabaseManager.SQLITE)) {
+                    throw new IllegalArgumentException("Restoring a snapshot requires the sqlite storage engine");
                 }
-                
-                String accessControlRequestMethod = request.headers("Access-Control-Request-Method");
-                if (accessControlRequestMethod != null) {
-                    response.header("Access-Control-Allow-Methods", accessControlRequestMethod);
-                }
-                
-                return "OK";
-            });
+                System.out.println("✓ Restored " + BackupManager.restore(restore, dbPath, backupDir).getFileName());
+            }
+            
+            CachedDatabaseManager database = new CachedDatabaseManager(DatabaseManager.open(engine, dbPath), events);
+            System.out.println("✓ Database initialized (" + engine + ")");
             
-            before((request, response) -> {
-                response.header("Access-Control-Allow-Origin", "*");
-                response.header("Access-Control-Allow-Methods", "GET,PUT,POST,DELETE,OPTIONS");
-                response.header("Access-Control-Allow-Headers", "Content-Type,Authorization");
-                response.type("application/json");
-            });
+            // Warm-up before the port opens (-Dlicensing.warmup.licenses, .windowMillis, .threads):
+            // licenses validated recently, with their tiers, and the catalog
+            long warmupStart = System.nanoTime();
+            List<String> hot = database.findRecentlyValidatedKeys(
+                    System.currentTimeMillis() - Long.getLong("licensing.warmup.windowMillis", 7 * 86400000L),
+                    Integer.getInteger("licensing.warmup.licenses", 100_000));
+            int cached = database.preload(hot, Integer.getInteger("licensing.warmup.threads", 4));
+            System.out.println("✓ Cache warmed up with " + cached + " licenses in "
+                    + (System.nanoTime() - warmupStart) / 1_000_000 + " ms");
+            
+            if (engine.equals(DatabaseManager.SQLITE)) {
+                backups = new BackupManager(dbPath, backupDir,
+                        Long.getLong("licensing.backup.intervalMillis", 60 * 60 * 1000),
+                        Integer.getInteger("licensing.backup.keep", 24));
+            }
+            
+            node.start();
+            if (node.getRole() != ClusterNode.Role.STANDALONE) {
+                System.out.println("✓ Cluster " + node.getRole().name().toLowerCase());
+            }
+            
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    stop();
+                    if (backups != null) {
+                        backups.close();
+                    }
+                    node.close();
+                    database.close();
+                } catch (Exception e) {
+                    System.err.println("Failed to close database: " + e.getMessage());
+                }
+            }, "database-shutdown"));
             
-            // Setup routes
-            setupRoutes();
+            start(database, serverPort, node);
             
             System.out.println("\n=== License Server Started ===");
-            System.out.println("API: http://localhost:8080");
-            System.out.println("UI: http://localhost:8080/index.html");
+            System.out.println("API: http://localhost:" + serverPort);
+            System.out.println("UI: http://localhost:" + serverPort + "/index.html");
             System.out.println("==============================\n");
             
         } catch (Exception e) {
@@ -69,76 +128,454 @@ public class LicenseServer {
         }
     }
     
+    /**
+     * Starts a standalone API and web UI on the given port and blocks until it is accepting requests.
+     */
+    public static void start(DatabaseManager database, int serverPort) {
+        start(database, serverPort, ClusterNode.standalone(new LicenseEventBus()));
+    }
+    
+    /**
+     * Starts the API and web UI as a cluster node.
+     * Validation logs are written in the background every
+     * -Dlicensing.logs.flushMillis (default 100; 0 writes them inline).
+     */
+    public static void start(DatabaseManager database, int serverPort, ClusterNode node) {
+        db = database;
+        cluster = node;
+        
+        // Key MAC secret, kept in the database; -Dlicensing.keys.secretFile=<path> imports an existing one
+        // (-Dlicensing.keys.allowLegacy=true|false)
+        try {
+            keyFormat = LicenseKeyFormat.load(database,
+                    Paths.get(System.getProperty("licensing.keys.secretFile", "license-key.secret")),
+                    Boolean.parseBoolean(System.getProperty("licensing.keys.allowLegacy", "true")));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load license key secret", e);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to load license key secret: " + e.getMessage(), e);
+        }
+        keyGenerator = new LicenseKeyGenerator(keyFormat);
+        
+        long flushMillis = Long.getLong("licensing.logs.flushMillis", 100);
+        logQueue = flushMillis > 0 ? new ValidationLogQueue(database, 100_000, flushMillis) : null;
+        
+        // Seat leases (-Dlicensing.leases.ttlMillis, -Dlicensing.leases.validationTtlMillis,
+        // -Dlicensing.leases.snapshot=<path>, -Dlicensing.leases.enforceOnValidate=true|false)
+        leases = new SeatLeaseManager(Long.getLong("licensing.leases.ttlMillis", SeatLeaseManager.DEFAULT_TTL_MILLIS),
+                Long.getLong("licensing.leases.validationTtlMillis", SeatLeaseManager.DEFAULT_VALIDATION_TTL_MILLIS),
+                Paths.get(System.getProperty("licensing.leases.snapshot", "seat-leases.json")));
+        leaderSeats = node.acceptsWrites() ? null : new LeaderSeats(node.getLeaderUrl());
+        seatsOnValidate = Boolean.parseBoolean(System.getProperty("licensing.leases.enforceOnValidate", "true"));
+        node.getEvents().subscribe(event -> {
+            if (event.getType() == LicenseEvent.Type.LICENSE_REVOKED
+                    || event.getType() == LicenseEvent.Type.LICENSE_DELETED) {
+                for (String key : event.getIds()) {
+                    leases.releaseAll(key);
+                }
+            }
+        });
+        bulkJobs = new BulkJobManager(database);
+        validationEvents = new ValidationEventStream();
+        
+        // License-sharing detection (-Dlicensing.sharing.maxKeys, .maxHwids, .maxIps, .decayMillis)
+        sharing = new SharingDetector(Integer.getInteger("licensing.sharing.maxKeys", 50_000),
+                Long.getLong("licensing.sharing.maxHwids", 3), Long.getLong("licensing.sharing.maxIps", 8),
+                Long.getLong("licensing.sharing.decayMillis", 10 * 60 * 1000));
+        
+        // Configure server
+        port(serverPort);
+        
+        // Web UI from the classpath, fingerprinted and precompressed by the build
+        StaticAssets webAssets = null;
+        try {
+            webAssets = new StaticAssets("/web", "index.html", "script.js", "styles.css");
+        } catch (IOException e) {
+            System.out.println("Note: Static files not available - web UI may not load");
+        }
+        
+        // Push channel for revocations; must be registered before any route
+        webSocket("/api/revocations", new RevocationChannel(database, node.getEvents()));
+        webSocketIdleTimeoutMillis(REVOCATION_IDLE_TIMEOUT_MILLIS);
+        
+        // Enable CORS
+        options("/*", (request, response) -> {
+            String accessControlRequestHeaders = request.headers("Access-Control-Request-Headers");
+            if (accessControlRequestHeaders != null) {
+                response.header("Access-Control-Allow-Headers", accessControlRequestHeaders);
+            }
+            
+            String accessControlRequestMethod = request.headers("Access-Control-Request-Method");
+            if (accessControlRequestMethod != null) {
+                response.header("Access-Control-Allow-Methods", accessControlRequestMethod);
+            }
+            
+            return "OK";
+        });
+        
+        before((request, response) -> {
+            response.header("Access-Control-Allow-Origin", "*");
+            response.header("Access-Control-Allow-Methods", "GET,PUT,POST,DELETE,OPTIONS");
+            response.header("Access-Control-Allow-Headers", "Content-Type,Authorization,If-None-Match");
+            response.header("Access-Control-Expose-Headers", "ETag,Location");
+        });
+        
+        before("/api/*", (request, response) -> response.type("application/json"));
+        
+        // Followers only serve validations and reads
+        before("/api/*", (request, response) -> {
+            if (cluster.acceptsWrites() || request.requestMethod().equals("GET")
+                    || request.requestMethod().equals("OPTIONS") || request.pathInfo().startsWith("/api/validate")) {
+                return;
+            }
+            if (cluster.getLeaderUrl() != null) {
+                String query = request.queryString();
+                response.header("Location", cluster.getLeaderUrl() + request.pathInfo()
+                        + (query != null && !query.isEmpty() ? "?" + query : ""));
+                halt(307, GSON.toJson(Map.of("error", "Writes must be sent to the cluster leader")));
+            }
+            halt(503, GSON.toJson(Map.of("error", "This node is a read-only follower")));
+        });
+        
+        // Setup routes
+        if (webAssets != null) {
+            for (String path : webAssets.paths()) {
+                get(path, webAssets::serve);
+            }
+        }
+        setupRoutes();
+        
+        awaitInitialization();
+        ready = true;
+    }
+    
+    /**
+     * Stops the server started by {@link #start(DatabaseManager, int)}.
+     */
+    public static void stop() {
+        ready = false;
+        Spark.stop();
+        Spark.awaitStop();
+        if (logQueue != null) {
+            logQueue.close();
+            logQueue = null;
+        }
+        if (leases != null) {
+            leases.close();
+            leases = null;
+        }
+        if (bulkJobs != null) {
+            bulkJobs.close();
+            bulkJobs = null;
+        }
+        if (validationEvents != null) {
+            validationEvents.close();
+            validationEvents = null;
+        }
+        if (sharing != null) {
+            sharing.close();
+            sharing = null;
+        }
+    }
+    
+    /**
+     * Starts a bulk operation on the request's {@code keys} or {@code filter} and
+     * answers with the finished job, or with 202 and a job to poll if it takes longer.
+     */
+    private static String submitBulk(BulkOperation operation, JsonObject request, Response res)
+            throws InterruptedException {
+        List<String> keys = null;
+        LicenseFilter filter = null;
+        if (request.has("keys")) {
+            keys = new ArrayList<>();
+            for (JsonElement key : request.getAsJsonArray("keys")) {
+                keys.add(key.getAsString());
+            }
+            if (keys.size() > MAX_BULK_LICENSES) {
+                res.status(400);
+                return GSON.toJson(Map.of("error", "At most " + MAX_BULK_LICENSES + " keys per request"));
+            }
+        } else if (request.has("filter")) {
+            JsonObject criteria = request.getAsJsonObject("filter");
+            filter = new LicenseFilter(optionalString(criteria, "productId"), optionalString(criteria, "tierId"),
+                    optionalString(criteria, "hwid"),
+                    criteria.has("expiredBefore") && !criteria.get("expiredBefore").isJsonNull()
+                            ? criteria.get("expiredBefore").getAsLong() : null);
+            if (filter.isEmpty()) {
+                // Never let an empty filter select every license by accident
+                res.status(400);
+                return GSON.toJson(Map.of("error", "filter must set productId, tierId, hwid or expiredBefore"));
+            }
+        } else {
+            res.status(400);
+            return GSON.toJson(Map.of("error", "Either keys or filter is required"));
+        }
+        
+        BulkJobManager.Job job = bulkJobs.submit(operation, keys, filter);
+        if (!job.await(BULK_SYNC_WAIT_MILLIS)) {
+            res.status(202);
+            res.header("Location", "/api/jobs/" + job.getId());
+        }
+        return GSON.toJson(job.toMap());
+    }
+    
+    private static String optionalString(JsonObject object, String name) {
+        return object.has(name) && !object.get(name).isJsonNull() ? object.get(name).getAsString() : null;
+    }
+    
+    /**
+     * Counts a validation, feeds the dashboard event stream, and logs it to storage
+     * unless the key was malformed. Attempts on existing keys also feed sharing detection.
+     */
+    private static void recordValidation(String key, String productId, String hwid, String ip,
+                                         ValidationOutcome outcome) throws SQLException {
+        Metrics.recordValidation(outcome);
+        validationEvents.record(key, productId, hwid, ip, outcome);
+        if (outcome == ValidationOutcome.MALFORMED_KEY) {
+            return;
+        }
+        if (outcome != ValidationOutcome.INVALID_KEY) {
+            sharing.record(key, hwid, ip);
+        }
+        boolean success = outcome == ValidationOutcome.SUCCESS;
+        if (logQueue != null) {
+            logQueue.log(key, hwid, ip, success);
+        } else {
+            db.logValidation(key, hwid, ip, success);
+        }
+    }
+    
+    /**
+     * Validates one license and returns the response body, binary or JSON.
+     */
+    private static byte[] validate(ValidationRequest request, boolean binary) throws SQLException, IOException {
+        String productId = request.getProductId();
+        String licenseKey = request.getLicenseKey();
+        String hwid = request.getHwid();
+        String ip = request.getIp();
+        
+        // Forged, mistyped and wrong-product keys never reach storage
+        if (!keyFormat.accepts(licenseKey, productId)) {
+            return reject(request, ValidationOutcome.MALFORMED_KEY, binary);
+        }
+        
+        Map<String, Object> license = db.getLicense(licenseKey);
+        
+        if (license == null) {
+            return reject(request, ValidationOutcome.INVALID_KEY, binary);
+        }
+        if (!license.get("product_id").equals(productId)) {
+            return reject(request, ValidationOutcome.WRONG_PRODUCT, binary);
+        }
+        if (!(Boolean) license.get("active")) {
+            return reject(request, ValidationOutcome.INACTIVE, binary);
+        }
+        
+        // Check expiry
+        Long expiryTime = (Long) license.get("expiry_time");
+        if (expiryTime != null && expiryTime > 0 && System.currentTimeMillis() > expiryTime) {
+            return reject(request, ValidationOutcome.EXPIRED, binary);
+        }
+        
+        // Check HWID binding
+        String boundHwid = (String) license.get("hwid");
+        if (boundHwid != null && !boundHwid.isEmpty() && !boundHwid.equals(hwid)) {
+            return reject(request, ValidationOutcome.HWID_MISMATCH, binary);
+        }
+        
+        // Tiers with max_users take a seat per validating instance, whether or not the client leases
+        // one; clients that send no instance ID hold the seat of their machine
+        Integer maxUsers = (Integer) license.get("max_users");
+        boolean seated = seatsOnValidate && maxUsers != null && maxUsers > 0;
+        String holder = request.getInstanceId() != null ? request.getInstanceId() : hwid;
+        if (seated && !acquireSeat(productId, licenseKey, holder, maxUsers)) {
+            return reject(request, ValidationOutcome.SEATS_FULL, binary);
+        }
+        
+        // Bind HWID and IP if not already bound; losing the race to another machine is a mismatch
+        if ((boundHwid == null || boundHwid.isEmpty()) && !db.updateLicenseBinding(licenseKey, hwid, ip)) {
+            if (seated) {
+                releaseSeat(productId, licenseKey, holder);
+            }
+            return reject(request, ValidationOutcome.HWID_MISMATCH, binary);
+        }
+        
+        recordValidation(licenseKey, productId, hwid, ip, ValidationOutcome.SUCCESS);
+        
+        Long featureMask = (Long) license.get("feature_mask");
+        String tierName = (String) license.get("tier_name");
+        String features = (String) license.get("features");
+        long expiry = expiryTime != null ? expiryTime : 0;
+        long mask = featureMask != null ? featureMask : 0;
+        return binary
+                ? BinaryValidation.success(tierName, expiry, features, mask)
+                : ValidationResponses.success(tierName, expiry, features, mask);
+    }
+    
+    /**
+     * Takes or renews a holder's validation seat, in the leader's lease table when this node is a follower.
+     * @return false if every seat is taken
+     */
+    private static boolean acquireSeat(String productId, String licenseKey, String holder, int maxUsers)
+            throws IOException {
+        if (leaderSeats != null) {
+            return leaderSeats.acquire(productId, licenseKey, holder);
+        }
+        return leases.acquireForValidation(licenseKey, holder, maxUsers) != null;
+    }
+    
+    /**
+     * Frees a seat taken by a validation that was refused after all; the seat
+     * otherwise expires with the validation TTL.
+     */
+    private static void releaseSeat(String productId, String licenseKey, String holder) {
+        if (leaderSeats == null) {
+            leases.release(licenseKey, holder);
+            return;
+        }
+        try {
+            leaderSeats.release(productId, licenseKey, holder);
+        } catch (IOException e) {
+            System.err.println("Failed to release seat of " + licenseKey + " on the cluster leader: "
+                    + e.getMessage());
+        }
+    }
+    
+    private static byte[] reject(ValidationRequest request, ValidationOutcome outcome, boolean binary)
+            throws SQLException {
+        recordValidation(request.getLicenseKey(), request.getProductId(), request.getHwid(), request.getIp(),
+                outcome);
+        return binary ? BinaryValidation.failure(outcome) : ValidationResponses.failure(outcome);
+    }
+    
     private static void setupRoutes() {
         // License validation endpoint (for plugins)
-        post("/api/validate", (req, res) -> {
+        post("/api/validate", timed((req, res) -> {
+            // Clients that send the binary encoding get it back
+            if (BinaryValidation.accepts(req.contentType())) {
+                ValidationRequest request;
+                try {
+                    request = BinaryValidation.decodeRequest(req.bodyAsBytes());
+                } catch (IllegalArgumentException e) {
+                    res.status(400);
+                    return GSON.toJson(Map.of("error", e.getMessage()));
+                }
+                res.type(BinaryValidation.CONTENT_TYPE);
+                return validate(request, true);
+            }
+            return validate(ValidationRequest.parse(req.body()), false);
+        }));
+        
+        // Several licenses of one machine at once, answered as an array in request order
+        post("/api/validate/batch", timed((req, res) -> {
+            List<ValidationRequest> requests = ValidationRequest.parseBatch(req.body(), MAX_BATCH_VALIDATIONS);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(128 * requests.size() + 2);
+            out.write('[');
+            for (int i = 0; i < requests.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                out.writeBytes(validate(requests.get(i), false));
+            }
+            out.write(']');
+            return out.toByteArray();
+        }));
+        
+        // Seat leases (for plugins); max_users concurrent instances per license
+        post("/api/leases", timed((req, res) -> {
             JsonObject request = GSON.fromJson(req.body(), JsonObject.class);
-            
             String productId = request.get("productId").getAsString();
             String licenseKey = request.get("licenseKey").getAsString();
-            String hwid = request.get("hwid").getAsString();
-            String ip = request.get("ip").getAsString();
+            String instanceId = request.get("instanceId").getAsString();
             
-            Map<String, Object> license = db.getLicense(licenseKey);
+            Map<String, Object> license = keyFormat.accepts(licenseKey, productId) ? db.getLicense(licenseKey) : null;
+            Long expiryTime = license != null ? (Long) license.get("expiry_time") : null;
+            if (license == null || !license.get("product_id").equals(productId) || !(Boolean) license.get("active")
+                    || (expiryTime != null && expiryTime > 0 && System.currentTimeMillis() > expiryTime)) {
+                return GSON.toJson(Map.of("granted", false, "message", "License is not valid"));
+            }
             
-            JsonObject response = new JsonObject();
+            int maxUsers = license.get("max_users") != null ? (Integer) license.get("max_users") : 0;
+            SeatLeaseManager.Lease lease = leases.acquire(licenseKey, instanceId, maxUsers);
             
-            if (license == null) {
-                response.addProperty("valid", false);
-                response.addProperty("message", "Invalid license key");
-                db.logValidation(licenseKey, hwid, ip, false);
-            } else if (!license.get("product_id").equals(productId)) {
-                response.addProperty("valid", false);
-                response.addProperty("message", "License not valid for this product");
-                db.logValidation(licenseKey, hwid, ip, false);
-            } else if (!(Boolean) license.get("active")) {
-                response.addProperty("valid", false);
-                response.addProperty("message", "License has been deactivated");
-                db.logValidation(licenseKey, hwid, ip, false);
+            Map<String, Object> response = new HashMap<>();
+            response.put("granted", lease != null);
+            response.put("maxUsers", maxUsers);
+            response.put("seatsInUse", leases.getLeases(licenseKey).size());
+            if (lease != null) {
+                response.put("leaseId", lease.getId());
+                response.put("expiresAt", lease.getExpiresAt());
+                response.put("ttl", leases.getTtlMillis());
             } else {
-                // Check expiry
-                Long expiryTime = (Long) license.get("expiry_time");
-                if (expiryTime != null && expiryTime > 0 && System.currentTimeMillis() > expiryTime) {
-                    response.addProperty("valid", false);
-                    response.addProperty("message", "License has expired");
-                    db.logValidation(licenseKey, hwid, ip, false);
-                } else {
-                    // Check HWID binding
-                    String boundHwid = (String) license.get("hwid");
-                    if (boundHwid != null && !boundHwid.isEmpty() && !boundHwid.equals(hwid)) {
-                        response.addProperty("valid", false);
-                        response.addProperty("message", "License bound to different hardware");
-                        db.logValidation(licenseKey, hwid, ip, false);
-                    } else {
-                        // Valid license
-                        response.addProperty("valid", true);
-                        response.addProperty("message", "License validated successfully");
-                        response.addProperty("tier", (String) license.get("tier_name"));
-                        response.addProperty("expiryTime", expiryTime != null ? expiryTime : 0);
-                        
-                        // Add allowed features
-                        String features = (String) license.get("features");
-                        if (features != null && !features.isEmpty()) {
-                            response.add("allowedFeatures", GSON.toJsonTree(Arrays.asList(features.split(","))));
-                        }
-                        
-                        // Bind HWID and IP if not already bound
-                        if (boundHwid == null || boundHwid.isEmpty()) {
-                            db.updateLicenseBinding(licenseKey, hwid, ip);
-                        }
-                        
-                        db.logValidation(licenseKey, hwid, ip, true);
-                    }
-                }
+                response.put("message", "All seats are in use");
             }
-            
             return GSON.toJson(response);
-        });
+        }));
+        
+        // Validation seats of a follower's validations, so the leader counts the seats of every node
+        post("/api/leases/validation", timed((req, res) -> {
+            JsonObject request = GSON.fromJson(req.body(), JsonObject.class);
+            String productId = request.get("productId").getAsString();
+            String licenseKey = request.get("licenseKey").getAsString();
+            String instanceId = request.get("instanceId").getAsString();
+            
+            Map<String, Object> license = keyFormat.accepts(licenseKey, productId) ? db.getLicense(licenseKey) : null;
+            if (license == null || !license.get("product_id").equals(productId)) {
+                return GSON.toJson(Map.of("granted", false));
+            }
+            int maxUsers = license.get("max_users") != null ? (Integer) license.get("max_users") : 0;
+            return GSON.toJson(Map.of("granted",
+                    leases.acquireForValidation(licenseKey, instanceId, maxUsers) != null));
+        }));
+        
+        // Frees an instance's seat, leased or taken by validating, e.g. when the client shuts down
+        post("/api/leases/release", timed((req, res) -> {
+            JsonObject request = GSON.fromJson(req.body(), JsonObject.class);
+            String licenseKey = request.get("licenseKey").getAsString();
+            String instanceId = request.get("instanceId").getAsString();
+            return GSON.toJson(Map.of("released", leases.release(licenseKey, instanceId)));
+        }));
+        
+        post("/api/leases/:leaseId/renew", timed((req, res) -> {
+            SeatLeaseManager.Lease lease = leases.renew(req.params(":leaseId"));
+            if (lease == null) {
+                return GSON.toJson(Map.of("renewed", false));
+            }
+            return GSON.toJson(Map.of("renewed", true, "expiresAt", lease.getExpiresAt()));
+        }));
+        
+        post("/api/leases/:leaseId/release", timed((req, res) ->
+                GSON.toJson(Map.of("released", leases.release(req.params(":leaseId"))))));
+        
+        get("/api/licenses/:key/leases", timed(compressed((req, res) -> {
+            List<Map<String, Object>> result = new ArrayList<>();
+            for (SeatLeaseManager.Lease lease : leases.getLeases(req.params(":key"))) {
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("id", lease.getId());
+                entry.put("instanceId", lease.getHolder());
+                entry.put("expiresAt", lease.getExpiresAt());
+                result.add(entry);
+            }
+            return GSON.toJson(result);
+        })));
         
         // Product endpoints
-        get("/api/products", (req, res) -> GSON.toJson(db.getAllProducts()));
+        get("/api/products", timed(compressed((req, res) -> GSON.toJson(db.getAllProducts()))));
         
-        post("/api/products", (req, res) -> {
+        // Products with nested tiers and license counts in one response; revalidate with If-None-Match
+        get("/api/catalog", timed(compressed((req, res) -> {
+            String json = GSON.toJson(db.getCatalog());
+            String etag = HttpEncoding.etag(json);
+            res.header("ETag", etag);
+            res.header("Cache-Control", "no-cache");
+            if (HttpEncoding.matchesEtag(req.headers("If-None-Match"), etag)) {
+                res.status(304);
+                return "";
+            }
+            return json;
+        })));
+        
+        post("/api/products", timed((req, res) -> {
             JsonObject request = GSON.fromJson(req.body(), JsonObject.class);
             String id = UUID.randomUUID().toString();
             String name = request.get("name").getAsString();
@@ -150,15 +587,15 @@ public class LicenseServer {
             response.put("id", id);
             response.put("message", "Product created successfully");
             return GSON.toJson(response);
-        });
+        }));
         
         // Tier endpoints
-        get("/api/products/:productId/tiers", (req, res) -> {
+        get("/api/products/:productId/tiers", timed(compressed((req, res) -> {
             String productId = req.params(":productId");
             return GSON.toJson(db.getTiersByProduct(productId));
-        });
+        })));
         
-        post("/api/products/:productId/tiers", (req, res) -> {
+        post("/api/products/:productId/tiers", timed((req, res) -> {
             String productId = req.params(":productId");
             JsonObject request = GSON.fromJson(req.body(), JsonObject.class);
             
@@ -167,18 +604,32 @@ public class LicenseServer {
             String features = request.has("features") ? request.get("features").getAsString() : "";
             int maxUsers = request.has("maxUsers") ? request.get("maxUsers").getAsInt() : 0;
             
-            db.createTier(id, productId, name, features, maxUsers);
+            try {
+                db.createTier(id, productId, name, features, maxUsers);
+            } catch (IllegalArgumentException e) {
+                res.status(400);
+                return GSON.toJson(Map.of("error", e.getMessage()));
+            }
             
             Map<String, String> response = new HashMap<>();
             response.put("id", id);
             response.put("message", "Tier created successfully");
             return GSON.toJson(response);
-        });
+        }));
+        
+        // Feature registry, for injecting feature gates into plugins
+        get("/api/products/:productId/features", timed((req, res) -> {
+            List<Map<String, Object>> result = new ArrayList<>();
+            for (Map.Entry<String, Integer> feature : db.getFeatureIds(req.params(":productId")).entrySet()) {
+                result.add(Map.of("name", feature.getKey(), "id", feature.getValue()));
+            }
+            return GSON.toJson(result);
+        }));
         
         // License endpoints
-        get("/api/licenses", (req, res) -> GSON.toJson(db.getAllLicenses()));
+        get("/api/licenses", timed(compressed((req, res) -> GSON.toJson(db.getAllLicenses()))));
         
-        get("/api/licenses/:key", (req, res) -> {
+        get("/api/licenses/:key", timed((req, res) -> {
             String key = req.params(":key");
             Map<String, Object> license = db.getLicense(key);
             if (license == null) {
@@ -186,13 +637,13 @@ public class LicenseServer {
                 return GSON.toJson(Map.of("error", "License not found"));
             }
             return GSON.toJson(license);
-        });
+        }));
         
-        post("/api/licenses", (req, res) -> {
+        post("/api/licenses", timed((req, res) -> {
             JsonObject request = GSON.fromJson(req.body(), JsonObject.class);
             
-            String key = UUID.randomUUID().toString().replace("-", "").toUpperCase().substring(0, 16);
             String productId = request.get("productId").getAsString();
+            String key = keyGenerator.next(productId);
             String tierId = request.has("tierId") && !request.get("tierId").isJsonNull() 
                     ? request.get("tierId").getAsString() : null;
             Long expiryTime = request.has("expiryTime") && !request.get("expiryTime").isJsonNull() 
@@ -204,10 +655,56 @@ public class LicenseServer {
             response.put("key", key);
             response.put("message", "License created successfully");
             return GSON.toJson(response);
-        });
+        }));
+        
+        // Bulk issuance: inserted in committed chunks, keys streamed back as they are serialized
+        post("/api/licenses/bulk", timed((req, res) -> {
+            JsonObject request = GSON.fromJson(req.body(), JsonObject.class);
+            
+            int count = request.get("count").getAsInt();
+            if (count < 1 || count > MAX_BULK_LICENSES) {
+                res.status(400);
+                return GSON.toJson(Map.of("error", "count must be between 1 and " + MAX_BULK_LICENSES));
+            }
+            String productId = request.get("productId").getAsString();
+            String tierId = request.has("tierId") && !request.get("tierId").isJsonNull()
+                    ? request.get("tierId").getAsString() : null;
+            Long expiryTime = request.has("expiryTime") && !request.get("expiryTime").isJsonNull()
+                    ? request.get("expiryTime").getAsLong() : null;
+            
+            List<String> keys = keyGenerator.generate(productId, count);
+            List<String> skipped = db.createLicenses(keys, productId, tierId, expiryTime);
+            while (!skipped.isEmpty()) {
+                // Collided with existing licenses; replace them with fresh keys
+                keys.removeAll(new HashSet<>(skipped));
+                List<String> replacements = keyGenerator.generate(productId, skipped.size());
+                skipped = db.createLicenses(replacements, productId, tierId, expiryTime);
+                replacements.removeAll(new HashSet<>(skipped));
+                keys.addAll(replacements);
+            }
+            
+            // Streamed, so compressed here rather than by compressed()
+            OutputStream out = res.raw().getOutputStream();
+            res.header("Vary", "Accept-Encoding");
+            if (HttpEncoding.acceptsGzip(req)) {
+                res.header("Content-Encoding", "gzip");
+                out = new GZIPOutputStream(out, 64 * 1024);
+            }
+            JsonWriter json = new JsonWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+            json.beginObject();
+            json.name("count").value(keys.size());
+            json.name("keys").beginArray();
+            for (String key : keys) {
+                json.value(key);
+            }
+            json.endArray();
+            json.endObject();
+            json.close();
+            return "";
+        }));
         
         // Toggle license active/inactive
-        put("/api/licenses/:key/toggle", (req, res) -> {
+        put("/api/licenses/:key/toggle", timed((req, res) -> {
             String key = req.params(":key");
             JsonObject request = GSON.fromJson(req.body(), JsonObject.class);
             boolean active = request.get("active").getAsBoolean();
@@ -217,44 +714,93 @@ public class LicenseServer {
             Map<String, String> response = new HashMap<>();
             response.put("message", active ? "License activated" : "License deactivated");
             return GSON.toJson(response);
-        });
+        }));
         
         // Reset HWID binding
-        put("/api/licenses/:key/reset-hwid", (req, res) -> {
+        put("/api/licenses/:key/reset-hwid", timed((req, res) -> {
             String key = req.params(":key");
             db.resetLicenseHwid(key);
             
             Map<String, String> response = new HashMap<>();
             response.put("message", "HWID binding reset successfully");
             return GSON.toJson(response);
-        });
+        }));
         
         // Delete license
-        delete("/api/licenses/:key", (req, res) -> {
+        delete("/api/licenses/:key", timed((req, res) -> {
             String key = req.params(":key");
             db.deleteLicense(key);
             return GSON.toJson(Map.of("message", "License deleted"));
-        });
+        }));
+        
+        // Bulk operations by key list or filter; large sets continue as a background job
+        post("/api/licenses/bulk/toggle", timed((req, res) -> {
+            JsonObject request = GSON.fromJson(req.body(), JsonObject.class);
+            boolean active = request.get("active").getAsBoolean();
+            return submitBulk(active ? BulkOperation.ACTIVATE : BulkOperation.DEACTIVATE, request, res);
+        }));
+        
+        post("/api/licenses/bulk/reset-hwid", timed((req, res) ->
+                submitBulk(BulkOperation.RESET_HWID, GSON.fromJson(req.body(), JsonObject.class), res)));
+        
+        post("/api/licenses/bulk/delete", timed((req, res) ->
+                submitBulk(BulkOperation.DELETE, GSON.fromJson(req.body(), JsonObject.class), res)));
+        
+        get("/api/jobs/:jobId", timed((req, res) -> {
+            BulkJobManager.Job job = bulkJobs.get(req.params(":jobId"));
+            if (job == null) {
+                res.status(404);
+                return GSON.toJson(Map.of("error", "Job not found"));
+            }
+            return GSON.toJson(job.toMap());
+        }));
         
         // Delete product
-        delete("/api/products/:productId", (req, res) -> {
+        delete("/api/products/:productId", timed((req, res) -> {
             String productId = req.params(":productId");
             db.deleteProduct(productId);
             return GSON.toJson(Map.of("message", "Product deleted"));
-        });
+        }));
         
         // Delete tier
-        delete("/api/tiers/:tierId", (req, res) -> {
+        delete("/api/tiers/:tierId", timed((req, res) -> {
             String tierId = req.params(":tierId");
             db.deleteTier(tierId);
             return GSON.toJson(Map.of("message", "Tier deleted"));
-        });
+        }));
         
         // Dashboard stats
-        get("/api/stats", (req, res) -> GSON.toJson(db.getStats()));
+        get("/api/stats", timed((req, res) -> GSON.toJson(db.getStats())));
+        
+        // Live validation events and stat deltas for dashboards (Server-Sent Events)
+        get("/api/events", (req, res) -> {
+            validationEvents.subscribe(req.raw(), res.raw(), req.headers("Last-Event-ID"));
+            return "";
+        });
+        
+        // Keys seen from too many HWIDs or IPs, and the busiest keys
+        get("/api/analytics/sharing", timed((req, res) -> {
+            int limit = 100;
+            String limitParam = req.queryParams("limit");
+            if (limitParam != null) {
+                try {
+                    limit = Math.max(0, Integer.parseInt(limitParam));
+                } catch (NumberFormatException ignored) {}
+            }
+            return GSON.toJson(sharing.getReport(limit));
+        }));
+        
+        get("/api/analytics/sharing/:key", timed((req, res) -> {
+            Map<String, Object> key = sharing.getKey(req.params(":key"));
+            if (key == null) {
+                res.status(404);
+                return GSON.toJson(Map.of("error", "License key has not been validated recently"));
+            }
+            return GSON.toJson(key);
+        }));
         
         // Validation logs
-        get("/api/logs", (req, res) -> {
+        get("/api/logs", timed(compressed((req, res) -> {
             int limit = 100;
             String limitParam = req.queryParams("limit");
             if (limitParam != null) {
@@ -263,14 +809,47 @@ public class LicenseServer {
                 } catch (NumberFormatException ignored) {}
             }
             return GSON.toJson(db.getValidationLogs(limit));
-        });
+        })));
+        
+        // Database snapshots (SQLite engine only)
+        get("/api/backups", timed((req, res) -> {
+            if (backups == null) {
+                res.status(404);
+                return GSON.toJson(Map.of("error", "Backups require the sqlite storage engine"));
+            }
+            return GSON.toJson(backups.list());
+        }));
         
-        // Health check
-        get("/api/health", (req, res) -> {
+        post("/api/backups", timed((req, res) -> {
+            if (backups == null) {
+                res.status(404);
+                return GSON.toJson(Map.of("error", "Backups require the sqlite storage engine"));
+            }
+            res.status(201);
+            return GSON.toJson(backups.backupNow());
+        }));
+        
+        // Health checks: liveness answers whenever the process serves HTTP, readiness
+        // only while it should receive traffic
+        get("/api/health", timed((req, res) -> {
             Map<String, Object> health = new HashMap<>();
             health.put("status", "ok");
+            health.put("ready", ready);
             health.put("timestamp", System.currentTimeMillis());
             return GSON.toJson(health);
+        }));
+        
+        get("/api/health/ready", timed((req, res) -> {
+            if (!ready) {
+                res.status(503);
+            }
+            return GSON.toJson(Map.of("status", ready ? "ready" : "not ready"));
+        }));
+        
+        // Prometheus metrics
+        get("/metrics", (req, res) -> {
+            res.type("text/plain; version=0.0.4");
+            return Metrics.scrape();
         });
         
         // Serve UI at root
@@ -0,0 +1,156 @@
+package com.macmoment.licensing.server;
+
+import com.macmoment.licensing.client.LatencyHistogram;
+import spark.Route;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Process-wide metrics registry exposed in the Prometheus text format.
+ * Counters are striped {@link LongAdder}s and latencies go into
+ * {@link LatencyHistogram}s, so recording never takes a lock.
+ */
+public final class Metrics {
+    
+    // Histogram bucket bounds exported to Prometheus, in seconds
+    private static final String[] BUCKET_BOUNDS = {
+        "0.00005", "0.0001", "0.00025", "0.0005", "0.001", "0.0025", "0.005",
+        "0.01", "0.025", "0.05", "0.1", "0.25", "0.5", "1", "2.5", "5", "10"
+    };
+    
+    private static final LongAdder[] VALIDATIONS = new LongAdder[ValidationOutcome.values().length];
+    private static final Map<String, LatencyHistogram> ROUTES = new ConcurrentHashMap<>();
+    private static final Map<String, LatencyHistogram> QUERIES = new ConcurrentHashMap<>();
+    private static final Map<String, Sampled> SAMPLED = new ConcurrentHashMap<>();
+    
+    static {
+        for (int i = 0; i < VALIDATIONS.length; i++) {
+            VALIDATIONS[i] = new LongAdder();
+        }
+    }
+    
+    private Metrics() {
+    }
+    
+    /**
+     * Counts a validation request by outcome.
+     */
+    public static void recordValidation(ValidationOutcome outcome) {
+        VALIDATIONS[outcome.ordinal()].increment();
+    }
+    
+    /**
+     * Records the latency of a storage call, keyed by method name.
+     */
+    public static void recordQuery(String method, long startNanos) {
+        histogram(QUERIES, method).recordSince(startNanos);
+    }
+    
+    /**
+     * Records the latency of an HTTP route, keyed by method and path pattern.
+     */
+    public static void recordRoute(String route, long startNanos) {
+        histogram(ROUTES, route).recordSince(startNanos);
+    }
+    
+    /**
+     * Registers a gauge that is sampled on every scrape. Re-registering a name replaces it.
+     */
+    public static void registerGauge(String name, String help, DoubleSupplier value) {
+        SAMPLED.put(name, new Sampled("gauge", help, value));
+    }
+    
+    /**
+     * Registers a monotonically increasing counter that is sampled on every scrape.
+     */
+    public static void registerCounter(String name, String help, DoubleSupplier value) {
+        SAMPLED.put(name, new Sampled("counter", help, value));
+    }
+    
+    /**
+     * Wraps a route so its latency is recorded under its matched path pattern.
+     */
+    public static Route timed(Route route) {
+        return (req, res) -> {
+            long start = System.nanoTime();
+            try {
+                return route.handle(req, res);
+            } finally {
+                recordRoute(req.requestMethod() + " " + req.matchedPath(), start);
+            }
+        };
+    }
+    
+    /**
+     * Renders all metrics in the Prometheus text exposition format.
+     */
+    public static String scrape() {
+        StringBuilder sb = new StringBuilder(4096);
+        
+        sb.append("# HELP licensing_validations_total License validations by outcome\n");
+        sb.append("# TYPE licensing_validations_total counter\n");
+        for (ValidationOutcome outcome : ValidationOutcome.values()) {
+            sb.append("licensing_validations_total{outcome=\"").append(outcome.getLabel()).append("\"} ")
+              .append(VALIDATIONS[outcome.ordinal()].sum()).append('\n');
+        }
+        
+        appendHistograms(sb, "licensing_http_request_duration_seconds",
+                "HTTP request latency by route", "route", ROUTES);
+        appendHistograms(sb, "licensing_db_query_duration_seconds",
+                "Storage call latency by method", "method", QUERIES);
+        
+        for (Map.Entry<String, Sampled> entry : new TreeMap<>(SAMPLED).entrySet()) {
+            sb.append("# HELP ").append(entry.getKey()).append(' ').append(entry.getValue().help).append('\n');
+            sb.append("# TYPE ").append(entry.getKey()).append(' ').append(entry.getValue().type).append('\n');
+            sb.append(entry.getKey()).append(' ').append(entry.getValue().value.getAsDouble()).append('\n');
+        }
+        
+        return sb.toString();
+    }
+    
+    private static void appendHistograms(StringBuilder sb, String name, String help, String label,
+                                         Map<String, LatencyHistogram> histograms) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(" histogram\n");
+        
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+            String labelValue = label + "=\"" + escape(entry.getKey()) + "\"";
+            LatencyHistogram histogram = entry.getValue();
+            long count = histogram.getCount();
+            
+            for (String bound : BUCKET_BOUNDS) {
+                long nanos = (long) (Double.parseDouble(bound) * 1e9);
+                sb.append(name).append("_bucket{").append(labelValue).append(",le=\"").append(bound).append("\"} ")
+                  .append(Math.min(count, histogram.countAtOrBelow(nanos))).append('\n');
+            }
+            sb.append(name).append("_bucket{").append(labelValue).append(",le=\"+Inf\"} ").append(count).append('\n');
+            sb.append(name).append("_sum{").append(labelValue).append("} ").append(histogram.getSum() / 1e9).append('\n');
+            sb.append(name).append("_count{").append(labelValue).append("} ").append(count).append('\n');
+        }
+    }
+    
+    private static LatencyHistogram histogram(Map<String, LatencyHistogram> histograms, String key) {
+        LatencyHistogram histogram = histograms.get(key);
+        return histogram != null ? histogram : histograms.computeIfAbsent(key, k -> new LatencyHistogram());
+    }
+    
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+    
+    private static final class Sampled {
+        private final String type;
+        private final String help;
+        private final DoubleSupplier value;
+        
+        private Sampled(String type, String help, DoubleSupplier value) {
+            this.type = type;
+            this.help = help;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.macmoment.licensing.server;
+
+import com.google.gson.JsonObject;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketConnect;
+import org.eclipse.jetty.websocket.api.annotations.WebSocket;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * WebSocket endpoint that pushes {@link LicenseEvent}s to subscribed clients.
+ * Each client connects with {@code ?licenseKey=...} and receives events for its
+ * own key and tier as they happen, so it can keep a long cache duration
+ * without delaying revocation. Idle connections hold no request thread.
+ */
+@WebSocket
+public class RevocationChannel {
+    
+    private final DatabaseManager db;
+    private final Map<String, Set<Session>> byKey = new ConcurrentHashMap<>();
+    private final Map<Session, Subscription> sessions = new ConcurrentHashMap<>();
+    
+    public RevocationChannel(DatabaseManager db, LicenseEventBus events) {
+        this.db = db;
+        events.subscribe(this::onEvent);
+        
+        Metrics.registerGauge("licensing_revocation_subscribers",
+                "Clients connected to the revocation channel", sessions::size);
+    }
+    
+    @OnWebSocketConnect
+    public void onConnect(Session session) {
+        List<String> keys = session.getUpgradeRequest().getParameterMap().get("licenseKey");
+        if (keys == null || keys.isEmpty()) {
+            session.close(StatusCode.POLICY_VIOLATION, "licenseKey is required");
+            return;
+        }
+        
+        String key = keys.get(0);
+        String tierId = null;
+        try {
+            Map<String, Object> license = db.getLicense(key);
+            tierId = license != null ? (String) license.get("tier_id") : null;
+        } catch (Exception e) {
+            System.err.println("Failed to look up tier for revocation subscriber: " + e.getMessage());
+        }
+        
+        sessions.put(session, new Subscription(key, tierId));
+        byKey.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(session);
+    }
+    
+    @OnWebSocketClose
+    public void onClose(Session session, int statusCode, String reason) {
+        Subscription subscription = sessions.remove(session);
+        if (subscription != null) {
+            byKey.computeIfPresent(subscription.licenseKey, (k, set) -> {
+                set.remove(session);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+    
+    private void onEvent(LicenseEvent event) {
+        switch (event.getType()) {
+            case LICENSE_CHANGED:
+            case LICENSE_REVOKED:
+            case LICENSE_DELETED:
+                for (String key : event.getIds()) {
+                    Set<Session> subscribers = byKey.get(key);
+                    if (subscribers != null) {
+                        String message = message(event.getType(), key);
+                        for (Session session : subscribers) {
+                            send(session, message);
+                        }
+                    }
+                }
+                break;
+            case TIER_CHANGED:
+                for (Map.Entry<Session, Subscription> entry : sessions.entrySet()) {
+                    if (event.getIds().contains(entry.getValue().tierId)) {
+                        send(entry.getKey(), message(event.getType(), entry.getValue().licenseKey));
+                    }
+                }
+                break;
+            case CATALOG_CHANGED:
+                // No license's validity changed
+                break;
+            default:
+                for (Map.Entry<Session, Subscription> entry : sessions.entrySet()) {
+                    send(entry.getKey(), message(event.getType(), entry.getValue().licenseKey));
+                }
+        }
+    }
+    
+    private static String message(LicenseEvent.Type type, String licenseKey) {
+        JsonObject message = new JsonObject();
+        message.addProperty("type", type.name());
+        message.addProperty("licenseKey", licenseKey);
+        return message.toString();
+    }
+    
+    // Non-blocking: the event is published on the thread that made the change
+    private static void send(Session session, String message) {
+        if (session.isOpen()) {
+            session.getRemote().sendStringByFuture(message);
+        }
+    }
+    
+    private static final class Subscription {
+        private final String licenseKey;
+        private final String tierId;
+        
+        private Subscription(String licenseKey, String tierId) {
+            this.licenseKey = licenseKey;
+            this.tierId = tierId;
+        }
+    }
+}
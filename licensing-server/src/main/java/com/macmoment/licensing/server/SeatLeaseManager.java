@@ -0,0 +1,402 @@
+package com.macmoment.licensing.server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks time-bounded seat leases that enforce a tier's {@code max_users}.
+ * Leases live in memory only. A heartbeat is a single volatile write, and
+ * expiry is driven by a hashed timing wheel: each lease sits in the slot of
+ * its expiry second, and a renewed lease is moved forward lazily when its
+ * old slot comes round. No per-lease timers or storage writes are needed.
+ * The lease table is snapshotted to a file periodically and on shutdown so a
+ * restart does not hand out seats that are still in use.
+ * <p>
+ * Seats taken by validations rather than through the lease API have no
+ * heartbeat, so they last a separate, longer TTL that covers the clients'
+ * revalidation interval. Once a holder leases its seat, the heartbeat TTL applies.
+ */
+public class SeatLeaseManager implements AutoCloseable {
+
+    public static final long DEFAULT_TTL_MILLIS = 60_000;
+    /** The client's default revalidation interval of one hour, plus a margin. */
+    public static final long DEFAULT_VALIDATION_TTL_MILLIS = 65 * 60_000;
+
+    private static final Gson GSON = new Gson();
+    private static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_SIZE = 512;
+    private static final long SNAPSHOT_INTERVAL_SECONDS = 30;
+
+    private final long ttlMillis;
+    private final long validationTtlMillis;
+    private final Path snapshotPath;
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Lease> leasesById = new ConcurrentHashMap<>();
+    private final Map<String, Set<Lease>> leasesByLicense = new ConcurrentHashMap<>();
+    private final Queue<Lease>[] wheel;
+    private final ScheduledExecutorService scheduler;
+    private final LongAdder denied = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    private long currentTick;
+    private volatile boolean dirty;
+
+    /**
+     * @param ttlMillis lifetime of a leased seat after each heartbeat
+     * @param validationTtlMillis lifetime of a seat taken by a validation after each validation
+     * @param snapshotPath file the lease table is persisted to, or null to keep it in memory only
+     */
+    @SuppressWarnings("unchecked")
+    public SeatLeaseManager(long ttlMillis, long validationTtlMillis, Path snapshotPath) {
+        this.ttlMillis = ttlMillis;
+        this.validationTtlMillis = validationTtlMillis;
+        this.snapshotPath = snapshotPath;
+        this.wheel = new Queue[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.currentTick = System.currentTimeMillis() / TICK_MILLIS;
+
+        if (snapshotPath != null) {
+            restore();
+        }
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "seat-lease-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::advance, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        if (snapshotPath != null) {
+            scheduler.scheduleWithFixedDelay(this::snapshotQuietly, SNAPSHOT_INTERVAL_SECONDS,
+                    SNAPSHOT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+
+        Metrics.registerGauge("licensing_seat_leases_active", "Seat leases currently held", leasesById::size);
+        Metrics.registerCounter("licensing_seat_leases_denied_total",
+                "Seat requests refused because every seat was taken", denied::sum);
+        Metrics.registerCounter("licensing_seat_leases_expired_total",
+                "Seat leases that expired without being released", expired::sum);
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    /**
+     * Grants a leased seat on a license, or renews the holder's existing seat;
+     * either way it is kept by heartbeats from then on.
+     * @param maxUsers seat limit; 0 or less means unlimited
+     * @return the lease, or null if every seat is taken
+     */
+    public Lease acquire(String licenseKey, String holder, int maxUsers) {
+        return acquire(licenseKey, holder, maxUsers, true);
+    }
+
+    /**
+     * Grants a seat to a validating holder, or renews its existing seat, for
+     * the validation TTL unless the holder leases the seat.
+     * @param maxUsers seat limit; 0 or less means unlimited
+     * @return the lease, or null if every seat is taken
+     */
+    public Lease acquireForValidation(String licenseKey, String holder, int maxUsers) {
+        return acquire(licenseKey, holder, maxUsers, false);
+    }
+
+    private Lease acquire(String licenseKey, String holder, int maxUsers, boolean leased) {
+        long now = System.currentTimeMillis();
+        Lease[] granted = new Lease[1];
+        leasesByLicense.compute(licenseKey, (key, seats) -> {
+            if (seats == null) {
+                seats = ConcurrentHashMap.newKeySet();
+            }
+            seats.removeIf(lease -> lease.expiresAt <= now);
+
+            for (Lease lease : seats) {
+                if (lease.holder.equals(holder)) {
+                    lease.leased |= leased;
+                    lease.expiresAt = now + (lease.leased ? ttlMillis : validationTtlMillis);
+                    granted[0] = lease;
+                    return seats;
+                }
+            }
+            if (maxUsers > 0 && seats.size() >= maxUsers) {
+                return seats.isEmpty() ? null : seats;
+            }
+
+            Lease lease = new Lease(newLeaseId(), licenseKey, holder,
+                    now + (leased ? ttlMillis : validationTtlMillis), leased);
+            seats.add(lease);
+            leasesById.put(lease.id, lease);
+            schedule(lease);
+            granted[0] = lease;
+            return seats;
+        });
+
+        if (granted[0] == null) {
+            denied.increment();
+        } else {
+            dirty = true;
+        }
+        return granted[0];
+    }
+
+    /**
+     * Extends a lease by one TTL.
+     * @return the renewed lease, or null if it has expired or was released
+     */
+    public Lease renew(String leaseId) {
+        Lease lease = leasesById.get(leaseId);
+        long now = System.currentTimeMillis();
+        if (lease == null || lease.expiresAt <= now) {
+            return null;
+        }
+        lease.expiresAt = now + ttlMillis;
+        return lease;
+    }
+
+    /**
+     * Frees a seat immediately.
+     */
+    public boolean release(String leaseId) {
+        Lease lease = leasesById.remove(leaseId);
+        if (lease == null) {
+            return false;
+        }
+        removeFromLicense(lease);
+        dirty = true;
+        return true;
+    }
+
+    /**
+     * Frees the seat a holder has on a license, whether leased or taken by a validation.
+     */
+    public boolean release(String licenseKey, String holder) {
+        Set<Lease> seats = leasesByLicense.get(licenseKey);
+        if (seats != null) {
+            for (Lease lease : seats) {
+                if (lease.holder.equals(holder)) {
+                    return release(lease.id);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Frees every seat on a license, e.g. when it is revoked.
+     */
+    public void releaseAll(String licenseKey) {
+        Set<Lease> seats = leasesByLicense.remove(licenseKey);
+        if (seats != null) {
+            for (Lease lease : seats) {
+                leasesById.remove(lease.id, lease);
+            }
+            dirty = true;
+        }
+    }
+
+    /**
+     * Gets the unexpired leases on a license.
+     */
+    public List<Lease> getLeases(String licenseKey) {
+        long now = System.currentTimeMillis();
+        List<Lease> result = new ArrayList<>();
+        Set<Lease> seats = leasesByLicense.get(licenseKey);
+        if (seats != null) {
+            for (Lease lease : seats) {
+                if (lease.expiresAt > now) {
+                    result.add(lease);
+                }
+            }
+        }
+        return result;
+    }
+
+    private String newLeaseId() {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        StringBuilder sb = new StringBuilder(32);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    // Timing wheel
+
+    private void schedule(Lease lease) {
+        long tick = lease.expiresAt / TICK_MILLIS + 1;
+        wheel[(int) (tick % WHEEL_SIZE)].add(lease);
+    }
+
+    /**
+     * Processes every slot up to the current second. Leases that were renewed
+     * (or expire more than one rotation ahead) are re-slotted, the rest expire.
+     */
+    private void advance() {
+        long nowTick = System.currentTimeMillis() / TICK_MILLIS;
+        while (currentTick < nowTick) {
+            currentTick++;
+            Queue<Lease> slot = wheel[(int) (currentTick % WHEEL_SIZE)];
+            for (int pending = slot.size(); pending > 0; pending--) {
+                Lease lease = slot.poll();
+                if (lease == null) {
+                    break;
+                }
+                if (leasesById.get(lease.id) != lease) {
+                    continue;
+                }
+                if (lease.expiresAt / TICK_MILLIS + 1 > currentTick) {
+                    schedule(lease);
+                } else {
+                    leasesById.remove(lease.id, lease);
+                    removeFromLicense(lease);
+                    expired.increment();
+                    dirty = true;
+                }
+            }
+        }
+    }
+
+    private void removeFromLicense(Lease lease) {
+        leasesByLicense.computeIfPresent(lease.licenseKey, (key, seats) -> {
+            seats.remove(lease);
+            return seats.isEmpty() ? null : seats;
+        });
+    }
+
+    // Snapshots
+
+    /**
+     * Writes the lease table to the snapshot file if it changed since the last snapshot.
+     */
+    public void snapshot() throws IOException {
+        if (snapshotPath == null || !dirty) {
+            return;
+        }
+        dirty = false;
+
+        List<LeaseRecord> records = new ArrayList<>(leasesById.size());
+        for (Lease lease : leasesById.values()) {
+            records.add(new LeaseRecord(lease));
+        }
+
+        Path temp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             Writer writer = new BufferedWriter(Channels.newWriter(out, StandardCharsets.UTF_8))) {
+            GSON.toJson(records, writer);
+            writer.flush();
+            out.force(true);
+        }
+        Files.move(temp, snapshotPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException e) {
+            dirty = true;
+            System.err.println("Failed to snapshot seat leases: " + e.getMessage());
+        }
+    }
+
+    private void restore() {
+        if (!Files.exists(snapshotPath)) {
+            return;
+        }
+        try (Reader reader = Files.newBufferedReader(snapshotPath, StandardCharsets.UTF_8)) {
+            List<LeaseRecord> records = GSON.fromJson(reader, new TypeToken<List<LeaseRecord>>() {}.getType());
+            long now = System.currentTimeMillis();
+            for (LeaseRecord record : records != null ? records : Collections.<LeaseRecord>emptyList()) {
+                if (record.expiresAt <= now) {
+                    continue;
+                }
+                Lease lease = new Lease(record.id, record.licenseKey, record.holder, record.expiresAt,
+                        record.leased);
+                leasesById.put(lease.id, lease);
+                leasesByLicense.computeIfAbsent(lease.licenseKey, k -> ConcurrentHashMap.newKeySet()).add(lease);
+                schedule(lease);
+            }
+        } catch (IOException | JsonParseException e) {
+            System.err.println("Ignoring unreadable seat lease snapshot " + snapshotPath + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        snapshotQuietly();
+    }
+
+    /**
+     * A seat held by one client instance.
+     */
+    public static final class Lease {
+        private final String id;
+        private final String licenseKey;
+        private final String holder;
+        private volatile long expiresAt;
+        // Whether the holder keeps the seat by heartbeats rather than by validating
+        private volatile boolean leased;
+
+        private Lease(String id, String licenseKey, String holder, long expiresAt, boolean leased) {
+            this.id = id;
+            this.licenseKey = licenseKey;
+            this.holder = holder;
+            this.expiresAt = expiresAt;
+            this.leased = leased;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getLicenseKey() {
+            return licenseKey;
+        }
+
+        public String getHolder() {
+            return holder;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+    }
+
+    private static final class LeaseRecord {
+        private String id;
+        private String licenseKey;
+        private String holder;
+        private long expiresAt;
+        private boolean leased;
+
+        private LeaseRecord() {
+        }
+
+        private LeaseRecord(Lease lease) {
+            this.id = lease.id;
+            this.licenseKey = lease.licenseKey;
+            this.holder = lease.holder;
+            this.expiresAt = lease.expiresAt;
+            this.leased = lease.leased;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.macmoment.licensing.server;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Streaming license-sharing detection on the validation path.
+ * Each tracked key counts the HWIDs and IPs it was validated from, exactly up
+ * to the allowed number and with a HyperLogLog beyond it, and a count-min sketch
+ * with a short heavy-hitters list ranks the busiest keys. A key seen from more
+ * HWIDs or IPs than allowed is flagged as it happens, without scanning
+ * validation logs. Memory is bounded: at most {@code maxKeys} keys are tracked
+ * (up to about 300 bytes each), evicting the least recently seen.
+ */
+public class SharingDetector implements AutoCloseable {
+
+    private static final int HLL_PRECISION = 6;
+    // Largest limit that is counted exactly; higher limits are compared against the estimate
+    private static final int MAX_EXACT = 64;
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 4096;
+    private static final int HEAVY_HITTERS = 20;
+    private static final long SWEEP_MILLIS = 10_000;
+
+    private final int maxKeys;
+    private final long maxHwids;
+    private final long maxIps;
+    private final Map<String, KeyStats> keys = new ConcurrentHashMap<>();
+    private final CountMinSketch sketch = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+    private final Map<String, Long> heavyHitters = new ConcurrentHashMap<>();
+    // Smallest count on a full heavy-hitters list; keys at or below it are never considered
+    private volatile long heavyHitterFloor;
+    private final LongAdder flags = new LongAdder();
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param maxHwids distinct HWIDs a key may be seen from before it is flagged
+     * @param maxIps distinct IPs a key may be seen from before it is flagged
+     * @param decayMillis how often busy-key counts are halved, so the ranking follows recent traffic
+     */
+    public SharingDetector(int maxKeys, long maxHwids, long maxIps, long decayMillis) {
+        this.maxKeys = maxKeys;
+        this.maxHwids = maxHwids;
+        this.maxIps = maxIps;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sharing-detector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::evict, SWEEP_MILLIS, SWEEP_MILLIS, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::decay, decayMillis, decayMillis, TimeUnit.MILLISECONDS);
+
+        Metrics.registerGauge("licensing_sharing_tracked_keys",
+                "License keys tracked by sharing detection", keys::size);
+        Metrics.registerCounter("licensing_sharing_flags_total",
+                "License keys flagged as shared", flags::sum);
+    }
+
+    /**
+     * Records a validation attempt of an existing key. Called on the validation path.
+     */
+    public void record(String licenseKey, String hwid, String ip) {
+        long count = sketch.add(HyperLogLog.hash(licenseKey));
+        if (count > heavyHitterFloor) {
+            offerHeavyHitter(licenseKey, count);
+        }
+
+        KeyStats stats = keys.get(licenseKey);
+        if (stats == null) {
+            // Past the limit new keys wait for the next sweep to make room
+            if (keys.size() >= maxKeys) {
+                return;
+            }
+            stats = keys.computeIfAbsent(licenseKey, key -> new KeyStats(
+                    (int) Math.min(maxHwids, MAX_EXACT), (int) Math.min(maxIps, MAX_EXACT)));
+        }
+        stats.lastSeen = System.currentTimeMillis();
+        boolean changed = hwid != null && stats.hwids.add(HyperLogLog.hash(hwid));
+        changed |= ip != null && stats.ips.add(HyperLogLog.hash(ip));
+        if (changed && !stats.flagged && isShared(stats)) {
+            stats.flagged = true;
+            flags.increment();
+            System.out.println("⚠ License " + licenseKey + " seen from ~" + stats.hwids.estimate()
+                    + " HWIDs and ~" + stats.ips.estimate() + " IPs");
+        }
+    }
+
+    /**
+     * Gets the sharing estimates of one key, or null if it is not tracked.
+     */
+    public Map<String, Object> getKey(String licenseKey) {
+        KeyStats stats = keys.get(licenseKey);
+        return stats != null ? toMap(licenseKey, stats) : null;
+    }
+
+    /**
+     * Gets the flagged keys (most HWIDs first, at most {@code limit}) and the busiest keys.
+     */
+    public Map<String, Object> getReport(int limit) {
+        List<Map<String, Object>> flagged = new ArrayList<>();
+        for (Map.Entry<String, KeyStats> entry : keys.entrySet()) {
+            if (entry.getValue().flagged) {
+                flagged.add(toMap(entry.getKey(), entry.getValue()));
+            }
+        }
+        flagged.sort(Comparator.comparing((Map<String, Object> key) -> (Long) key.get("hwids"))
+                .thenComparing(key -> (Long) key.get("ips")).reversed());
+
+        List<Map<String, Object>> busiest = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : heavyHitters.entrySet()) {
+            Map<String, Object> key = new HashMap<>();
+            key.put("key", entry.getKey());
+            key.put("validations", entry.getValue());
+            busiest.add(key);
+        }
+        busiest.sort(Comparator.comparing((Map<String, Object> key) -> (Long) key.get("validations")).reversed());
+
+        Map<String, Object> report = new HashMap<>();
+        report.put("trackedKeys", keys.size());
+        report.put("maxKeys", maxKeys);
+        report.put("maxHwids", maxHwids);
+        report.put("maxIps", maxIps);
+        report.put("flaggedCount", flagged.size());
+        report.put("flagged", flagged.subList(0, Math.min(limit, flagged.size())));
+        report.put("heavyHitters", busiest);
+        return report;
+    }
+
+    private boolean isShared(KeyStats stats) {
+        return stats.hwids.estimate() > maxHwids || stats.ips.estimate() > maxIps;
+    }
+
+    private Map<String, Object> toMap(String licenseKey, KeyStats stats) {
+        Map<String, Object> key = new HashMap<>();
+        key.put("key", licenseKey);
+        key.put("hwids", stats.hwids.estimate());
+        key.put("ips", stats.ips.estimate());
+        key.put("validations", sketch.estimate(HyperLogLog.hash(licenseKey)));
+        key.put("lastSeen", stats.lastSeen);
+        key.put("flagged", stats.flagged);
+        return key;
+    }
+
+    private void offerHeavyHitter(String licenseKey, long count) {
+        if (heavyHitters.replace(licenseKey, count) != null) {
+            return;
+        }
+        synchronized (heavyHitters) {
+            if (heavyHitters.size() >= HEAVY_HITTERS) {
+                Map.Entry<String, Long> smallest = smallestHeavyHitter();
+                if (count <= smallest.getValue()) {
+                    heavyHitterFloor = smallest.getValue();
+                    return;
+                }
+                heavyHitters.remove(smallest.getKey());
+            }
+            heavyHitters.put(licenseKey, count);
+            if (heavyHitters.size() >= HEAVY_HITTERS) {
+                heavyHitterFloor = smallestHeavyHitter().getValue();
+            }
+        }
+    }
+
+    private Map.Entry<String, Long> smallestHeavyHitter() {
+        return heavyHitters.entrySet().stream().min(Map.Entry.comparingByValue()).orElseThrow();
+    }
+
+    private void decay() {
+        sketch.decay();
+        synchronized (heavyHitters) {
+            heavyHitters.replaceAll((key, count) -> count >>> 1);
+            heavyHitterFloor >>>= 1;
+        }
+    }
+
+    // Drops the least recently seen keys once the table is nearly full, making room for new ones
+    private void evict() {
+        if (keys.size() < maxKeys * 9L / 10) {
+            return;
+        }
+        // Sort a snapshot; lastSeen keeps changing under concurrent validations
+        List<Map.Entry<String, Long>> entries = new ArrayList<>();
+        for (Map.Entry<String, KeyStats> entry : keys.entrySet()) {
+            entries.add(Map.entry(entry.getKey(), entry.getValue().lastSeen));
+        }
+        entries.sort(Map.Entry.comparingByValue());
+        int excess = entries.size() - maxKeys * 3 / 4;
+        for (int i = 0; i < excess; i++) {
+            keys.remove(entries.get(i).getKey());
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private static final class KeyStats {
+        final DistinctCounter hwids;
+        final DistinctCounter ips;
+        volatile long lastSeen;
+        volatile boolean flagged;
+
+        KeyStats(int exactHwids, int exactIps) {
+            this.hwids = new DistinctCounter(exactHwids, HLL_PRECISION);
+            this.ips = new DistinctCounter(exactIps, HLL_PRECISION);
+        }
+    }
+}
@@ -0,0 +1,962 @@
+package com.macmoment.licensing.server;
+
+import java.sql.*;
+import java.util.*;
+import java.util.function.IntConsumer;
+
+/**
+ * SQLite-backed storage engine. All data lives in a single database file.
+ */
+public class SqliteDatabaseManager implements DatabaseManager {
+    
+    // Rows per multi-row INSERT; 5 parameters each stays well under SQLite's variable limit
+    private static final int LOG_BATCH_ROWS = 500;
+    
+    // Rows per executeBatch() in bulk license creation, and keys per IN list in bulk updates
+    private static final int LICENSE_BATCH_ROWS = 1000;
+    
+    private final String url;
+    private Connection connection;
+    
+    public SqliteDatabaseManager(String dbPath) throws SQLException {
+        url = "jdbc:sqlite:" + dbPath;
+        connection = openConnection();
+        migrate();
+    }
+    
+    /**
+     * Opens a connection in WAL mode, so readers in other processes (cluster
+     * followers sharing the file) never block the writer, that waits on locks
+     * instead of failing immediately.
+     */
+    private Connection openConnection() throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = 5000");
+            stmt.execute("PRAGMA journal_mode = WAL");
+        }
+        return conn;
+    }
+    
+    /**
+     * Brings the schema up to date. The schema version is kept in SQLite's
+     * {@code user_version}, so a database that is already current opens
+     * without running any DDL. Each step commits in one transaction with its
+     * version (SQLite's DDL is transactional), so a crash leaves either the
+     * whole step or none of it. Every step is also idempotent, as databases
+     * from before versioning start at 0 and simply re-check each one.
+     */
+    private void migrate() throws SQLException {
+        List<Migration> migrations = Arrays.asList(
+                this::createTables,
+                this::migrateKeyIds,
+                this::migrateFeatureMasks,
+                this::createIndexes,
+                this::createSettings);
+        
+        int version;
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            version = rs.next() ? rs.getInt(1) : 0;
+        }
+        if (version > migrations.size()) {
+            throw new SQLException("Database schema version " + version
+                    + " is newer than this server supports (" + migrations.size() + ")");
+        }
+        
+        for (int i = version; i < migrations.size(); i++) {
+            connection.setAutoCommit(false);
+            try {
+                migrations.get(i).apply();
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("PRAGMA user_version = " + (i + 1));
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+        if (version < migrations.size()) {
+            System.out.println("✓ Database schema migrated to version " + migrations.size());
+        }
+    }
+    
+    @FunctionalInterface
+    private interface Migration {
+        void apply() throws SQLException;
+    }
+    
+    /**
+     * Creates database tables if they don't exist.
+     */
+    private void createTables() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            // Products table
+            stmt.execute(
+                "CREATE TABLE IF NOT EXISTS products (" +
+                "id TEXT PRIMARY KEY," +
+                "name TEXT NOT NULL," +
+                "description TEXT," +
+                "created_at INTEGER NOT NULL" +
+                ")"
+            );
+            
+            // Tiers table
+            stmt.execute(
+                "CREATE TABLE IF NOT EXISTS tiers (" +
+                "id TEXT PRIMARY KEY," +
+                "product_id TEXT NOT NULL," +
+                "name TEXT NOT NULL," +
+                "features TEXT," +
+                "max_users INTEGER," +
+                "FOREIGN KEY (product_id) REFERENCES products(id)" +
+                ")"
+            );
+            
+            // Feature registry: stable bit index per feature name and product
+            stmt.execute(
+                "CREATE TABLE IF NOT EXISTS product_features (" +
+                "product_id TEXT NOT NULL," +
+                "name TEXT NOT NULL," +
+                "feature_id INTEGER NOT NULL," +
+                "PRIMARY KEY (product_id, name)" +
+                ")"
+            );
+            
+            // Licenses table
+            stmt.execute(
+                "CREATE TABLE IF NOT EXISTS licenses (" +
+                "key TEXT PRIMARY KEY," +
+                "product_id TEXT NOT NULL," +
+                "tier_id TEXT," +
+                "hwid TEXT," +
+                "ip TEXT," +
+                "expiry_time INTEGER," +
+                "created_at INTEGER NOT NULL," +
+                "last_validated INTEGER," +
+                "active BOOLEAN DEFAULT 1," +
+                "FOREIGN KEY (product_id) REFERENCES products(id)," +
+                "FOREIGN KEY (tier_id) REFERENCES tiers(id)" +
+                ")"
+            );
+            
+            // Validation logs table
+            stmt.execute(
+                "CREATE TABLE IF NOT EXISTS validation_logs (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "license_key TEXT NOT NULL," +
+                "hwid TEXT," +
+                "ip TEXT," +
+                "timestamp INTEGER NOT NULL," +
+                "success BOOLEAN NOT NULL," +
+                "FOREIGN KEY (license_key) REFERENCES licenses(key)" +
+                ")"
+            );
+        }
+    }
+    
+    /**
+     * Creates the table of server-wide settings, such as the license key
+     * secret, which every node sharing the file and every backup of it carry.
+     */
+    private void createSettings() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(
+                "CREATE TABLE IF NOT EXISTS settings (" +
+                "name TEXT PRIMARY KEY," +
+                "value TEXT NOT NULL" +
+                ")"
+            );
+        }
+    }
+    
+    /**
+     * Indexes the admin and dashboard queries that otherwise scan a whole
+     * table: licenses by product (catalog counts, bulk filters), and
+     * validation logs by time (log view, daily stats, startup warm-up) and by
+     * key (per-license history). On a large table each index takes a moment,
+     * once; it is built before the server opens its port.
+     */
+    private void createIndexes() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_licenses_product_id ON licenses(product_id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_validation_logs_timestamp ON validation_logs(timestamp)");
+            stmt.execute(
+                "CREATE INDEX IF NOT EXISTS idx_validation_logs_license_key ON validation_logs(license_key)");
+        }
+    }
+    
+    /**
+     * Adds the integer key_id column that license lookups use and fills it in
+     * for licenses created before it existed. Keys in neither known format keep
+     * a NULL key_id and are looked up by text.
+     */
+    private void migrateKeyIds() throws SQLException {
+        boolean hasColumn = false;
+        List<String> pending = new ArrayList<>();
+        try (Statement stmt = connection.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(licenses)")) {
+                while (rs.next()) {
+                    hasColumn |= "key_id".equals(rs.getString("name"));
+                }
+            }
+            if (!hasColumn) {
+                stmt.execute("ALTER TABLE licenses ADD COLUMN key_id INTEGER");
+            }
+            stmt.execute("CREATE UNIQUE INDEX IF NOT EXISTS idx_licenses_key_id ON licenses(key_id)");
+            
+            try (ResultSet rs = stmt.executeQuery("SELECT key FROM licenses WHERE key_id IS NULL")) {
+                while (rs.next()) {
+                    String key = rs.getString("key");
+                    if (LicenseKeyFormat.isDecodable(key)) {
+                        pending.add(key);
+                    }
+                }
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        
+        try (PreparedStatement stmt = connection.prepareStatement("UPDATE licenses SET key_id = ? WHERE key = ?")) {
+            for (String key : pending) {
+                stmt.setLong(1, LicenseKeyFormat.id(key));
+                stmt.setString(2, key);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+        System.out.println("✓ Migrated " + pending.size() + " license keys to integer IDs");
+    }
+    
+    /**
+     * Adds the feature_mask column to tiers and registers the features of tiers
+     * created before it existed, in creation order. Tiers with features but
+     * no mask are re-checked even when the column exists.
+     */
+    private void migrateFeatureMasks() throws SQLException {
+        boolean hasColumn = false;
+        Map<String, String> pending = new LinkedHashMap<>();
+        Map<String, String> products = new HashMap<>();
+        try (Statement stmt = connection.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(tiers)")) {
+                while (rs.next()) {
+                    hasColumn |= "feature_mask".equals(rs.getString("name"));
+                }
+            }
+            if (!hasColumn) {
+                stmt.execute("ALTER TABLE tiers ADD COLUMN feature_mask INTEGER NOT NULL DEFAULT 0");
+            }
+            
+            try (ResultSet rs = stmt.executeQuery("SELECT id, product_id, features FROM tiers " +
+                    "WHERE features <> '' AND feature_mask = 0 ORDER BY rowid")) {
+                while (rs.next()) {
+                    pending.put(rs.getString("id"), rs.getString("features"));
+                    products.put(rs.getString("id"), rs.getString("product_id"));
+                }
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "UPDATE tiers SET features = ?, feature_mask = ? WHERE id = ?")) {
+            for (Map.Entry<String, String> tier : pending.entrySet()) {
+                List<String> names = FeatureIds.parse(tier.getValue());
+                Map<String, Integer> registry = registerFeatures(connection, products.get(tier.getKey()), names);
+                stmt.setString(1, FeatureIds.join(registry, names));
+                stmt.setLong(2, FeatureIds.mask(registry, names));
+                stmt.setString(3, tier.getKey());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+        System.out.println("✓ Registered features of " + pending.size() + " tiers");
+    }
+    
+    /**
+     * Gives any new names the next free IDs of the product and returns its registry.
+     * Each insert picks its ID in the same statement, so concurrent writers
+     * (cluster nodes sharing the file) cannot assign one twice.
+     */
+    private static Map<String, Integer> registerFeatures(Connection conn, String productId, List<String> names)
+            throws SQLException {
+        String sql = "INSERT OR IGNORE INTO product_features (product_id, name, feature_id) " +
+                     "SELECT ?, ?, COALESCE(MAX(feature_id) + 1, 0) FROM product_features WHERE product_id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (String name : names) {
+                stmt.setString(1, productId);
+                stmt.setString(2, name);
+                stmt.setString(3, productId);
+                stmt.executeUpdate();
+            }
+        }
+        Map<String, Integer> registry = readFeatureIds(conn, productId);
+        for (String name : names) {
+            FeatureIds.checkCapacity(registry.get(name));
+        }
+        return registry;
+    }
+    
+    private static Map<String, Integer> readFeatureIds(Connection conn, String productId) throws SQLException {
+        String sql = "SELECT name, feature_id FROM product_features WHERE product_id = ? ORDER BY feature_id";
+        Map<String, Integer> registry = new LinkedHashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, productId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    registry.put(rs.getString("name"), rs.getInt("feature_id"));
+                }
+            }
+        }
+        return registry;
+    }
+    
+    private static void setKeyId(PreparedStatement stmt, int index, String key) throws SQLException {
+        if (LicenseKeyFormat.isDecodable(key)) {
+            stmt.setLong(index, LicenseKeyFormat.id(key));
+        } else {
+            stmt.setNull(index, Types.INTEGER);
+        }
+    }
+    
+    // Product operations
+    
+    @Override
+    public void createProduct(String id, String name, String description) throws SQLException {
+        String sql = "INSERT INTO products (id, name, description, created_at) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, id);
+            stmt.setString(2, name);
+            stmt.setString(3, description);
+            stmt.setLong(4, System.currentTimeMillis());
+            stmt.executeUpdate();
+        }
+    }
+    
+    @Override
+    public List<Map<String, Object>> getAllProducts() throws SQLException {
+        String sql = "SELECT * FROM products ORDER BY created_at DESC";
+        List<Map<String, Object>> products = new ArrayList<>();
+        
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                Map<String, Object> product = new HashMap<>();
+                product.put("id", rs.getString("id"));
+                product.put("name", rs.getString("name"));
+                product.put("description", rs.getString("description"));
+                product.put("created_at", rs.getLong("created_at"));
+                products.add(product);
+            }
+        }
+        
+        return products;
+    }
+    
+    // Tier operations
+    
+    @Override
+    public void createTier(String id, String productId, String name, String features, int maxUsers) 
+            throws SQLException {
+        String sql = "INSERT INTO tiers (id, product_id, name, features, max_users, feature_mask) " +
+                     "VALUES (?, ?, ?, ?, ?, ?)";
+        List<String> names = FeatureIds.parse(features);
+        
+        // Registration and insert commit together; a tier over the feature limit registers nothing
+        try (Connection conn = openConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                Map<String, Integer> registry = registerFeatures(conn, productId, names);
+                stmt.setString(1, id);
+                stmt.setString(2, productId);
+                stmt.setString(3, name);
+                stmt.setString(4, FeatureIds.join(registry, names));
+                stmt.setInt(5, maxUsers);
+                stmt.setLong(6, FeatureIds.mask(registry, names));
+                stmt.executeUpdate();
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+    
+    @Override
+    public Map<String, Integer> getFeatureIds(String productId) throws SQLException {
+        return readFeatureIds(connection, productId);
+    }
+    
+    @Override
+    public List<Map<String, Object>> getTiersByProduct(String productId) throws SQLException {
+        String sql = "SELECT * FROM tiers WHERE product_id = ?";
+        List<Map<String, Object>> tiers = new ArrayList<>();
+        
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, productId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Map<String, Object> tier = new HashMap<>();
+                    tier.put("id", rs.getString("id"));
+                    tier.put("product_id", rs.getString("product_id"));
+                    tier.put("name", rs.getString("name"));
+                    tier.put("features", rs.getString("features"));
+                    tier.put("feature_mask", rs.getLong("feature_mask"));
+                    tier.put("max_users", rs.getInt("max_users"));
+                    tiers.add(tier);
+                }
+            }
+        }
+        
+        return tiers;
+    }
+    
+    @Override
+    public List<Map<String, Object>> getCatalog() throws SQLException {
+        // One statement: products, their tiers, and license counts aggregated per product and per tier
+        String sql = "SELECT p.id, p.name, p.description, p.created_at, " +
+                     "pc.total AS product_total, pc.active AS product_active, " +
+                     "t.id AS tier_id, t.name AS tier_name, t.features, t.feature_mask, t.max_users, " +
+                     "tc.total AS tier_total, tc.active AS tier_active " +
+                     "FROM products p " +
+                     "LEFT JOIN (SELECT product_id, COUNT(*) AS total, SUM(active) AS active " +
+                     "FROM licenses GROUP BY product_id) pc ON pc.product_id = p.id " +
+                     "LEFT JOIN tiers t ON t.product_id = p.id " +
+                     "LEFT JOIN (SELECT tier_id, COUNT(*) AS total, SUM(active) AS active " +
+                     "FROM licenses WHERE tier_id IS NOT NULL GROUP BY tier_id) tc ON tc.tier_id = t.id " +
+                     "ORDER BY p.created_at DESC, p.id, t.rowid";
+        List<Map<String, Object>> products = new ArrayList<>();
+        
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            Map<String, Object> product = null;
+            List<Map<String, Object>> tiers = null;
+            while (rs.next()) {
+                String id = rs.getString("id");
+                if (product == null || !id.equals(product.get("id"))) {
+                    product = new HashMap<>();
+                    tiers = new ArrayList<>();
+                    product.put("id", id);
+                    product.put("name", rs.getString("name"));
+                    product.put("description", rs.getString("description"));
+                    product.put("created_at", rs.getLong("created_at"));
+                    product.put("license_count", rs.getLong("product_total"));
+                    product.put("active_count", rs.getLong("product_active"));
+                    product.put("tiers", tiers);
+                    products.add(product);
+                }
+                String tierId = rs.getString("tier_id");
+                if (tierId != null) {
+                    Map<String, Object> tier = new HashMap<>();
+                    tier.put("id", tierId);
+                    tier.put("product_id", id);
+                    tier.put("name", rs.getString("tier_name"));
+                    tier.put("features", rs.getString("features"));
+                    tier.put("feature_mask", rs.getLong("feature_mask"));
+                    tier.put("max_users", rs.getInt("max_users"));
+                    tier.put("license_count", rs.getLong("tier_total"));
+                    tier.put("active_count", rs.getLong("tier_active"));
+                    tiers.add(tier);
+                }
+            }
+        }
+        
+        return products;
+    }
+    
+    // License operations
+    
+    @Override
+    public void createLicense(String key, String productId, String tierId, Long expiryTime) 
+            throws SQLException {
+        String sql = "INSERT INTO licenses (key, product_id, tier_id, expiry_time, created_at, active, key_id) " +
+                     "VALUES (?, ?, ?, ?, ?, 1, ?)";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, key);
+            stmt.setString(2, productId);
+            stmt.setString(3, tierId);
+            if (expiryTime != null) {
+                stmt.setLong(4, expiryTime);
+            } else {
+                stmt.setNull(4, Types.INTEGER);
+            }
+            stmt.setLong(5, System.currentTimeMillis());
+            setKeyId(stmt, 6, key);
+            stmt.executeUpdate();
+        }
+    }
+    
+    @Override
+    public List<String> createLicenses(List<String> keys, String productId, String tierId, Long expiryTime)
+            throws SQLException {
+        String sql = "INSERT OR IGNORE INTO licenses " +
+                     "(key, product_id, tier_id, expiry_time, created_at, active, key_id) " +
+                     "VALUES (?, ?, ?, ?, ?, 1, ?)";
+        List<String> skipped = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        
+        // A dedicated connection keeps the transactions isolated from statements
+        // other request threads issue on the shared one. Each chunk commits on
+        // its own, so validations can take the write lock between chunks instead
+        // of waiting out busy_timeout behind the whole bulk.
+        try (Connection bulk = openConnection()) {
+            bulk.setAutoCommit(false);
+            try (PreparedStatement stmt = bulk.prepareStatement(sql)) {
+                for (int from = 0; from < keys.size(); from += LICENSE_BATCH_ROWS) {
+                    List<String> chunk = keys.subList(from, Math.min(keys.size(), from + LICENSE_BATCH_ROWS));
+                    for (String key : chunk) {
+                        stmt.setString(1, key);
+                        stmt.setString(2, productId);
+                        stmt.setString(3, tierId);
+                        if (expiryTime != null) {
+                            stmt.setLong(4, expiryTime);
+                        } else {
+                            stmt.setNull(4, Types.INTEGER);
+                        }
+                        stmt.setLong(5, now);
+                        setKeyId(stmt, 6, key);
+                        stmt.addBatch();
+                    }
+                    int[] counts = stmt.executeBatch();
+                    for (int i = 0; i < counts.length; i++) {
+                        if (counts[i] == 0) {
+                            skipped.add(chunk.get(i));
+                        }
+                    }
+                    bulk.commit();
+                }
+            } catch (SQLException e) {
+                bulk.rollback();
+                throw e;
+            }
+        }
+        
+        return skipped;
+    }
+    
+    @Override
+    public Map<String, Object> getLicense(String key) throws SQLException {
+        // Known key formats are looked up by integer ID; the text is compared on the one row found
+        boolean byId = LicenseKeyFormat.isDecodable(key);
+        String sql = "SELECT l.*, t.name as tier_name, t.features, t.feature_mask, t.max_users " +
+                     "FROM licenses l " +
+                     "LEFT JOIN tiers t ON l.tier_id = t.id " +
+                     (byId ? "WHERE l.key_id = ?" : "WHERE l.key = ?");
+        
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            if (byId) {
+                stmt.setLong(1, LicenseKeyFormat.id(key));
+            } else {
+                stmt.setString(1, key);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next() && key.equals(rs.getString("key"))) {
+                    return readLicense(rs);
+                }
+            }
+        }
+        
+        return null;
+    }
+    
+    @Override
+    public List<Map<String, Object>> getLicenses(List<String> keys) throws SQLException {
+        List<Map<String, Object>> licenses = new ArrayList<>(keys.size());
+        
+        // A dedicated connection, so that callers loading in parallel each read on their own
+        try (Connection bulk = openConnection()) {
+            for (int from = 0; from < keys.size(); from += LICENSE_BATCH_ROWS) {
+                List<String> chunk = keys.subList(from, Math.min(keys.size(), from + LICENSE_BATCH_ROWS));
+                StringBuilder sql = new StringBuilder(
+                        "SELECT l.*, t.name as tier_name, t.features, t.feature_mask, t.max_users " +
+                        "FROM licenses l " +
+                        "LEFT JOIN tiers t ON l.tier_id = t.id " +
+                        "WHERE l.key IN (");
+                for (int i = 0; i < chunk.size(); i++) {
+                    sql.append(i == 0 ? "?" : ", ?");
+                }
+                sql.append(')');
+                try (PreparedStatement stmt = bulk.prepareStatement(sql.toString())) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        stmt.setString(i + 1, chunk.get(i));
+                    }
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            licenses.add(readLicense(rs));
+                        }
+                    }
+                }
+            }
+        }
+        
+        return licenses;
+    }
+    
+    /**
+     * Maps a row of licenses joined with tiers to the shape {@link #getLicense(String)} returns.
+     */
+    private static Map<String, Object> readLicense(ResultSet rs) throws SQLException {
+        Map<String, Object> license = new HashMap<>();
+        license.put("key", rs.getString("key"));
+        license.put("product_id", rs.getString("product_id"));
+        license.put("tier_id", rs.getString("tier_id"));
+        license.put("tier_name", rs.getString("tier_name"));
+        license.put("features", rs.getString("features"));
+        license.put("feature_mask", rs.getLong("feature_mask"));
+        license.put("max_users", rs.getInt("max_users"));
+        license.put("hwid", rs.getString("hwid"));
+        license.put("ip", rs.getString("ip"));
+        license.put("expiry_time", rs.getLong("expiry_time"));
+        license.put("active", rs.getBoolean("active"));
+        license.put("created_at", rs.getLong("created_at"));
+        return license;
+    }
+    
+    @Override
+    public boolean updateLicenseBinding(String key, String hwid, String ip) throws SQLException {
+        String sql = "UPDATE licenses SET hwid = ?, ip = ?, last_validated = ? " +
+                     "WHERE key = ? AND (hwid IS NULL OR hwid = '' OR hwid = ?)";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, hwid);
+            stmt.setString(2, ip);
+            stmt.setLong(3, System.currentTimeMillis());
+            stmt.setString(4, key);
+            stmt.setString(5, hwid);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+    
+    @Override
+    public List<Map<String, Object>> getAllLicenses() throws SQLException {
+        String sql = "SELECT l.*, p.name as product_name, t.name as tier_name " +
+                     "FROM licenses l " +
+                     "JOIN products p ON l.product_id = p.id " +
+                     "LEFT JOIN tiers t ON l.tier_id = t.id " +
+                     "ORDER BY l.created_at DESC";
+        List<Map<String, Object>> licenses = new ArrayList<>();
+        
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                Map<String, Object> license = new HashMap<>();
+                license.put("key", rs.getString("key"));
+                license.put("product_id", rs.getString("product_id"));
+                license.put("product_name", rs.getString("product_name"));
+                license.put("tier_id", rs.getString("tier_id"));
+                license.put("tier_name", rs.getString("tier_name"));
+                license.put("hwid", rs.getString("hwid"));
+                license.put("ip", rs.getString("ip"));
+                license.put("expiry_time", rs.getLong("expiry_time"));
+                license.put("active", rs.getBoolean("active"));
+                license.put("created_at", rs.getLong("created_at"));
+                licenses.add(license);
+            }
+        }
+        
+        return licenses;
+    }
+    
+    @Override
+    public void logValidation(String key, String hwid, String ip, boolean success) 
+            throws SQLException {
+        String sql = "INSERT INTO validation_logs (license_key, hwid, ip, timestamp, success) " +
+                     "VALUES (?, ?, ?, ?, ?)";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, key);
+            stmt.setString(2, hwid);
+            stmt.setString(3, ip);
+            stmt.setLong(4, System.currentTimeMillis());
+            stmt.setBoolean(5, success);
+            stmt.executeUpdate();
+        }
+    }
+    
+    @Override
+    public void logValidations(List<ValidationLog> entries) throws SQLException {
+        // Multi-row inserts are atomic on their own, so the shared connection never
+        // has to leave auto-commit mode
+        for (int from = 0; from < entries.size(); from += LOG_BATCH_ROWS) {
+            List<ValidationLog> chunk = entries.subList(from, Math.min(entries.size(), from + LOG_BATCH_ROWS));
+            StringBuilder sql = new StringBuilder(
+                    "INSERT INTO validation_logs (license_key, hwid, ip, timestamp, success) VALUES ");
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "(?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?)");
+            }
+            
+            try (PreparedStatement stmt = connection.prepareStatement(sql.toString())) {
+                int param = 1;
+                for (ValidationLog entry : chunk) {
+                    stmt.setString(param++, entry.getLicenseKey());
+                    stmt.setString(param++, entry.getHwid());
+                    stmt.setString(param++, entry.getIp());
+                    stmt.setLong(param++, entry.getTimestamp());
+                    stmt.setBoolean(param++, entry.isSuccess());
+                }
+                stmt.executeUpdate();
+            }
+        }
+    }
+    
+    @Override
+    public List<String> findRecentlyValidatedKeys(long since, int limit) throws SQLException {
+        String sql = "SELECT license_key FROM validation_logs WHERE timestamp >= ? AND success = 1 " +
+                     "GROUP BY license_key ORDER BY MAX(timestamp) DESC LIMIT ?";
+        List<String> keys = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, since);
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    keys.add(rs.getString(1));
+                }
+            }
+        }
+        return keys;
+    }
+    
+    // Toggle license active status
+    
+    @Override
+    public void toggleLicense(String key, boolean active) throws SQLException {
+        String sql = "UPDATE licenses SET active = ? WHERE key = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setBoolean(1, active);
+            stmt.setString(2, key);
+            stmt.executeUpdate();
+        }
+    }
+    
+    // Reset HWID binding
+    
+    @Override
+    public void resetLicenseHwid(String key) throws SQLException {
+        String sql = "UPDATE licenses SET hwid = NULL, ip = NULL WHERE key = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, key);
+            stmt.executeUpdate();
+        }
+    }
+    
+    // Delete operations
+    
+    @Override
+    public void deleteProduct(String id) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM products WHERE id = ?")) {
+            stmt.setString(1, id);
+            stmt.executeUpdate();
+        }
+    }
+    
+    @Override
+    public void deleteLicense(String key) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM licenses WHERE key = ?")) {
+            stmt.setString(1, key);
+            stmt.executeUpdate();
+        }
+    }
+    
+    // Bulk operations
+    
+    @Override
+    public List<String> findLicenseKeys(LicenseFilter filter) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT key FROM licenses WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        if (filter.getProductId() != null) {
+            sql.append(" AND product_id = ?");
+            params.add(filter.getProductId());
+        }
+        if (filter.getTierId() != null) {
+            sql.append(" AND tier_id = ?");
+            params.add(filter.getTierId());
+        }
+        if (filter.getHwid() != null) {
+            sql.append(" AND hwid = ?");
+            params.add(filter.getHwid());
+        }
+        if (filter.getExpiredBefore() != null) {
+            sql.append(" AND expiry_time > 0 AND expiry_time < ?");
+            params.add(filter.getExpiredBefore());
+        }
+        sql.append(" ORDER BY key");
+        
+        List<String> keys = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    keys.add(rs.getString(1));
+                }
+            }
+        }
+        return keys;
+    }
+    
+    @Override
+    public int updateLicenses(BulkOperation operation, List<String> keys, IntConsumer progress)
+            throws SQLException {
+        String statement;
+        switch (operation) {
+            case ACTIVATE:
+                statement = "UPDATE licenses SET active = 1 WHERE key IN ";
+                break;
+            case DEACTIVATE:
+                statement = "UPDATE licenses SET active = 0 WHERE key IN ";
+                break;
+            case RESET_HWID:
+                statement = "UPDATE licenses SET hwid = NULL, ip = NULL WHERE key IN ";
+                break;
+            default:
+                statement = "DELETE FROM licenses WHERE key IN ";
+        }
+        
+        int changed = 0;
+        try (Connection bulk = openConnection()) {
+            bulk.setAutoCommit(false);
+            try {
+                // Each chunk is one set-based statement in a transaction of its own, so
+                // validations can take the write lock between chunks
+                for (int from = 0; from < keys.size(); from += LICENSE_BATCH_ROWS) {
+                    List<String> chunk = keys.subList(from, Math.min(keys.size(), from + LICENSE_BATCH_ROWS));
+                    StringBuilder sql = new StringBuilder(statement).append('(');
+                    for (int i = 0; i < chunk.size(); i++) {
+                        sql.append(i == 0 ? "?" : ", ?");
+                    }
+                    sql.append(')');
+                    try (PreparedStatement stmt = bulk.prepareStatement(sql.toString())) {
+                        for (int i = 0; i < chunk.size(); i++) {
+                            stmt.setString(i + 1, chunk.get(i));
+                        }
+                        changed += stmt.executeUpdate();
+                    }
+                    bulk.commit();
+                    if (progress != null) {
+                        progress.accept(from + chunk.size());
+                    }
+                }
+            } catch (SQLException e) {
+                bulk.rollback();
+                throw e;
+            }
+        }
+        return changed;
+    }
+    
+    @Override
+    public void deleteTier(String id) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM tiers WHERE id = ?")) {
+            stmt.setString(1, id);
+            stmt.executeUpdate();
+        }
+    }
+    
+    // Dashboard stats
+    
+    @Override
+    public Map<String, Object> getStats() throws SQLException {
+        Map<String, Object> stats = new HashMap<>();
+        
+        try (Statement stmt = connection.createStatement()) {
+            ResultSet rs = stmt.executeQuery("SELECT COUNT(*) as count FROM products");
+            stats.put("totalProducts", rs.next() ? rs.getInt("count") : 0);
+        }
+        
+        try (Statement stmt = connection.createStatement()) {
+            ResultSet rs = stmt.executeQuery("SELECT COUNT(*) as count FROM licenses");
+            stats.put("totalLicenses", rs.next() ? rs.getInt("count") : 0);
+        }
+        
+        try (Statement stmt = connection.createStatement()) {
+            ResultSet rs = stmt.executeQuery("SELECT COUNT(*) as count FROM licenses WHERE active = 1");
+            stats.put("activeLicenses", rs.next() ? rs.getInt("count") : 0);
+        }
+        
+        try (Statement stmt = connection.createStatement()) {
+            ResultSet rs = stmt.executeQuery(
+                "SELECT COUNT(*) as count FROM licenses WHERE expiry_time > 0 AND expiry_time < " + 
+                System.currentTimeMillis());
+            stats.put("expiredLicenses", rs.next() ? rs.getInt("count") : 0);
+        }
+        
+        try (Statement stmt = connection.createStatement()) {
+            ResultSet rs = stmt.executeQuery("SELECT COUNT(*) as count FROM tiers");
+            stats.put("totalTiers", rs.next() ? rs.getInt("count") : 0);
+        }
+        
+        try (Statement stmt = connection.createStatement()) {
+            ResultSet rs = stmt.executeQuery(
+                "SELECT COUNT(*) as count FROM validation_logs WHERE timestamp > " + 
+                (System.currentTimeMillis() - 86400000));
+            stats.put("validationsToday", rs.next() ? rs.getInt("count") : 0);
+        }
+        
+        return stats;
+    }
+    
+    // Validation logs
+    
+    @Override
+    public List<Map<String, Object>> getValidationLogs(int limit) throws SQLException {
+        String sql = "SELECT vl.*, l.product_id, p.name as product_name " +
+                     "FROM validation_logs vl " +
+                     "LEFT JOIN licenses l ON vl.license_key = l.key " +
+                     "LEFT JOIN products p ON l.product_id = p.id " +
+                     "ORDER BY vl.timestamp DESC LIMIT ?";
+        List<Map<String, Object>> logs = new ArrayList<>();
+        
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Map<String, Object> log = new HashMap<>();
+                    log.put("id", rs.getInt("id"));
+                    log.put("license_key", rs.getString("license_key"));
+                    log.put("hwid", rs.getString("hwid"));
+                    log.put("ip", rs.getString("ip"));
+                    log.put("timestamp", rs.getLong("timestamp"));
+                    log.put("success", rs.getBoolean("success"));
+                    log.put("product_name", rs.getString("product_name"));
+                    logs.add(log);
+                }
+            }
+        }
+        
+        return logs;
+    }
+    
+    // Server settings
+    
+    @Override
+    public String getSetting(String name) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT value FROM settings WHERE name = ?")) {
+            stmt.setString(1, name);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString("value") : null;
+            }
+        }
+    }
+    
+    @Override
+    public String initSetting(String name, String value) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "INSERT OR IGNORE INTO settings (name, value) VALUES (?, ?)")) {
+            stmt.setString(1, name);
+            stmt.setString(2, value);
+            stmt.executeUpdate();
+        }
+        return getSetting(name);
+    }
+    
+    @Override
+    public void close() throws SQLException {
+        if (connection != null && !connection.isClosed()) {
+            connection.close();
+        }
+    }
+}
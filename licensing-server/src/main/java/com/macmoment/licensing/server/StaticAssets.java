@@ -0,0 +1,129 @@
+package com.macmoment.licensing.server;
+
+import spark.Request;
+import spark.Response;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves the web UI from the classpath with HTTP caching.
+ * The build fingerprints script and style references in index.html with the
+ * asset's SHA-256 ({@code ?v=<hash>}) and writes a gzip copy of every asset
+ * next to it. A request whose fingerprint matches the current content is
+ * cacheable for a year; anything else must revalidate against a strong ETag.
+ */
+public class StaticAssets {
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final Map<String, String> TYPES = Map.of(
+            "html", "text/html; charset=utf-8",
+            "js", "application/javascript; charset=utf-8",
+            "css", "text/css; charset=utf-8");
+
+    private final Map<String, Asset> assets = new HashMap<>();
+
+    /**
+     * Loads assets from a classpath directory.
+     * @param root classpath directory, e.g. {@code /web}
+     * @param names files to serve from it
+     */
+    public StaticAssets(String root, String... names) throws IOException {
+        for (String name : names) {
+            byte[] content = read(root + "/" + name);
+            if (content == null) {
+                throw new IOException("Missing web asset " + root + "/" + name);
+            }
+            // Precompressed by the build; compressed once here when running from unpackaged sources
+            byte[] gzip = read(root + "/" + name + ".gz");
+            if (gzip == null) {
+                gzip = gzip(content);
+            }
+            assets.put("/" + name, new Asset(name, content, gzip));
+        }
+    }
+
+    public Iterable<String> paths() {
+        return assets.keySet();
+    }
+
+    /**
+     * Route for any loaded asset path.
+     */
+    public Object serve(Request req, Response res) throws IOException {
+        Asset asset = assets.get(req.pathInfo());
+        if (asset == null) {
+            res.status(404);
+            return "";
+        }
+
+        boolean gzip = HttpEncoding.acceptsGzip(req);
+        String etag = gzip ? asset.gzipEtag : asset.etag;
+        res.type(asset.type);
+        res.header("ETag", etag);
+        res.header("Vary", "Accept-Encoding");
+        res.header("Cache-Control", asset.version.equals(req.queryParams("v")) ? IMMUTABLE : "no-cache");
+        if (HttpEncoding.matchesEtag(req.headers("If-None-Match"), etag)) {
+            res.status(304);
+            return "";
+        }
+
+        // Written directly: Spark would gzip the bytes again if it saw Content-Encoding
+        byte[] body = gzip ? asset.gzip : asset.content;
+        if (gzip) {
+            res.header("Content-Encoding", "gzip");
+        }
+        res.raw().setContentLength(body.length);
+        OutputStream out = res.raw().getOutputStream();
+        out.write(body);
+        out.flush();
+        return "";
+    }
+
+    private static byte[] read(String resource) throws IOException {
+        try (InputStream in = StaticAssets.class.getResourceAsStream(resource)) {
+            return in != null ? in.readAllBytes() : null;
+        }
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(content.length / 3 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+            out.write(content);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static final class Asset {
+        final String type;
+        final byte[] content;
+        final byte[] gzip;
+        // Lowercase hex SHA-256, as written into index.html by the build
+        final String version;
+        final String etag;
+        final String gzipEtag;
+
+        Asset(String name, byte[] content, byte[] gzip) {
+            this.type = TYPES.getOrDefault(name.substring(name.lastIndexOf('.') + 1), "application/octet-stream");
+            this.content = content;
+            this.gzip = gzip;
+            this.version = hex(HttpEncoding.sha256(content));
+            this.etag = HttpEncoding.etag(content);
+            // Each encoding is a different representation, so it needs its own strong ETag
+            this.gzipEtag = etag.substring(0, etag.length() - 1) + "-gzip\"";
+        }
+    }
+}
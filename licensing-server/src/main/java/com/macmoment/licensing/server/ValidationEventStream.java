@@ -0,0 +1,299 @@
+package com.macmoment.licensing.server;
+
+import com.google.gson.JsonObject;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live feed of validation attempts for the dashboard, served as Server-Sent Events.
+ * The validation path only writes into a fixed ring buffer. A single broadcaster
+ * thread turns new entries into SSE frames a few times a second and writes them
+ * to every connected dashboard with non-blocking I/O, so a slow tab never holds
+ * up the others and no connected dashboard costs a storage query.
+ */
+public class ValidationEventStream implements AutoCloseable {
+
+    private static final int CAPACITY = 1024;
+    private static final int MAX_EVENTS_PER_FRAME = 100;
+    private static final long BROADCAST_MILLIS = 250;
+    private static final long KEEPALIVE_MILLIS = 15_000;
+    private static final ValidationOutcome[] OUTCOMES = ValidationOutcome.values();
+
+    private final AtomicReferenceArray<Event> ring = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder[] outcomeCounts = new LongAdder[OUTCOMES.length];
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler;
+
+    public ValidationEventStream() {
+        for (int i = 0; i < outcomeCounts.length; i++) {
+            outcomeCounts[i] = new LongAdder();
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "validation-event-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::broadcast, BROADCAST_MILLIS, BROADCAST_MILLIS, TimeUnit.MILLISECONDS);
+
+        Metrics.registerGauge("licensing_event_stream_subscribers",
+                "Dashboards connected to the validation event stream", subscribers::size);
+    }
+
+    /**
+     * Records a validation attempt. Called on the validation path; never blocks.
+     */
+    public void record(String licenseKey, String productId, String hwid, String ip, ValidationOutcome outcome) {
+        long seq = sequence.incrementAndGet();
+        ring.set((int) (seq & (CAPACITY - 1)),
+                new Event(seq, System.currentTimeMillis(), licenseKey, productId, hwid, ip, outcome));
+        outcomeCounts[outcome.ordinal()].increment();
+    }
+
+    /**
+     * Turns a request into a long-lived event stream.
+     * The response is committed before returning so the web framework leaves it open.
+     * @param lastEventId the {@code Last-Event-ID} header of a reconnecting client, or null
+     */
+    public void subscribe(HttpServletRequest request, HttpServletResponse response, String lastEventId)
+            throws IOException {
+        AsyncContext async = request.startAsync();
+        async.setTimeout(0);
+
+        response.setStatus(200);
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        ServletOutputStream out = response.getOutputStream();
+        out.write("retry: 3000\n\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+
+        // A reconnecting client resumes where it left off if the ring still holds those events
+        long latest = sequence.get();
+        long start = latest;
+        if (lastEventId != null) {
+            try {
+                long resumeFrom = Long.parseLong(lastEventId.trim());
+                if (resumeFrom <= latest && resumeFrom >= latest - CAPACITY) {
+                    start = resumeFrom;
+                }
+            } catch (NumberFormatException e) {
+                // Start from now
+            }
+        }
+
+        Subscriber subscriber = new Subscriber(async, out, start, totals());
+        async.addListener(subscriber);
+        out.setWriteListener(subscriber);
+        subscribers.add(subscriber);
+    }
+
+    private long[] totals() {
+        long[] totals = new long[outcomeCounts.length];
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] = outcomeCounts[i].sum();
+        }
+        return totals;
+    }
+
+    private void broadcast() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        long latest = sequence.get();
+        long[] totals = totals();
+        long now = System.currentTimeMillis();
+
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.isReady()) {
+                // Still sending an earlier frame; it catches up (with merged stat deltas) next time
+                continue;
+            }
+            StringBuilder frame = new StringBuilder();
+            appendEvents(frame, subscriber, latest);
+            appendStats(frame, subscriber, totals);
+            if (frame.length() == 0 && now - subscriber.lastWrite >= KEEPALIVE_MILLIS) {
+                frame.append(": keepalive\n\n");
+            }
+            if (frame.length() > 0) {
+                subscriber.send(frame.toString(), now);
+            }
+        }
+    }
+
+    private void appendEvents(StringBuilder frame, Subscriber subscriber, long latest) {
+        long from = Math.max(subscriber.lastSequence + 1, latest - MAX_EVENTS_PER_FRAME + 1);
+        for (long seq = from; seq <= latest; seq++) {
+            Event event = ring.get((int) (seq & (CAPACITY - 1)));
+            if (event == null || event.sequence < seq) {
+                break; // Claimed but not yet written; send it next time
+            }
+            if (event.sequence == seq) {
+                frame.append(event.frame());
+            }
+            subscriber.lastSequence = seq;
+        }
+    }
+
+    private void appendStats(StringBuilder frame, Subscriber subscriber, long[] totals) {
+        JsonObject outcomes = new JsonObject();
+        long logged = 0;
+        for (int i = 0; i < totals.length; i++) {
+            long delta = totals[i] - subscriber.sent[i];
+            if (delta > 0) {
+                outcomes.addProperty(OUTCOMES[i].getLabel(), delta);
+                // Malformed keys are rejected before they are logged
+                if (OUTCOMES[i] != ValidationOutcome.MALFORMED_KEY) {
+                    logged += delta;
+                }
+            }
+        }
+        if (outcomes.size() == 0) {
+            return;
+        }
+        System.arraycopy(totals, 0, subscriber.sent, 0, totals.length);
+
+        JsonObject stats = new JsonObject();
+        stats.addProperty("validations", logged);
+        stats.add("outcomes", outcomes);
+        frame.append("event: stats\ndata: ").append(stats).append("\n\n");
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.complete();
+        }
+        subscribers.clear();
+    }
+
+    private static final class Event {
+        final long sequence;
+        final long timestamp;
+        final String licenseKey;
+        final String productId;
+        final String hwid;
+        final String ip;
+        final ValidationOutcome outcome;
+        private String frame;
+
+        Event(long sequence, long timestamp, String licenseKey, String productId, String hwid, String ip,
+              ValidationOutcome outcome) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.licenseKey = licenseKey;
+            this.productId = productId;
+            this.hwid = hwid;
+            this.ip = ip;
+            this.outcome = outcome;
+        }
+
+        // Built once and shared by every subscriber; only the broadcaster thread calls this
+        String frame() {
+            if (frame == null) {
+                JsonObject data = new JsonObject();
+                data.addProperty("license_key", licenseKey);
+                data.addProperty("product_id", productId);
+                data.addProperty("hwid", hwid);
+                data.addProperty("ip", ip);
+                data.addProperty("timestamp", timestamp);
+                data.addProperty("success", outcome == ValidationOutcome.SUCCESS);
+                data.addProperty("outcome", outcome.getLabel());
+                frame = "id: " + sequence + "\nevent: validation\ndata: " + data + "\n\n";
+            }
+            return frame;
+        }
+    }
+
+    private final class Subscriber implements WriteListener, AsyncListener {
+        private final AsyncContext async;
+        private final ServletOutputStream out;
+        private final long[] sent;
+        private long lastSequence;
+        private long lastWrite = System.currentTimeMillis();
+
+        Subscriber(AsyncContext async, ServletOutputStream out, long lastSequence, long[] sent) {
+            this.async = async;
+            this.out = out;
+            this.lastSequence = lastSequence;
+            this.sent = sent;
+        }
+
+        boolean isReady() {
+            try {
+                return out.isReady();
+            } catch (IllegalStateException e) {
+                complete();
+                return false;
+            }
+        }
+
+        void send(String frame, long now) {
+            try {
+                out.write(frame.getBytes(StandardCharsets.UTF_8));
+                if (out.isReady()) {
+                    out.flush();
+                }
+                lastWrite = now;
+            } catch (IOException | IllegalStateException e) {
+                complete();
+            }
+        }
+
+        void complete() {
+            if (subscribers.remove(this)) {
+                try {
+                    async.complete();
+                } catch (IllegalStateException e) {
+                    // Already completed by the container
+                }
+            }
+        }
+
+        @Override
+        public void onWritePossible() {
+            // Frames are written by the broadcaster, which checks isReady() first
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            complete();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            subscribers.remove(this);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            complete();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            complete();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.macmoment.licensing.server;
+
+/**
+ * A validation attempt waiting to be written to storage.
+ */
+public class ValidationLog {
+    
+    private final String licenseKey;
+    private final String hwid;
+    private final String ip;
+    private final long timestamp;
+    private final boolean success;
+    
+    public ValidationLog(String licenseKey, String hwid, String ip, long timestamp, boolean success) {
+        this.licenseKey = licenseKey;
+        this.hwid = hwid;
+        this.ip = ip;
+        this.timestamp = timestamp;
+        this.success = success;
+    }
+    
+    public String getLicenseKey() {
+        return licenseKey;
+    }
+    
+    public String getHwid() {
+        return hwid;
+    }
+    
+    public String getIp() {
+        return ip;
+    }
+    
+    public long getTimestamp() {
+        return timestamp;
+    }
+    
+    public boolean isSuccess() {
+        return success;
+    }
+}
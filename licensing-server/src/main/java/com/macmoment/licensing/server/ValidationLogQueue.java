@@ -0,0 +1,79 @@
+package com.macmoment.licensing.server;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes validation log writes off the request path.
+ * Entries are buffered and written in batches by a background thread; when
+ * the buffer is full the caller writes through synchronously, so storage
+ * back-pressure still reaches clients instead of dropping audit entries.
+ */
+public class ValidationLogQueue implements AutoCloseable {
+    
+    private static final int MAX_BATCH = 5_000;
+    
+    private final DatabaseManager db;
+    private final BlockingQueue<ValidationLog> queue;
+    private final ScheduledExecutorService flusher;
+    
+    public ValidationLogQueue(DatabaseManager db, int capacity, long flushIntervalMillis) {
+        this.db = db;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "validation-log-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        
+        Metrics.registerGauge("licensing_validation_log_queue_depth",
+                "Validation log entries waiting to be written", queue::size);
+    }
+    
+    /**
+     * Queues a validation attempt, timestamped now.
+     */
+    public void log(String key, String hwid, String ip, boolean success) throws SQLException {
+        if (!queue.offer(new ValidationLog(key, hwid, ip, System.currentTimeMillis(), success))) {
+            db.logValidation(key, hwid, ip, success);
+        }
+    }
+    
+    public int depth() {
+        return queue.size();
+    }
+    
+    private void flush() {
+        List<ValidationLog> batch = new ArrayList<>();
+        while (queue.drainTo(batch, MAX_BATCH) > 0) {
+            try {
+                db.logValidations(batch);
+            } catch (SQLException e) {
+                System.err.println("Failed to write " + batch.size() + " validation logs: " + e.getMessage());
+            }
+            batch.clear();
+        }
+    }
+    
+    /**
+     * Stops the background thread and writes everything still queued.
+     */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
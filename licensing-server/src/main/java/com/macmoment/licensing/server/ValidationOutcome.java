@@ -0,0 +1,30 @@
+package com.macmoment.licensing.server;
+
+/**
+ * Possible results of a license validation request.
+ */
+public enum ValidationOutcome {
+    /** Rejected by the key format check before any storage access. */
+    MALFORMED_KEY("malformed_key"),
+    INVALID_KEY("invalid_key"),
+    WRONG_PRODUCT("wrong_product"),
+    INACTIVE("inactive"),
+    EXPIRED("expired"),
+    HWID_MISMATCH("hwid_mismatch"),
+    /** Every seat of a tier with {@code max_users} is held by other instances. */
+    SEATS_FULL("seats_full"),
+    SUCCESS("success");
+    
+    private final String label;
+    
+    ValidationOutcome(String label) {
+        this.label = label;
+    }
+    
+    /**
+     * Gets the label used for this outcome in metrics and event streams.
+     */
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,197 @@
+package com.macmoment.licensing.server;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A license validation request, parsed by streaming over the raw body
+ * instead of building a JsonObject tree.
+ */
+public class ValidationRequest {
+
+    private String productId;
+    private String licenseKey;
+    private String hwid;
+    private String ip;
+    private String instanceId;
+
+    private ValidationRequest() {
+    }
+
+    ValidationRequest(String productId, String licenseKey, String hwid, String ip) {
+        this(productId, licenseKey, hwid, ip, null);
+    }
+
+    ValidationRequest(String productId, String licenseKey, String hwid, String ip, String instanceId) {
+        this.productId = productId;
+        this.licenseKey = licenseKey;
+        this.hwid = hwid;
+        this.ip = ip;
+        this.instanceId = instanceId;
+    }
+
+    /**
+     * Parses a validation request body.
+     * @throws IllegalArgumentException if the body is malformed or a field is missing
+     */
+    public static ValidationRequest parse(String body) {
+        ValidationRequest request = new ValidationRequest();
+
+        try (JsonReader reader = new JsonReader(new StringReader(body))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "productId":
+                        request.productId = reader.nextString();
+                        break;
+                    case "licenseKey":
+                        request.licenseKey = reader.nextString();
+                        break;
+                    case "hwid":
+                        request.hwid = reader.nextString();
+                        break;
+                    case "ip":
+                        request.ip = reader.nextString();
+                        break;
+                    case "instanceId":
+                        request.instanceId = reader.nextString();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IOException | IllegalStateException e) {
+            throw new IllegalArgumentException("Malformed validation request: " + e.getMessage(), e);
+        }
+
+        requireField(request.productId, "productId");
+        requireField(request.licenseKey, "licenseKey");
+        requireField(request.hwid, "hwid");
+        requireField(request.ip, "ip");
+        return request;
+    }
+
+    /**
+     * Parses a batch validation body: the machine's {@code hwid} and {@code ip}
+     * once, and a {@code licenses} array of {@code productId}/{@code licenseKey}
+     * pairs (each with an optional {@code instanceId}), one request per pair.
+     * @throws IllegalArgumentException if the body is malformed, a field is
+     *         missing or there are more than {@code maxLicenses} pairs
+     */
+    public static List<ValidationRequest> parseBatch(String body, int maxLicenses) {
+        String hwid = null;
+        String ip = null;
+        List<ValidationRequest> requests = new ArrayList<>();
+
+        try (JsonReader reader = new JsonReader(new StringReader(body))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "hwid":
+                        hwid = reader.nextString();
+                        break;
+                    case "ip":
+                        ip = reader.nextString();
+                        break;
+                    case "licenses":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            if (requests.size() == maxLicenses) {
+                                throw new IllegalArgumentException("At most " + maxLicenses + " licenses per batch");
+                            }
+                            requests.add(parseLicense(reader));
+                        }
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IOException | IllegalStateException e) {
+            throw new IllegalArgumentException("Malformed validation request: " + e.getMessage(), e);
+        }
+
+        requireField(hwid, "hwid");
+        requireField(ip, "ip");
+        for (ValidationRequest request : requests) {
+            request.hwid = hwid;
+            request.ip = ip;
+        }
+        return requests;
+    }
+
+    private static ValidationRequest parseLicense(JsonReader reader) throws IOException {
+        ValidationRequest request = new ValidationRequest();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "productId":
+                    request.productId = reader.nextString();
+                    break;
+                case "licenseKey":
+                    request.licenseKey = reader.nextString();
+                    break;
+                case "instanceId":
+                    request.instanceId = reader.nextString();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        requireField(request.productId, "productId");
+        requireField(request.licenseKey, "licenseKey");
+        return request;
+    }
+
+    private static void requireField(String value, String name) {
+        if (value == null) {
+            throw new IllegalArgumentException("Missing field: " + name);
+        }
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public String getLicenseKey() {
+        return licenseKey;
+    }
+
+    public String getHwid() {
+        return hwid;
+    }
+
+    public String getIp() {
+        return ip;
+    }
+
+    /**
+     * Gets the ID of the client instance, or null if the client sent none.
+     */
+    public String getInstanceId() {
+        return instanceId;
+    }
+}
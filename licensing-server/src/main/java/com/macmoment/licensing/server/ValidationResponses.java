@@ -0,0 +1,139 @@
+package com.macmoment.licensing.server;
+
+import com.google.gson.Gson;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Pre-encoded responses for the validation endpoint.
+ * Failure bodies are fixed byte arrays; success bodies are assembled from
+ * cached fragments so no JSON tree is built per request.
+ */
+public final class ValidationResponses {
+
+    private static final Gson GSON = new Gson();
+    private static final int MAX_CACHED_FRAGMENTS = 10_000;
+
+    public static final byte[] INVALID_KEY = failure("Invalid license key");
+    public static final byte[] WRONG_PRODUCT = failure("License not valid for this product");
+    public static final byte[] DEACTIVATED = failure("License has been deactivated");
+    public static final byte[] EXPIRED = failure("License has expired");
+    public static final byte[] HWID_MISMATCH = failure("License bound to different hardware");
+    public static final byte[] SEATS_FULL = failure("All seats are in use");
+
+    private static final byte[] SUCCESS_PREFIX =
+            utf8("{\"valid\":true,\"message\":\"License validated successfully\"");
+    private static final byte[] TIER_FIELD = utf8(",\"tier\":");
+    private static final byte[] EXPIRY_FIELD = utf8(",\"expiryTime\":");
+    private static final byte[] CLOSE = utf8("}");
+    private static final byte[] EMPTY = new byte[0];
+
+    // Raw tier name / features column and mask -> encoded JSON fragment
+    private static final Map<String, byte[]> TIER_FRAGMENTS = new ConcurrentHashMap<>();
+    private static final Map<String, byte[]> FEATURE_FRAGMENTS = new ConcurrentHashMap<>();
+
+    private ValidationResponses() {
+    }
+
+    /**
+     * Gets the response to a rejected validation.
+     */
+    public static byte[] failure(ValidationOutcome outcome) {
+        switch (outcome) {
+            case WRONG_PRODUCT:
+                return WRONG_PRODUCT;
+            case INACTIVE:
+                return DEACTIVATED;
+            case EXPIRED:
+                return EXPIRED;
+            case HWID_MISMATCH:
+                return HWID_MISMATCH;
+            case SEATS_FULL:
+                return SEATS_FULL;
+            default:
+                return INVALID_KEY;
+        }
+    }
+
+    /**
+     * Encodes a successful validation response.
+     * @param features the tier's features in ID order, as stored
+     * @param featureMask the tier's feature mask
+     */
+    public static byte[] success(String tierName, long expiryTime, String features, long featureMask) {
+        byte[] tier = tierName != null ? tierFragment(tierName) : EMPTY;
+        byte[] expiry = utf8(Long.toString(expiryTime));
+        byte[] allowed = features != null && !features.isEmpty() ? featureFragment(features, featureMask) : EMPTY;
+
+        byte[] out = new byte[SUCCESS_PREFIX.length + tier.length + EXPIRY_FIELD.length
+                + expiry.length + allowed.length + CLOSE.length];
+        int pos = 0;
+        pos = append(out, pos, SUCCESS_PREFIX);
+        pos = append(out, pos, tier);
+        pos = append(out, pos, EXPIRY_FIELD);
+        pos = append(out, pos, expiry);
+        pos = append(out, pos, allowed);
+        append(out, pos, CLOSE);
+        return out;
+    }
+
+    private static byte[] tierFragment(String tierName) {
+        return cached(TIER_FRAGMENTS, tierName, name -> concat(TIER_FIELD, utf8(GSON.toJson(name))));
+    }
+
+    private static byte[] featureFragment(String features, long featureMask) {
+        return cached(FEATURE_FRAGMENTS, featureMask + ":" + features, key -> {
+            List<String> names = Arrays.asList(features.split(","));
+            StringBuilder json = new StringBuilder(",\"allowedFeatures\":").append(GSON.toJson(names))
+                    .append(",\"featureMask\":").append(featureMask);
+            // Names are stored in ID order, so the n-th name owns the n-th set bit
+            if (Long.bitCount(featureMask) == names.size()) {
+                Map<String, Integer> ids = new LinkedHashMap<>();
+                long remaining = featureMask;
+                for (String name : names) {
+                    ids.put(name, Long.numberOfTrailingZeros(remaining));
+                    remaining &= remaining - 1;
+                }
+                json.append(",\"featureIds\":").append(GSON.toJson(ids));
+            }
+            return utf8(json.toString());
+        });
+    }
+
+    private static byte[] cached(Map<String, byte[]> cache, String key,
+                                 Function<String, byte[]> encoder) {
+        byte[] fragment = cache.get(key);
+        if (fragment == null) {
+            if (cache.size() >= MAX_CACHED_FRAGMENTS) {
+                cache.clear();
+            }
+            fragment = cache.computeIfAbsent(key, encoder);
+        }
+        return fragment;
+    }
+
+    private static byte[] failure(String message) {
+        return utf8("{\"valid\":false,\"message\":" + GSON.toJson(message) + "}");
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] out = new byte[a.length + b.length];
+        append(out, append(out, 0, a), b);
+        return out;
+    }
+
+    private static int append(byte[] out, int pos, byte[] fragment) {
+        System.arraycopy(fragment, 0, out, pos, fragment.length);
+        return pos + fragment.length;
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -1,5 +1,7 @@
 const API_URL = 'http://localhost:8080/api';
 let allLicenses = [];
+const selectedLicenses = new Set();
+let catalog = [];
 
 // Tab switching
 document.querySelectorAll('.tab-btn').forEach(btn => {
@@ -56,14 +58,21 @@ async function loadDashboard() {
     }
 }
 
+// Catalog: products with nested tiers and license counts in one request.
+// The browser revalidates it with If-None-Match, so an unchanged catalog costs a 304.
+async function loadCatalog() {
+    const response = await fetch(`${API_URL}/catalog`);
+    catalog = await response.json();
+    return catalog;
+}
+
 // Products
 async function loadProducts() {
     const container = document.getElementById('products-list');
     container.innerHTML = '<div class="loading">Loading products</div>';
     
     try {
-        const response = await fetch(`${API_URL}/products`);
-        const products = await response.json();
+        const products = await loadCatalog();
         
         if (products.length === 0) {
             container.innerHTML = '<div class="empty-state"><p>No products yet. Create your first product!</p></div>';
@@ -81,6 +90,7 @@ async function loadProducts() {
                 <p>${escapeHtml(product.description || 'No description')}</p>
                 <div class="card-meta">
                     <span>ID: ${escapeHtml(product.id).substring(0, 8)}...</span>
+                    <span>${product.tiers.length} tiers, ${product.license_count} licenses</span>
                     <span>${formatDate(product.created_at)}</span>
                 </div>
             </div>
@@ -137,6 +147,10 @@ async function loadLicenses() {
         const response = await fetch(`${API_URL}/licenses`);
         allLicenses = await response.json();
         
+        // Drop selections for licenses that no longer exist
+        const existing = new Set(allLicenses.map(license => license.key));
+        selectedLicenses.forEach(key => { if (!existing.has(key)) selectedLicenses.delete(key); });
+        
         renderLicenses(allLicenses);
         
     } catch (error) {
@@ -146,21 +160,19 @@ async function loadLicenses() {
 }
 
 function filterLicenses() {
+    renderLicenses(visibleLicenses());
+}
+
+// Licenses matching the search box
+function visibleLicenses() {
     const query = document.getElementById('license-search').value.toLowerCase();
-    if (!query) {
-        renderLicenses(allLicenses);
-        return;
-    }
-    
-    const filtered = allLicenses.filter(license =>
+    return query ? allLicenses.filter(license =>
         (license.key && license.key.toLowerCase().includes(query)) ||
         (license.product_name && license.product_name.toLowerCase().includes(query)) ||
         (license.tier_name && license.tier_name.toLowerCase().includes(query)) ||
         (license.hwid && license.hwid.toLowerCase().includes(query)) ||
         (license.ip && license.ip.toLowerCase().includes(query))
-    );
-    
-    renderLicenses(filtered);
+    ) : allLicenses;
 }
 
 function renderLicenses(licenses) {
@@ -168,13 +180,17 @@ function renderLicenses(licenses) {
     
     if (licenses.length === 0) {
         container.innerHTML = '<div class="empty-state"><p>No licenses found.</p></div>';
+        updateBulkActions();
         return;
     }
     
+    const allSelected = licenses.every(license => selectedLicenses.has(license.key));
+    
     container.innerHTML = `
         <table>
             <thead>
                 <tr>
+                    <th><input type="checkbox" ${allSelected ? 'checked' : ''} onchange="selectAllLicenses(this.checked)" title="Select all"></th>
                     <th>License Key</th>
                     <th>Product</th>
                     <th>Tier</th>
@@ -187,6 +203,7 @@ function renderLicenses(licenses) {
             <tbody>
                 ${licenses.map(license => `
                     <tr>
+                        <td><input type="checkbox" ${selectedLicenses.has(license.key) ? 'checked' : ''} onchange="selectLicense('${escapeHtml(license.key)}', this.checked)"></td>
                         <td>
                             <code>${escapeHtml(license.key)}</code>
                             <button class="copy-btn" onclick="copyToClipboard('${escapeHtml(license.key)}')">Copy</button>
@@ -210,6 +227,73 @@ function renderLicenses(licenses) {
             </tbody>
         </table>
     `;
+    updateBulkActions();
+}
+
+// Bulk selection
+function selectLicense(key, selected) {
+    if (selected) {
+        selectedLicenses.add(key);
+    } else {
+        selectedLicenses.delete(key);
+    }
+    updateBulkActions();
+}
+
+function selectAllLicenses(selected) {
+    visibleLicenses().forEach(license => selected ? selectedLicenses.add(license.key) : selectedLicenses.delete(license.key));
+    filterLicenses();
+}
+
+function clearSelection() {
+    selectedLicenses.clear();
+    filterLicenses();
+}
+
+function updateBulkActions() {
+    document.getElementById('bulk-count').textContent = `${selectedLicenses.size} selected`;
+    document.getElementById('bulk-actions').classList.toggle('active', selectedLicenses.size > 0);
+}
+
+// Applies one operation to every selected license in a single request
+function bulkLicenses(operation, options = {}) {
+    const keys = Array.from(selectedLicenses);
+    const labels = {
+        toggle: options.active ? 'Activate' : 'Deactivate',
+        'reset-hwid': 'Reset HWID of',
+        delete: 'Delete'
+    };
+    
+    showConfirm(`${labels[operation]} ${keys.length} Licenses`, `${labels[operation]} ${keys.length} selected licenses?`, async () => {
+        try {
+            const response = await fetch(`${API_URL}/licenses/bulk/${operation}`, {
+                method: 'POST',
+                headers: { 'Content-Type': 'application/json' },
+                body: JSON.stringify({ ...options, keys })
+            });
+            let job = await response.json();
+            if (!response.ok && response.status !== 202) {
+                throw new Error(job.error || response.statusText);
+            }
+            
+            // Large sets continue in the background; poll until done
+            while (job.status === 'queued' || job.status === 'running') {
+                showToast(`Processed ${job.processed} of ${job.total >= 0 ? job.total : keys.length}`, 'success');
+                await new Promise(resolve => setTimeout(resolve, 1000));
+                job = await (await fetch(`${API_URL}/jobs/${job.jobId}`)).json();
+            }
+            if (job.status === 'failed') {
+                throw new Error(job.error);
+            }
+            
+            selectedLicenses.clear();
+            showSuccess(`${job.changed} licenses updated`);
+            loadLicenses();
+        } catch (error) {
+            console.error('Error running bulk operation:', error);
+            showError('Bulk operation failed');
+        }
+    });
 }
 
 function getLicenseStatusBadge(license) {
@@ -259,33 +343,26 @@ async function resetHwid(key) {
 async function showAddLicense() {
     // Ensure products are loaded for dropdown
     try {
-        const response = await fetch(`${API_URL}/products`);
-        const products = await response.json();
-        updateProductDropdowns(products);
+        updateProductDropdowns(await loadCatalog());
     } catch (e) { /* dropdowns may already be populated */ }
     
     document.getElementById('add-license-modal').classList.add('active');
 }
 
-async function loadTiersForProduct(productId, selectId) {
+function loadTiersForProduct(productId, selectId) {
     const tierSelect = document.getElementById(selectId);
     tierSelect.innerHTML = '<option value="">No Tier (Full Access)</option>';
     
     if (!productId) return;
     
-    try {
-        const response = await fetch(`${API_URL}/products/${productId}/tiers`);
-        const tiers = await response.json();
-        
-        tiers.forEach(tier => {
-            const option = document.createElement('option');
-            option.value = tier.id;
-            option.textContent = tier.name;
-            tierSelect.appendChild(option);
-        });
-    } catch (error) {
-        console.error('Error loading tiers for product:', error);
-    }
+    // Tiers come from the catalog loaded when the form opened
+    const product = catalog.find(p => p.id === productId);
+    (product ? product.tiers : []).forEach(tier => {
+        const option = document.createElement('option');
+        option.value = tier.id;
+        option.textContent = tier.name;
+        tierSelect.appendChild(option);
+    });
 }
 
 document.getElementById('add-license-form').addEventListener('submit', async (e) => {
@@ -327,34 +404,29 @@ async function loadTiers() {
     container.innerHTML = '<div class="loading">Loading tiers</div>';
     
     try {
-        const productsResponse = await fetch(`${API_URL}/products`);
-        const products = await productsResponse.json();
+        const products = await loadCatalog();
         
         let html = '';
         
         for (const product of products) {
-            const tiersResponse = await fetch(`${API_URL}/products/${product.id}/tiers`);
-            const tiers = await tiersResponse.json();
-            
-            if (tiers.length > 0) {
-                tiers.forEach(tier => {
-                    html += `
-                        <div class="card">
-                            <div class="card-header">
-                                <h3>${escapeHtml(tier.name)}</h3>
-                                <div class="card-actions">
-                                    <button class="btn-icon danger" onclick="confirmDelete('tier', '${escapeHtml(tier.id)}', '${escapeHtml(tier.name)}')" title="Delete tier">Delete</button>
-                                </div>
-                            </div>
-                            <p>Product: ${escapeHtml(product.name)}</p>
-                            <div class="card-meta">
-                                <span>Features: ${escapeHtml(tier.features || 'None')}</span>
-                                <span>Max Users: ${tier.max_users || 'Unlimited'}</span>
+            product.tiers.forEach(tier => {
+                html += `
+                    <div class="card">
+                        <div class="card-header">
+                            <h3>${escapeHtml(tier.name)}</h3>
+                            <div class="card-actions">
+                                <button class="btn-icon danger" onclick="confirmDelete('tier', '${escapeHtml(tier.id)}', '${escapeHtml(tier.name)}')" title="Delete tier">Delete</button>
                             </div>
                         </div>
-                    `;
-                });
-            }
+                        <p>Product: ${escapeHtml(product.name)}</p>
+                        <div class="card-meta">
+                            <span>Features: ${escapeHtml(tier.features || 'None')}</span>
+                            <span>Max Users: ${tier.max_users || 'Unlimited'}</span>
+                            <span>Licenses: ${tier.active_count} active of ${tier.license_count}</span>
+                        </div>
+                    </div>
+                `;
+            });
         }
         
         container.innerHTML = html || '<div class="empty-state"><p>No tiers yet. Create pricing tiers for your products!</p></div>';
@@ -368,9 +440,7 @@ async function loadTiers() {
 async function showAddTier() {
     // Ensure products are loaded for dropdown
     try {
-        const response = await fetch(`${API_URL}/products`);
-        const products = await response.json();
-        updateProductDropdowns(products);
+        updateProductDropdowns(await loadCatalog());
     } catch (e) { /* dropdowns may already be populated */ }
     
     document.getElementById('add-tier-modal').classList.add('active');
@@ -415,38 +485,16 @@ async function loadLogs() {
     try {
         const response = await fetch(`${API_URL}/logs?limit=100`);
         const logs = await response.json();
+        if (catalog.length === 0) {
+            await loadCatalog();
+        }
         
         if (logs.length === 0) {
             container.innerHTML = '<div class="empty-state"><p>No validation logs yet.</p></div>';
             return;
         }
         
-        container.innerHTML = `
-            <table>
-                <thead>
-                    <tr>
-                        <th>Time</th>
-                        <th>License Key</th>
-                        <th>Product</th>
-                        <th>HWID</th>
-                        <th>IP</th>
-                        <th>Result</th>
-                    </tr>
-                </thead>
-                <tbody>
-                    ${logs.map(log => `
-                        <tr>
-                            <td>${formatDateTime(log.timestamp)}</td>
-                            <td><code>${escapeHtml(log.license_key)}</code></td>
-                            <td>${escapeHtml(log.product_name || 'N/A')}</td>
-                            <td>${log.hwid ? escapeHtml(log.hwid).substring(0, 12) + '...' : 'N/A'}</td>
-                            <td>${escapeHtml(log.ip || 'N/A')}</td>
-                            <td>${log.success ? '<span class="badge badge-success">Success</span>' : '<span class="badge badge-danger">Failed</span>'}</td>
-                        </tr>
-                    `).join('')}
-                </tbody>
-            </table>
-        `;
+        renderLogsTable(logs);
         
     } catch (error) {
         console.error('Error loading logs:', error);
@@ -454,6 +502,78 @@ async function loadLogs() {
     }
 }
 
+function renderLogsTable(logs) {
+    document.getElementById('logs-list').innerHTML = `
+        <table>
+            <thead>
+                <tr>
+                    <th>Time</th>
+                    <th>License Key</th>
+                    <th>Product</th>
+                    <th>HWID</th>
+                    <th>IP</th>
+                    <th>Result</th>
+                </tr>
+            </thead>
+            <tbody id="logs-body">
+                ${logs.map(renderLogRow).join('')}
+            </tbody>
+        </table>
+    `;
+}
+
+function renderLogRow(log) {
+    return `
+        <tr>
+            <td>${formatDateTime(log.timestamp)}</td>
+            <td><code>${escapeHtml(log.license_key)}</code></td>
+            <td>${escapeHtml(log.product_name || productName(log.product_id) || 'N/A')}</td>
+            <td>${log.hwid ? escapeHtml(log.hwid).substring(0, 12) + '...' : 'N/A'}</td>
+            <td>${escapeHtml(log.ip || 'N/A')}</td>
+            <td>${log.success ? '<span class="badge badge-success">Success</span>' : '<span class="badge badge-danger">Failed</span>'}</td>
+        </tr>
+    `;
+}
+
+function productName(productId) {
+    const product = catalog.find(p => p.id === productId);
+    return product ? product.name : null;
+}
+
+// Live updates: new validations and stat deltas are pushed by the server,
+// so the dashboard and logs views never poll
+function connectEvents() {
+    const events = new EventSource(`${API_URL}/events`);
+    
+    // Deltas start from the moment of (re)connecting, so refresh the totals once
+    events.addEventListener('open', () => loadDashboard());
+    
+    events.addEventListener('validation', (e) => {
+        const log = JSON.parse(e.data);
+        // Malformed keys are rejected before logging, so they are not in the log table either
+        if (log.outcome === 'malformed_key') return;
+        
+        const body = document.getElementById('logs-body');
+        if (!body) {
+            // Replace the empty state once the logs tab has been loaded
+            if (document.querySelector('#logs-list .empty-state')) {
+                renderLogsTable([log]);
+            }
+            return;
+        }
+        body.insertAdjacentHTML('afterbegin', renderLogRow(log));
+        while (body.rows.length > 100) {
+            body.deleteRow(body.rows.length - 1);
+        }
+    });
+    
+    events.addEventListener('stats', (e) => {
+        const stats = JSON.parse(e.data);
+        const counter = document.getElementById('stat-validations');
+        counter.textContent = (parseInt(counter.textContent, 10) || 0) + stats.validations;
+    });
+}
+
 // Delete operations
 function confirmDelete(type, id, name) {
     const messages = {
@@ -596,3 +716,4 @@ document.addEventListener('keydown', (e) => {
 
 // Initialize
 loadDashboard();
+connectEvents();